@@ -0,0 +1,112 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.benchmark;
+
+import com.github.detro.browsermobproxyclient.har.BMPCHarFormat;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubHar;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing, transcoding (from JSON text) and reading HARs in every {@link BMPCHarFormat}.
+ * The size of the HAR in each format is printed at setup, compared to plain JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BMPCHarFormatBenchmark {
+
+    @Param({"JSON", "JSON_GZIP", "CBOR", "CBOR_GZIP"})
+    public String format;
+
+    @Param({"1048576", "10485760"})
+    public long harSize;
+
+    private BMPCHarFormat harFormat;
+    private String json;
+    private JsonObject har;
+    private byte[] encoded;
+
+    private static class NullOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        harFormat = BMPCHarFormat.valueOf(format);
+
+        ByteArrayOutputStream jsonBytes = new ByteArrayOutputStream();
+        BMPCStubHar.write(jsonBytes, harSize, Arrays.asList("Page 1", "Page 2", "Page 3"));
+        json = jsonBytes.toString("UTF-8");
+        har = new JsonParser().parse(json).getAsJsonObject();
+
+        ByteArrayOutputStream encodedBytes = new ByteArrayOutputStream();
+        harFormat.write(har, encodedBytes);
+        encoded = encodedBytes.toByteArray();
+
+        System.out.println(String.format("%n%s: %d bytes (%.1f%% of JSON)",
+                harFormat, encoded.length, 100.0 * encoded.length / jsonBytes.size()));
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        harFormat.write(har, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long transcode() throws IOException {
+        NullOutputStream out = new NullOutputStream();
+        harFormat.transcode(new StringReader(json), out);
+        return out.count;
+    }
+
+    @Benchmark
+    public JsonObject read() throws IOException {
+        return harFormat.read(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.benchmark;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.har.BMPCHar;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receiving and parsing HARs of growing size, as JSON tree and as typed model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BMPCHarParseBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760"})
+    public long harSize;
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+    private BMPCProxy proxy;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(harSize)).start();
+        manager = stub.createManager();
+        proxy = manager.createProxy();
+        proxy.newHar();
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Benchmark
+    public JsonObject har() {
+        return proxy.har();
+    }
+
+    @Benchmark
+    public BMPCHar typedHar() {
+        return proxy.typedHar();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.benchmark;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming HARs of growing size, up to 500MB, straight to disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BMPCHarToFileBenchmark {
+
+    @Param({"1024", "1048576", "104857600", "524288000"})
+    public long harSize;
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+    private BMPCProxy proxy;
+    private File destinationDir;
+
+    @Setup
+    public void setup() throws Exception {
+        stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(harSize)).start();
+        manager = stub.createManager();
+        proxy = manager.createProxy();
+        proxy.newHar();
+
+        destinationDir = File.createTempFile("bmpc-benchmark", "");
+        destinationDir.delete();
+        destinationDir.mkdirs();
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.getHttpClient().close();
+        stub.stop();
+
+        for (File file : destinationDir.listFiles()) {
+            file.delete();
+        }
+        destinationDir.delete();
+    }
+
+    @Benchmark
+    public void harToFile() {
+        proxy.harToFile(destinationDir.getPath(), "benchmark.har");
+    }
+
+    @Benchmark
+    public void harToFileGzip() {
+        proxy.harToFile(destinationDir.getPath(), "benchmark.har.gz", true);
+    }
+}
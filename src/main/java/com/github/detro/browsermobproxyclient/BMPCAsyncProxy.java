@@ -0,0 +1,553 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient;
+
+import com.github.detro.browsermobproxyclient.exceptions.*;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.apache.http.Consts;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.*;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.openqa.selenium.Proxy;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Non-blocking Client API for controlling a Proxy created via BrowserMob Proxy REST API.
+ *
+ * Mirrors the most used calls of {@link BMPCProxy}, but none of them blocks
+ * the calling thread: every call returns immediately a {@link Future} and,
+ * optionally, notifies a {@link FutureCallback} once the REST API has responded.
+ * This allows to drive many Proxies concurrently from a handful of threads.
+ * </p>
+ *
+ * Failures are reported through the Future (wrapped in an
+ * {@link java.util.concurrent.ExecutionException}) or the callback, using the
+ * same exceptions {@link BMPCProxy} would throw.
+ * </p>
+ *
+ * All the instances talking to the same REST API share the same pooled
+ * non-blocking HTTP Client (see {@link BMPCHttpClient#getAsyncHttpClient()}).
+ */
+public class BMPCAsyncProxy {
+
+    private static final Gson GSON = new GsonBuilder()
+            .serializeNulls()
+            .create();
+
+    private final BMPCHttpClient httpClient;
+
+    private final String APIHost;
+    private final int APIPort;
+    private final int proxyPort;
+
+    /**
+     * Create a non-blocking client for an existing Proxy.
+     *
+     * This constructor will not actually request a NEW Proxy: it will
+     * just assume the one provided (via the <code>proxyPort</code> parameter)
+     * exists. If it doesn't, behaviour is undefined.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param proxyPort Existing Proxy Port to connect to
+     */
+    public BMPCAsyncProxy(BMPCHttpClient httpClient, int proxyPort) {
+        this.httpClient = httpClient;
+        this.APIHost = httpClient.getAPIHost();
+        this.APIPort = httpClient.getAPIPort();
+        this.proxyPort = proxyPort;
+    }
+
+    /**
+     * @see BMPCAsyncProxy#create(BMPCHttpClient, String, FutureCallback)
+     */
+    public static Future<BMPCAsyncProxy> create(String apiHost, int apiPort) {
+        return create(BMPCHttpClient.shared(apiHost, apiPort), null, null);
+    }
+
+    /**
+     * @see BMPCAsyncProxy#create(BMPCHttpClient, String, FutureCallback)
+     */
+    public static Future<BMPCAsyncProxy> create(BMPCHttpClient httpClient) {
+        return create(httpClient, null, null);
+    }
+
+    /**
+     * Requests the creation of a new Proxy, without waiting for it.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param upstreamProxyHostAndPort New proxy will use this HTTP Proxy instead of
+     *                          directly connecting to the target address.
+     *                          IMPORTANT: format must be "HOST:PORT".
+     *                          Can be "null".
+     * @param callback Notified once the Proxy is created. Can be "null".
+     * @return Future of the new Proxy
+     */
+    public static Future<BMPCAsyncProxy> create(final BMPCHttpClient httpClient,
+                                                String upstreamProxyHostAndPort,
+                                                FutureCallback<BMPCAsyncProxy> callback) {
+        try {
+            // Request BMP to create a new Proxy
+            HttpPost request = new HttpPost(requestURIBuilder(httpClient.getAPIHost(), httpClient.getAPIPort())
+                    .setPath("/proxy")
+                    .build());
+
+            // Add form parameters to the request
+            applyFormParamsToHttpRequest(request,
+                    new BasicNameValuePair("httpProxy", upstreamProxyHostAndPort));
+
+            return execute(httpClient, request, callback, new ResponseHandler<BMPCAsyncProxy>() {
+                @Override
+                public BMPCAsyncProxy handle(HttpResponse response) {
+                    JsonObject createProxyResponseJson = httpResponseToJsonObject(response);
+                    if (null == createProxyResponseJson || !createProxyResponseJson.isJsonObject()) {
+                        throw new RuntimeException("Unexpected Response JSON: " + createProxyResponseJson);
+                    }
+
+                    return new BMPCAsyncProxy(httpClient,
+                            createProxyResponseJson.getAsJsonPrimitive("port").getAsInt());
+                }
+
+                @Override
+                public RuntimeException failure(Exception e) {
+                    return new BMPCUnableToConnectException(String.format(
+                            "Unable to connect to BMP Proxy at '%s:%s'",
+                            httpClient.getAPIHost(),
+                            httpClient.getAPIPort()
+                    ), e);
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnableToConnectException(e);
+        }
+    }
+
+    /**
+     * Returns the Proxy this client wraps, in form of a Selenium Proxy configuration object.
+     *
+     * @return Selenium Proxy configuration object
+     */
+    public Proxy asSeleniumProxy() {
+        Proxy seleniumProxyConfig = new Proxy();
+
+        seleniumProxyConfig.setProxyType(Proxy.ProxyType.MANUAL);
+        seleniumProxyConfig.setHttpProxy(asHostAndPort());
+
+        return seleniumProxyConfig;
+    }
+
+    /**
+     * Returns "[HOST]:[PORT]" to this Proxy
+     *
+     * @return "[HOST]:[PORT]" of this Proxy
+     */
+    public String asHostAndPort() {
+        return String.format("%s:%s", APIHost, proxyPort);
+    }
+
+    /**
+     * Blocking client for the same Proxy.
+     *
+     * The Proxy stays owned by this asynchronous client: the blocking one is a view
+     * that is not closed when garbage collected (see {@link BMPCProxyReaper}).
+     *
+     * @return Blocking client for the same Proxy
+     */
+    public BMPCProxy asBlocking() {
+        return BMPCProxy.untracked(httpClient, proxyPort);
+    }
+
+    /**
+     * Host on which BrowserMob Proxy REST API are listening.
+     *
+     * @return Host on which BrowserMob Proxy REST API are listening.
+     */
+    public String getAPIHost() {
+        return APIHost;
+    }
+
+    /**
+     * Port on which BrowserMob Proxy REST API are listening.
+     *
+     * @return Port on which BrowserMob Proxy REST API are listening.
+     */
+    public int getAPIPort() {
+        return APIPort;
+    }
+
+    /**
+     * Port on which this Proxy is listening.
+     *
+     * @return Port on which this Proxy is listening.
+     */
+    public int getProxyPort() {
+        return proxyPort;
+    }
+
+    /**
+     * Pooled HTTP Client this Proxy talks to the REST API with.
+     *
+     * @return Pooled HTTP Client
+     */
+    public BMPCHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * @see BMPCAsyncProxy#newHar(String, boolean, boolean, boolean, FutureCallback)
+     */
+    public Future<JsonObject> newHar() {
+        return newHar(null, false, false, false, null);
+    }
+
+    /**
+     * @see BMPCAsyncProxy#newHar(String, boolean, boolean, boolean, FutureCallback)
+     */
+    public Future<JsonObject> newHar(String initialPageRef) {
+        return newHar(initialPageRef, false, false, false, null);
+    }
+
+    /**
+     * Creates a new HAR attached to the proxy.
+     *
+     * @param initialPageRef Name of the first pageRef that should be used by
+     *                       the HAR. If "null", default to "Page 1"
+     * @param captureHeaders Enables capturing of HTTP Headers
+     * @param captureContent Enables capturing of HTTP Response Content (body)
+     * @param captureBinaryContent Enabled capturing of HTTP Response
+     *                             Binary Content (in bse64 encoding)
+     * @param callback Notified once the HAR is created. Can be "null".
+     * @return Future of the HAR response if this proxy was previously collecting
+     *         another HAR, effectively considering that concluded.
+     *         Future of "null" otherwise.
+     */
+    public Future<JsonObject> newHar(String initialPageRef,
+                                     boolean captureHeaders,
+                                     boolean captureContent,
+                                     boolean captureBinaryContent,
+                                     FutureCallback<JsonObject> callback) {
+        try {
+            // Request BMP to create a new HAR for this Proxy
+            HttpPut request = new HttpPut(requestURIBuilder(APIHost, APIPort)
+                    .setPath(proxyURIPath() + "/har")
+                    .build());
+
+            // Add form parameters to the request
+            applyFormParamsToHttpRequest(request,
+                    new BasicNameValuePair("initialPageRef", initialPageRef),
+                    new BasicNameValuePair("captureHeaders", Boolean.toString(captureHeaders)),
+                    new BasicNameValuePair("captureContent", Boolean.toString(captureContent)),
+                    new BasicNameValuePair("captureBinaryContent", Boolean.toString(captureBinaryContent)));
+
+            return execute(httpClient, request, callback, new ResponseHandler<JsonObject>() {
+                @Override
+                public JsonObject handle(HttpResponse response) {
+                    return httpResponseToJsonObject(response);
+                }
+
+                @Override
+                public RuntimeException failure(Exception e) {
+                    return new BMPCUnableToCreateHarException(e);
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnableToCreateHarException(e);
+        }
+    }
+
+    /**
+     * @see BMPCAsyncProxy#newPage(String, FutureCallback)
+     */
+    public Future<Void> newPage() {
+        return newPage(null, null);
+    }
+
+    /**
+     * Starts a new page on the existing HAR.
+     * All the traffic recorded in the HAR from this point on will be
+     * considered part of this new Page.
+     *
+     * @param pageRef Name of this new pageRef that should be used by the HAR.
+     *                If "null" defaults to "Page N", where "N" is the number
+     *                of pages so far.
+     * @param callback Notified once the Page is created. Can be "null".
+     * @return Future completed once the Page is created
+     */
+    public Future<Void> newPage(String pageRef, FutureCallback<Void> callback) {
+        try {
+            // Request BMP to create a new Page for this Proxy
+            HttpPut request = new HttpPut(requestURIBuilder(APIHost, APIPort)
+                    .setPath(proxyURIPath() + "/har/pageRef")
+                    .build());
+
+            // Add form parameters to the request
+            applyFormParamsToHttpRequest(request,
+                    new BasicNameValuePair("pageRef", pageRef));
+
+            return execute(httpClient, request, callback, new ResponseHandler<Void>() {
+                @Override
+                public Void handle(HttpResponse response) {
+                    // Check request was successful
+                    int statusCode = response.getStatusLine().getStatusCode();
+                    if (statusCode != 200) {
+                        throw new BMPCUnableToCreatePageException(
+                                "Invalid HTTP Response when attempting to create"
+                                        + "new Page in HAR: "
+                                        + statusCode
+                        );
+                    }
+                    return null;
+                }
+
+                @Override
+                public RuntimeException failure(Exception e) {
+                    return new BMPCUnableToCreatePageException(e);
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnableToCreatePageException(e);
+        }
+    }
+
+    /**
+     * @see BMPCAsyncProxy#har(FutureCallback)
+     */
+    public Future<JsonObject> har() {
+        return har(null);
+    }
+
+    /**
+     * Produces the HAR so far, based on the traffic generated so far.
+     *
+     * @param callback Notified once the HAR is received. Can be "null".
+     * @return Future of the JsonObject in HAR format, or of "null" if there is no HAR yet.
+     */
+    public Future<JsonObject> har(FutureCallback<JsonObject> callback) {
+        try {
+            // Request BMP to return the HAR of this Proxy
+            HttpGet request = new HttpGet(requestURIBuilder(APIHost, APIPort)
+                    .setPath(proxyURIPath() + "/har")
+                    .build());
+
+            return execute(httpClient, request, callback, new ResponseHandler<JsonObject>() {
+                @Override
+                public JsonObject handle(HttpResponse response) {
+                    return httpResponseToJsonObject(response);
+                }
+
+                @Override
+                public RuntimeException failure(Exception e) {
+                    return new BMPCUnableToCreateHarException(e);
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnableToCreateHarException(e);
+        }
+    }
+
+    /**
+     * @see BMPCAsyncProxy#close(FutureCallback)
+     */
+    public Future<Void> close() {
+        return close(null);
+    }
+
+    /**
+     * Closes the Proxy.
+     *
+     * The pooled HTTP Client is not closed, as it's shared with other Proxies.
+     * Once the returned Future completes the Proxy Client is rendered unusable
+     * and references to it should be discarded.
+     *
+     * @param callback Notified once the Proxy is closed. Can be "null".
+     * @return Future completed once the Proxy is closed
+     */
+    public Future<Void> close(FutureCallback<Void> callback) {
+        try {
+            // Request BMP to shutdown this Proxy
+            HttpDelete request = new HttpDelete(requestURIBuilder(APIHost, APIPort)
+                    .setPath(proxyURIPath())
+                    .build());
+
+            return execute(httpClient, request, callback, new ResponseHandler<Void>() {
+                @Override
+                public Void handle(HttpResponse response) {
+                    // Check request was successful
+                    int statusCode = response.getStatusLine().getStatusCode();
+                    if (statusCode != 200) {
+                        throw new BMPCUnableToCloseProxyException(String.format(
+                                "Invalid HTTP Response when attempting to close " +
+                                        "Proxy '%d'. Status code: %d",
+                                proxyPort, statusCode));
+                    }
+                    return null;
+                }
+
+                @Override
+                public RuntimeException failure(Exception e) {
+                    return new BMPCUnableToCloseProxyException(e);
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnableToCloseProxyException(e);
+        }
+    }
+
+    /**
+     * Turns an HTTP Response into the result of a Future, or into the exception it fails with.
+     */
+    private static abstract class ResponseHandler<T> {
+        public abstract T handle(HttpResponse response);
+
+        public abstract RuntimeException failure(Exception e);
+    }
+
+    /**
+     * Executes the request on the non-blocking HTTP Client, then handles the response
+     * (and notifies the callback) on a worker thread, away from the I/O dispatcher.
+     */
+    private static <T> Future<T> execute(final BMPCHttpClient httpClient,
+                                         HttpUriRequest request,
+                                         FutureCallback<T> callback,
+                                         final ResponseHandler<T> handler) {
+        final BasicFuture<T> future = new BasicFuture<T>(callback);
+
+        httpClient.getAsyncHttpClient().execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(final HttpResponse response) {
+                Runnable handle = new Runnable() {
+                    @Override
+                    public void run() {
+                        T result;
+                        try {
+                            result = handler.handle(response);
+                        } catch (Exception e) {
+                            future.failed(handler.failure(e));
+                            return;
+                        } finally {
+                            // Release the buffered response content, if any is left
+                            EntityUtils.consumeQuietly(response.getEntity());
+                        }
+                        future.completed(result);
+                    }
+                };
+
+                try {
+                    httpClient.getAsyncWorkerExecutor().execute(handle);
+                } catch (RejectedExecutionException ree) {
+                    // HTTP Client closed in the meantime: nothing else to hold up
+                    handle.run();
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.failed(handler.failure(e));
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    private static JsonObject httpResponseToJsonObject(HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+
+        // Workout if we got back a good response
+        if (statusCode < 200 || statusCode >= 300) {
+            throw new BMPCUnexpectedStatusCodeException(String.format(
+                    "Unexpected HTTP Status Code %d. Response: %s",
+                    statusCode,
+                    response
+            ), statusCode);
+        }
+
+        if (statusCode == 204) {
+            // Request successful but the response has No Content
+            return null;
+        } else {
+            try {
+                // Workout the charset
+                HttpEntity entity = response.getEntity();
+                Charset charset = ContentType.getOrDefault(entity).getCharset();
+
+                // De-serialize
+                return GSON.fromJson(
+                        new InputStreamReader(entity.getContent(), null != charset ? charset : Consts.UTF_8),
+                        JsonObject.class);
+            } catch (IOException e) {
+                throw new BMPCUnableToParseJsonResponseException(e);
+            }
+        }
+    }
+
+    private static void applyFormParamsToHttpRequest(HttpEntityEnclosingRequestBase httpReq, NameValuePair ... pairs) {
+        // Filter out null-value Pairs
+        List<NameValuePair> formParams = new ArrayList<NameValuePair>();
+        for (NameValuePair pair : pairs) {
+            if (pair.getValue() != null) {
+                formParams.add(pair);
+            }
+        }
+
+        // Encode as entity and set
+        UrlEncodedFormEntity entity = new UrlEncodedFormEntity(formParams, Consts.UTF_8);
+        httpReq.setEntity(entity);
+    }
+
+    private static URIBuilder requestURIBuilder(String apiHost, int apiPort) {
+        return new URIBuilder()
+                .setScheme("http")
+                .setHost(apiHost)
+                .setPort(apiPort);
+    }
+
+    private String proxyURIPath() {
+        return String.format("/proxy/%d", proxyPort);
+    }
+}
@@ -0,0 +1,384 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient;
+
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedErrorException;
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled HTTP Client towards a specific BrowserMob Proxy REST API (i.e. host and port).
+ * <p/>
+ *
+ * Connections are kept alive and reused across all the {@link BMPCProxy} and
+ * Managers that share the same instance, so that creating and closing
+ * many Proxies doesn't pay for a new connection pool and TCP handshake every time.
+ * Idle and expired connections are evicted in background.
+ * <p/>
+ *
+ * A non-blocking HTTP Client, with its own pool, is also available for
+ * the asynchronous API (see {@link BMPCAsyncProxy}): it's created on first use.
+ * Responses are handled, and callbacks notified, on a separate pool of worker
+ * threads, so that a slow callback doesn't hold up the other requests.
+ * <p/>
+ *
+ * Use {@link BMPCHttpClient#shared(String, int)} to get the instance shared
+ * by the whole JVM for a given host and port. Shared instances are never closed.
+ * To configure it, call {@link BMPCHttpClient#shared(String, int, BMPCHttpClientConfig)}
+ * before anything else uses it: every Proxy and Manager created with just
+ * host and port will then share the configured instance.
+ */
+public class BMPCHttpClient {
+
+    private static final Map<String, BMPCHttpClient> SHARED = new HashMap<String, BMPCHttpClient>();
+
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(
+            daemonThreadFactory("BMPCHttpClient-evictor"));
+
+    private final String APIHost;
+    private final int APIPort;
+    private final BMPCHttpClientConfig config;
+
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+    private final RequestConfig requestConfig;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient HTTPclient;
+    private final ScheduledFuture<?> eviction;
+
+    private volatile PoolingNHttpClientConnectionManager asyncConnectionManager = null;
+    private CloseableHttpAsyncClient asyncHTTPclient = null;
+    private ThreadPoolExecutor asyncWorkers = null;
+
+    /**
+     * Returns the pooled HTTP Client shared by the whole JVM for the given
+     * BrowserMob Proxy REST API, whatever its configuration.
+     * It's created with the default configuration if needed.
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     * @return Shared pooled HTTP Client
+     */
+    public static synchronized BMPCHttpClient shared(String apiHost, int apiPort) {
+        BMPCHttpClient client = SHARED.get(apiHost + ":" + apiPort);
+        return null != client ? client : shared(apiHost, apiPort, new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Returns the pooled HTTP Client shared by the whole JVM for the given
+     * BrowserMob Proxy REST API, creating it with the given configuration if needed.
+     *
+     * The configuration must not be changed afterwards.
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     * @param config Configuration of the connection pool
+     * @return Shared pooled HTTP Client
+     * @throws IllegalArgumentException if the shared HTTP Client already exists,
+     *                                  with a different configuration
+     */
+    public static synchronized BMPCHttpClient shared(String apiHost, int apiPort, BMPCHttpClientConfig config) {
+        String key = apiHost + ":" + apiPort;
+        BMPCHttpClient client = SHARED.get(key);
+        if (null == client) {
+            client = new BMPCHttpClient(apiHost, apiPort, config);
+            SHARED.put(key, client);
+        } else if (!client.getConfig().equals(config)) {
+            throw new IllegalArgumentException(String.format(
+                    "Shared HTTP Client towards '%s' already exists, with a different configuration: %s",
+                    key, client.getConfig()));
+        }
+        return client;
+    }
+
+    /**
+     * Create a new pooled HTTP Client with the default configuration.
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     */
+    public BMPCHttpClient(String apiHost, int apiPort) {
+        this(apiHost, apiPort, new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Create a new pooled HTTP Client.
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     * @param config Configuration of the connection pool
+     */
+    public BMPCHttpClient(String apiHost, int apiPort, final BMPCHttpClientConfig config) {
+        this.APIHost = apiHost;
+        this.APIPort = apiPort;
+        this.config = config;
+
+        // Prepare connection pool
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+        // Keep connections alive as long as the server or the configuration allows
+        keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                // Honour the "Keep-Alive: timeout=N" header if the server sends one
+                HeaderElementIterator it = new BasicHeaderElementIterator(
+                        response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+                while (it.hasNext()) {
+                    HeaderElement he = it.nextElement();
+                    if (null != he.getValue() && he.getName().equalsIgnoreCase("timeout")) {
+                        try {
+                            return Long.parseLong(he.getValue()) * 1000;
+                        } catch (NumberFormatException nfe) {
+                            /* ignore */
+                        }
+                    }
+                }
+                return config.getKeepAliveMillis();
+            }
+        };
+        requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setSocketTimeout(config.getSocketTimeoutMillis())
+                .build();
+
+        // Prepare HTTP Client on top of the pool.
+        // Content decoding is left to the users of the client (see BMPCProxy), so compressed
+        // HARs can be measured on the wire and stored without being decompressed.
+        HTTPclient = HttpClients.custom()
+                .useSystemProperties()
+                .disableContentCompression()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        // Evict expired and idle connections in background (unless disabled)
+        if (config.getIdleEvictionIntervalMillis() <= 0) {
+            eviction = null;
+            return;
+        }
+        eviction = EVICTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(config.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+
+                PoolingNHttpClientConnectionManager asyncConnManager = asyncConnectionManager;
+                if (null != asyncConnManager) {
+                    asyncConnManager.closeExpiredConnections();
+                    asyncConnManager.closeIdleConnections(config.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+                }
+            }
+        }, config.getIdleEvictionIntervalMillis(), config.getIdleEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Host on which BrowserMob Proxy REST API are listening.
+     *
+     * @return Host on which the REST API are listening.
+     */
+    public String getAPIHost() {
+        return APIHost;
+    }
+
+    /**
+     * Port on which BrowserMob Proxy REST API are listening.
+     *
+     * @return Port on which the REST API are listening.
+     */
+    public int getAPIPort() {
+        return APIPort;
+    }
+
+    /**
+     * Configuration this HTTP Client was created with.
+     *
+     * @return Configuration of the connection pool
+     */
+    public BMPCHttpClientConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Underlying HTTP Client to execute requests with.
+     *
+     * @return Pooled HTTP Client
+     */
+    public CloseableHttpClient getHttpClient() {
+        return HTTPclient;
+    }
+
+    /**
+     * Underlying non-blocking HTTP Client to execute requests with.
+     *
+     * It's created and started on first use, and shares the configuration
+     * of the blocking one (but not the connections).
+     *
+     * @return Pooled non-blocking HTTP Client
+     */
+    public synchronized CloseableHttpAsyncClient getAsyncHttpClient() {
+        if (null == asyncHTTPclient) {
+            // Prepare non-blocking connection pool
+            PoolingNHttpClientConnectionManager asyncConnManager;
+            try {
+                asyncConnManager = new PoolingNHttpClientConnectionManager(
+                        new DefaultConnectingIOReactor(IOReactorConfig.custom()
+                                .setConnectTimeout(config.getConnectTimeoutMillis())
+                                .setSoTimeout(config.getSocketTimeoutMillis())
+                                .build(),
+                                daemonThreadFactory("BMPCHttpClient-io")));
+            } catch (IOReactorException e) {
+                throw new BMPCUnexpectedErrorException("Unable to create non-blocking HTTP Client", e);
+            }
+            asyncConnManager.setMaxTotal(config.getMaxConnections());
+            asyncConnManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+
+            // Prepare non-blocking HTTP Client on top of the pool
+            asyncHTTPclient = HttpAsyncClients.custom()
+                    .useSystemProperties()
+                    .setConnectionManager(asyncConnManager)
+                    .setKeepAliveStrategy(keepAliveStrategy)
+                    .setDefaultRequestConfig(requestConfig)
+                    .setThreadFactory(daemonThreadFactory("BMPCHttpClient-dispatcher"))
+                    .build();
+            asyncHTTPclient.start();
+            asyncConnectionManager = asyncConnManager;
+        }
+        return asyncHTTPclient;
+    }
+
+    /**
+     * Worker threads to handle the responses of the non-blocking HTTP Client with.
+     *
+     * Parsing a response (e.g. a large HAR) and notifying the user callbacks must
+     * not happen on the I/O dispatcher threads: they are shared by all the requests
+     * in flight, and would stall them all. Up to one worker per pooled connection
+     * is started on first use; idle ones are let go.
+     *
+     * @return Executor of the response handlers
+     */
+    public synchronized ExecutorService getAsyncWorkerExecutor() {
+        if (null == asyncWorkers) {
+            asyncWorkers = new ThreadPoolExecutor(
+                    config.getMaxConnections(), config.getMaxConnections(),
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    daemonThreadFactory("BMPCHttpClient-worker"));
+            asyncWorkers.allowCoreThreadTimeOut(true);
+        }
+        return asyncWorkers;
+    }
+
+    /**
+     * Is this the instance shared by the whole JVM (see {@link BMPCHttpClient#shared(String, int)})?
+     *
+     * @return "true" if shared
+     */
+    public boolean isShared() {
+        synchronized (BMPCHttpClient.class) {
+            return SHARED.get(APIHost + ":" + APIPort) == this;
+        }
+    }
+
+    /**
+     * Closes the HTTP Client and all the pooled connections.
+     *
+     * Has no effect on a shared instance: other Proxies and Managers may still be using it.
+     * Its idle connections are evicted in background anyway.
+     */
+    public void close() {
+        if (isShared()) {
+            return;
+        }
+
+        if (null != eviction) {
+            eviction.cancel(false);
+        }
+        try {
+            HTTPclient.close();
+        } catch (IOException e) {
+            /* ignore */
+        }
+
+        synchronized (this) {
+            if (null != asyncHTTPclient) {
+                try {
+                    asyncHTTPclient.close();
+                } catch (IOException e) {
+                    /* ignore */
+                }
+                asyncHTTPclient = null;
+                asyncConnectionManager = null;
+            }
+            if (null != asyncWorkers) {
+                asyncWorkers.shutdown();
+                asyncWorkers = null;
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,224 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient;
+
+/**
+ * Configuration of the pooled HTTP Client used to talk to the BrowserMob Proxy REST API.
+ * <p/>
+ *
+ * All the timeouts are expressed in milliseconds.
+ * Setters return the configuration itself, so calls can be chained.
+ */
+public class BMPCHttpClientConfig {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 200;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 200;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+    public static final long DEFAULT_IDLE_EVICTION_INTERVAL_MILLIS = 5000;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 0;
+    public static final boolean DEFAULT_HAR_COMPRESSION = true;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private long idleEvictionIntervalMillis = DEFAULT_IDLE_EVICTION_INTERVAL_MILLIS;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int socketTimeoutMillis = DEFAULT_SOCKET_TIMEOUT_MILLIS;
+    private boolean harCompression = DEFAULT_HAR_COMPRESSION;
+
+    /**
+     * Maximum number of connections kept in the pool.
+     *
+     * @param maxConnections Maximum number of connections
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Maximum number of connections kept in the pool towards the same route
+     * (i.e. the same BrowserMob Proxy REST API host and port).
+     *
+     * @param maxConnectionsPerRoute Maximum number of connections per route
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * How long a connection can be kept alive, if the server doesn't say otherwise
+     * via the "Keep-Alive" response header.
+     *
+     * @param keepAliveMillis Keep-alive duration
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * How long a connection can stay idle in the pool before being evicted.
+     *
+     * @param idleTimeoutMillis Idle timeout
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * How often expired and idle connections are evicted from the pool.
+     * "0" (or less) disables the eviction.
+     *
+     * @param idleEvictionIntervalMillis Eviction interval
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setIdleEvictionIntervalMillis(long idleEvictionIntervalMillis) {
+        this.idleEvictionIntervalMillis = idleEvictionIntervalMillis;
+        return this;
+    }
+
+    public long getIdleEvictionIntervalMillis() {
+        return idleEvictionIntervalMillis;
+    }
+
+    /**
+     * Timeout to establish a connection. "0" means infinite.
+     *
+     * @param connectTimeoutMillis Connect timeout
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Timeout waiting for data once connected. "0" means infinite.
+     *
+     * @param socketTimeoutMillis Socket timeout
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        return this;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Ask BrowserMob Proxy to compress the HARs it sends (i.e. <code>Accept-Encoding: gzip, deflate</code>).
+     * HARs are decompressed while being parsed, or stored still compressed when possible.
+     * It has effect only if the server (or a reverse proxy in front of it) supports it.
+     *
+     * @param harCompression Request compressed HARs
+     * @return This configuration
+     */
+    public BMPCHttpClientConfig setHarCompression(boolean harCompression) {
+        this.harCompression = harCompression;
+        return this;
+    }
+
+    public boolean isHarCompression() {
+        return harCompression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BMPCHttpClientConfig)) return false;
+
+        BMPCHttpClientConfig that = (BMPCHttpClientConfig) o;
+        return maxConnections == that.maxConnections
+                && maxConnectionsPerRoute == that.maxConnectionsPerRoute
+                && keepAliveMillis == that.keepAliveMillis
+                && idleTimeoutMillis == that.idleTimeoutMillis
+                && idleEvictionIntervalMillis == that.idleEvictionIntervalMillis
+                && connectTimeoutMillis == that.connectTimeoutMillis
+                && socketTimeoutMillis == that.socketTimeoutMillis
+                && harCompression == that.harCompression;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxConnections;
+        result = 31 * result + maxConnectionsPerRoute;
+        result = 31 * result + (int) (keepAliveMillis ^ (keepAliveMillis >>> 32));
+        result = 31 * result + (int) (idleTimeoutMillis ^ (idleTimeoutMillis >>> 32));
+        result = 31 * result + (int) (idleEvictionIntervalMillis ^ (idleEvictionIntervalMillis >>> 32));
+        result = 31 * result + connectTimeoutMillis;
+        result = 31 * result + socketTimeoutMillis;
+        result = 31 * result + (harCompression ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BMPCHttpClientConfig{" +
+                "maxConnections=" + maxConnections +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", keepAliveMillis=" + keepAliveMillis +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                ", idleEvictionIntervalMillis=" + idleEvictionIntervalMillis +
+                ", connectTimeoutMillis=" + connectTimeoutMillis +
+                ", socketTimeoutMillis=" + socketTimeoutMillis +
+                ", harCompression=" + harCompression +
+                '}';
+    }
+}
@@ -28,13 +28,21 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.github.detro.browsermobproxyclient;
 
 import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalNotInstalledException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalStartStopException;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedErrorException;
+import com.github.detro.browsermobproxyclient.manager.BMPCClusterManager;
 import com.github.detro.browsermobproxyclient.manager.BMPCLocalManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCLocalRegistry;
 import org.openqa.selenium.net.PortProber;
 
 import java.io.*;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 /**
  * Utility class that takes care of Installing/Uninstalling Local Browser Mob Proxy as well as Starting and Stopping it.
@@ -65,11 +73,22 @@ public class BMPCLocalLauncher {
     private static final String BMP_LOCAL_INSTALL_DIR = BMPC_USER_DIR + File.separator + "browsermob-proxy-local";
     private static final String BMP_LOCAL_LOG_FILE = BMPC_USER_DIR + File.separator + "browsermob-proxy-local.log";
     private static final String BMP_LOCAL_VERSION_FILE = BMP_LOCAL_INSTALL_DIR + File.separator + "VERSION.txt";
+    private static final String BMP_LOCAL_MANIFEST_FILE = BMP_LOCAL_INSTALL_DIR + File.separator + "MANIFEST.properties";
     private static final String BMP_LOCAL_EXEC_UNIX = BMP_LOCAL_INSTALL_DIR + File.separator + "bin" + File.separator + "browsermob-proxy";
     private static final String BMP_LOCAL_EXEC_WIN = BMP_LOCAL_INSTALL_DIR + File.separator + "bin" + File.separator + "browsermob-proxy.bat";
+    private static final String BMP_LOCAL_INSTALL_LOCK_FILE = BMPC_USER_DIR + File.separator + ".install.lock";
+
+    private static final String MANIFEST_VERSION = "version";
+    private static final String MANIFEST_SHA256 = "sha256";
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
 
     public static final int BMP_LOCAL_DEFAULT_PORT = 8080;
 
+    // Installation verified against the bundled one, by this JVM
+    private static volatile boolean installVerified = false;
+    private static volatile String bundledChecksum = null;
+
     /**
      * See {@link com.github.detro.browsermobproxyclient.BMPCLocalLauncher#launch(int)}
      */
@@ -93,8 +112,119 @@ public class BMPCLocalLauncher {
      * @return Instance of BMPCManager
      */
     public static BMPCLocalManager launch(int port) {
+        return launch(port, new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Launch Local BrowserMob Proxy and return a BMPCManager to handle it.
+     *
+     * It will also install it if not installed yet.
+     *
+     * @param port Port to bind Local BrowserMob Proxy to
+     * @param httpClientConfig Configuration of the pooled HTTP Client used by the BMPCManager
+     * @return Instance of BMPCManager
+     */
+    public static BMPCLocalManager launch(int port, BMPCHttpClientConfig httpClientConfig) {
+        install();
+        return new BMPCLocalManager(executablePerOS(), BMP_LOCAL_LOG_FILE, port, httpClientConfig);
+    }
+
+    /**
+     * See {@link com.github.detro.browsermobproxyclient.BMPCLocalLauncher#launchFleet(int, BMPCClusterManager.Placement)}
+     */
+    public static BMPCClusterManager launchFleet(int instances) {
+        return launchFleet(instances, BMPCClusterManager.Placement.LEAST_LOADED);
+    }
+
+    /**
+     * Launch multiple Local BrowserMob Proxies, each in its own process and on
+     * its own random port, and return a BMPCManager that spreads Proxies across them.
+     *
+     * Processes are launched in parallel. If any fails to start, the ones
+     * already started are stopped.
+     * The returned Manager stops all of them on {@link BMPCClusterManager#stop()}.
+     * Each of them is also stopped when the JVM shuts down (see {@link BMPCLocalManager}).
+     *
+     * It will also install Local BrowserMob Proxy if not installed yet.
+     *
+     * @param instances Number of Local BrowserMob Proxies to launch
+     * @param placement Policy used to place new Proxies across them
+     * @return Instance of BMPCManager
+     */
+    public static BMPCClusterManager launchFleet(int instances, BMPCClusterManager.Placement placement) {
+        if (instances < 1) {
+            throw new IllegalArgumentException("At least one instance is required: " + instances);
+        }
+
+        install();
+
+        // Pick distinct free ports up front
+        Set<Integer> ports = new LinkedHashSet<Integer>();
+        while (ports.size() < instances) {
+            ports.add(PortProber.findFreePort());
+        }
+
+        // Launch all the processes in parallel
+        ExecutorService executor = Executors.newFixedThreadPool(instances);
+        List<Future<BMPCLocalManager>> launches = new ArrayList<Future<BMPCLocalManager>>(instances);
+        for (final int port : ports) {
+            launches.add(executor.submit(new Callable<BMPCLocalManager>() {
+                @Override
+                public BMPCLocalManager call() {
+                    return launch(port);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        // Wait for all of them, even if some fail, so none is left behind
+        List<BMPCLocalManager> managers = new ArrayList<BMPCLocalManager>(instances);
+        Throwable failure = null;
+        for (Future<BMPCLocalManager> launch : launches) {
+            try {
+                managers.add(launch.get());
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            }
+        }
+
+        if (null != failure) {
+            for (BMPCLocalManager manager : managers) {
+                manager.stop();
+            }
+            throw new BMPCLocalStartStopException(String.format(
+                    "Failed to launch a fleet of %d Local BrowserMob Proxies", instances), failure);
+        }
+
+        return new BMPCClusterManager(managers, placement);
+    }
+
+    /**
+     * See {@link com.github.detro.browsermobproxyclient.BMPCLocalLauncher#attachOrLaunch(BMPCHttpClientConfig)}
+     */
+    public static BMPCLocalManager attachOrLaunch() {
+        return attachOrLaunch(new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Attach to the Local BrowserMob Proxy shared by all the JVMs of the current user,
+     * launching it if it's not running yet.
+     *
+     * Clients are reference counted (see {@link BMPCLocalRegistry}): calling
+     * {@link BMPCLocalManager#stop()} stops it only if this is the last client.
+     *
+     * It will also install it if not installed yet.
+     *
+     * @param httpClientConfig Configuration of the pooled HTTP Client used by the BMPCManager
+     * @return Instance of BMPCManager
+     */
+    public static BMPCLocalManager attachOrLaunch(BMPCHttpClientConfig httpClientConfig) {
         install();
-        return new BMPCLocalManager(executablePerOS(), BMP_LOCAL_LOG_FILE, port);
+        return new BMPCLocalRegistry(new File(BMPC_USER_DIR))
+                .attachOrLaunch(executablePerOS(), BMP_LOCAL_LOG_FILE, httpClientConfig);
     }
 
     /**
@@ -103,7 +233,7 @@ public class BMPCLocalLauncher {
      * @return Returns "true" if a Local BrowserMob Proxy is installed,
      *         "false" otherwise.
      */
-    public synchronized static boolean isInstalled() {
+    public static boolean isInstalled() {
         try {
             installedVersion();
             return true;
@@ -114,23 +244,39 @@ public class BMPCLocalLauncher {
 
     /**
      * Install Local BrowserMob Proxy.
+     *
+     * The installation is verified against the one bundled in this library
+     * (via the checksum recorded in its manifest) only once per JVM:
+     * following calls return immediately.
+     * If missing or different, the bundled one is unpacked to a temporary directory
+     * and then moved into place, so a partial installation is never visible.
+     * Installations are serialized across JVMs via a lock file: only the first
+     * JVM to need it installs, the others use what it installed.
      */
-    public synchronized static void install() {
-        if (!isInstalled()) {
-            InputStream is = BMPCLocalLauncher.class.getResourceAsStream(BMP_LOCAL_ZIP_RES);
-            try {
-                // Unzip BrowserMob Proxy contained in the project "/resources"
-                unzip(is, BMPC_USER_DIR);
+    public static void install() {
+        // Fast path: already verified by this JVM
+        if (installVerified) {
+            return;
+        }
 
-                // Set executable permissions on the BrowserMob Proxy lanching scripts
-                new File(BMP_LOCAL_EXEC_UNIX).setExecutable(true);
-                new File(BMP_LOCAL_EXEC_WIN).setExecutable(true);
+        synchronized (BMPCLocalLauncher.class) {
+            if (installVerified) {
+                return;
+            }
+
+            try {
+                String bundledChecksum = bundledChecksum();
+                if (!bundledChecksum.equals(installedChecksum())) {
+                    installAtomically(bundledChecksum);
+                }
 
                 // Check there is an installed version
                 installedVersion();
             } catch (Exception e) {
                 throw new BMPCUnexpectedErrorException("Installation failed", e);
             }
+
+            installVerified = true;
         }
     }
 
@@ -138,9 +284,60 @@ public class BMPCLocalLauncher {
      * Uninstall Local BrowserMob Proxy.
      */
     public synchronized static void uninstall() {
+        installVerified = false;
         if (isInstalled()) {
-            File installDir = new File(BMP_LOCAL_INSTALL_DIR);
-            delete(installDir);
+            try {
+                InstallLock lock = InstallLock.acquire();
+                try {
+                    delete(new File(BMP_LOCAL_INSTALL_DIR));
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new BMPCUnexpectedErrorException("Uninstallation failed", e);
+            }
+        }
+    }
+
+    /**
+     * Exclusive lock on the installation, held across all the JVMs on this machine.
+     */
+    private static final class InstallLock {
+        private final RandomAccessFile file;
+        private final FileLock lock;
+
+        private InstallLock(RandomAccessFile file, FileLock lock) {
+            this.file = file;
+            this.lock = lock;
+        }
+
+        /**
+         * Wait until no other JVM is installing or uninstalling, then lock.
+         */
+        static InstallLock acquire() throws IOException {
+            File userDir = new File(BMPC_USER_DIR);
+            if (!userDir.exists()) userDir.mkdirs();
+
+            RandomAccessFile file = new RandomAccessFile(BMP_LOCAL_INSTALL_LOCK_FILE, "rw");
+            try {
+                return new InstallLock(file, file.getChannel().lock());
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        void release() {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                /* released anyway once the file is closed */
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                /* ignore */
+            }
         }
     }
 
@@ -151,7 +348,7 @@ public class BMPCLocalLauncher {
      *         Throws @see BMPCLocalLauncherNotInstallerException if not installed.
      *         Please use BMPCLocalLauncher#isInstalled() to check first.
      */
-    public synchronized static String installedVersion() {
+    public static String installedVersion() {
         BufferedReader versionReader = null;
         try {
             versionReader = new BufferedReader(new FileReader(BMP_LOCAL_VERSION_FILE));
@@ -185,45 +382,210 @@ public class BMPCLocalLauncher {
     }
 
     /**
-     * Unzip ZIP file (as InputStream) to a destination directory.
+     * SHA-256 of the BrowserMob Proxy bundled in the project "/resources".
+     * Computed once per JVM.
      *
-     * @param zipFileInputStream Zip File InputStream
-     * @param destinationDir Destination Directory
+     * @return Hex encoded SHA-256
      */
-    private synchronized static void unzip(InputStream zipFileInputStream, String destinationDir) throws IOException {
-        // Create output directory if it doesn't exist
-        File dir = new File(destinationDir);
-        if (!dir.exists()) dir.mkdirs();
-
-        // Buffer for read and write data to file
-        byte[] buffer = new byte[1024];
-        ZipInputStream zis = new ZipInputStream(zipFileInputStream);
-        ZipEntry ze = zis.getNextEntry();
-        while (ze != null) {
-            String fileName = ze.getName();
-            File newFile = new File(destinationDir + File.separator + fileName);
-
-            // Check if it's a Directory entry
-            if (ze.isDirectory()) {
-                newFile.mkdirs();
-            } else {
-                // Save file to disk
-                FileOutputStream fos = new FileOutputStream(newFile);
+    private static String bundledChecksum() throws IOException, NoSuchAlgorithmException {
+        if (null == bundledChecksum) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            InputStream is = BMPCLocalLauncher.class.getResourceAsStream(BMP_LOCAL_ZIP_RES);
+            if (null == is) {
+                throw new FileNotFoundException("Resource not found: " + BMP_LOCAL_ZIP_RES);
+            }
+            try {
+                byte[] buffer = new byte[IO_BUFFER_SIZE];
                 int len;
-                while ((len = zis.read(buffer)) > 0) {
-                    fos.write(buffer, 0, len);
+                while ((len = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, len);
                 }
-                fos.close();
+            } finally {
+                is.close();
             }
+            bundledChecksum = toHex(digest.digest());
+        }
+        return bundledChecksum;
+    }
 
-            // Close current entry and move to next entry
-            zis.closeEntry();
-            ze = zis.getNextEntry();
+    /**
+     * SHA-256 recorded in the manifest of the current installation.
+     *
+     * @return Hex encoded SHA-256, or "null" if there is no (valid) installation
+     */
+    private static String installedChecksum() {
+        File manifestFile = new File(BMP_LOCAL_MANIFEST_FILE);
+        if (!manifestFile.isFile() || !new File(executablePerOS()).isFile()) {
+            return null;
         }
 
-        // Close last entry
-        zis.closeEntry();
-        zis.close();
+        Properties manifest = new Properties();
+        try {
+            InputStream is = new FileInputStream(manifestFile);
+            try {
+                manifest.load(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        return manifest.getProperty(MANIFEST_SHA256);
+    }
+
+    /**
+     * Unpack the bundled BrowserMob Proxy to a temporary directory, then move it into place.
+     *
+     * Holds the installation lock throughout: if another JVM installed the same
+     * BrowserMob Proxy meanwhile, the installation (possibly already in use) is left untouched.
+     *
+     * @param checksum SHA-256 of the bundled BrowserMob Proxy, to record in the manifest
+     */
+    private static void installAtomically(String checksum) throws Exception {
+        InstallLock lock = InstallLock.acquire();
+        try {
+            if (!checksum.equals(installedChecksum())) {
+                swapInstallation(checksum);
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    private static void swapInstallation(String checksum) throws Exception {
+        File userDir = new File(BMPC_USER_DIR);
+
+        File tempDir = new File(userDir, ".install-" + UUID.randomUUID());
+        File tempZip = new File(userDir, tempDir.getName() + ".zip");
+        File oldInstallDir = new File(userDir, ".uninstall-" + UUID.randomUUID());
+        try {
+            // ZipFile needs random access to the archive, to extract entries in parallel
+            InputStream is = BMPCLocalLauncher.class.getResourceAsStream(BMP_LOCAL_ZIP_RES);
+            try {
+                OutputStream os = new FileOutputStream(tempZip);
+                try {
+                    copy(is, os);
+                } finally {
+                    os.close();
+                }
+            } finally {
+                is.close();
+            }
+            unzip(tempZip, tempDir);
+
+            // Record what's been installed
+            File unpackedInstallDir = new File(tempDir, new File(BMP_LOCAL_INSTALL_DIR).getName());
+            Properties manifest = new Properties();
+            manifest.setProperty(MANIFEST_SHA256, checksum);
+            manifest.setProperty(MANIFEST_VERSION, readFirstLine(new File(unpackedInstallDir, "VERSION.txt")));
+            OutputStream os = new FileOutputStream(new File(unpackedInstallDir, new File(BMP_LOCAL_MANIFEST_FILE).getName()));
+            try {
+                manifest.store(os, "Local BrowserMob Proxy installation");
+            } finally {
+                os.close();
+            }
+
+            // Set executable permissions on the BrowserMob Proxy lanching scripts
+            File bin = new File(unpackedInstallDir, "bin");
+            new File(bin, new File(BMP_LOCAL_EXEC_UNIX).getName()).setExecutable(true);
+            new File(bin, new File(BMP_LOCAL_EXEC_WIN).getName()).setExecutable(true);
+
+            // Move the previous installation out of the way, and the new one into place
+            File installDir = new File(BMP_LOCAL_INSTALL_DIR);
+            if (installDir.exists() && !installDir.renameTo(oldInstallDir)) {
+                throw new IOException("Unable to move previous installation: " + installDir);
+            }
+            if (!unpackedInstallDir.renameTo(installDir)) {
+                throw new IOException("Unable to move installation into place: " + installDir);
+            }
+        } finally {
+            delete(tempDir);
+            delete(tempZip);
+            delete(oldInstallDir);
+        }
+    }
+
+    /**
+     * Unzip ZIP file to a destination directory, extracting entries in parallel.
+     *
+     * @param zipFile Zip File
+     * @param destinationDir Destination Directory
+     */
+    private static void unzip(File zipFile, File destinationDir) throws Exception {
+        final ZipFile zip = new ZipFile(zipFile);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            // Create all the directories first, then extract files concurrently
+            List<Callable<Void>> extractions = new ArrayList<Callable<Void>>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry ze = entries.nextElement();
+                final File newFile = new File(destinationDir, ze.getName());
+
+                // Check if it's a Directory entry
+                if (ze.isDirectory()) {
+                    newFile.mkdirs();
+                } else {
+                    newFile.getParentFile().mkdirs();
+                    extractions.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            InputStream is = zip.getInputStream(ze);
+                            try {
+                                OutputStream os = new FileOutputStream(newFile);
+                                try {
+                                    copy(is, os);
+                                } finally {
+                                    os.close();
+                                }
+                            } finally {
+                                is.close();
+                            }
+                            return null;
+                        }
+                    });
+                }
+            }
+
+            // Wait for all the extractions, failing on the first failed one
+            for (Future<Void> extraction : executor.invokeAll(extractions)) {
+                try {
+                    extraction.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            zip.close();
+        }
+    }
+
+    private static void copy(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        int len;
+        while ((len = is.read(buffer)) != -1) {
+            os.write(buffer, 0, len);
+        }
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
     }
 
     /**
@@ -231,7 +593,7 @@ public class BMPCLocalLauncher {
      *
      * @param file File/Directory to delete
      */
-    private synchronized static void delete(File file) {
+    private static void delete(File file) {
         // Check if file is directory
         if (file.isDirectory()) {
             // Get all files in the folder
@@ -28,26 +28,50 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.github.detro.browsermobproxyclient;
 
 import com.github.detro.browsermobproxyclient.exceptions.*;
+import com.github.detro.browsermobproxyclient.har.BMPCHar;
+import com.github.detro.browsermobproxyclient.har.BMPCHarCursor;
+import com.github.detro.browsermobproxyclient.har.BMPCHarEntryVisitor;
+import com.github.detro.browsermobproxyclient.har.BMPCHarFormat;
+import com.github.detro.browsermobproxyclient.har.BMPCHarIncrement;
+import com.github.detro.browsermobproxyclient.har.BMPCHarProjection;
+import com.github.detro.browsermobproxyclient.har.BMPCHarStreamReader;
+import com.github.detro.browsermobproxyclient.har.BMPCHarTypeAdapter;
+import com.github.detro.browsermobproxyclient.metrics.BMPCEndpoint;
+import com.github.detro.browsermobproxyclient.metrics.BMPCRequestTimer;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.ReadContext;
 import org.apache.http.Consts;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.DeflateInputStream;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.*;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.openqa.selenium.Proxy;
 
 import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Client API for controlling a Proxy created via BrowserMob Proxy REST API.
@@ -80,6 +104,10 @@ import java.util.List;
  *
  * Starting and stopping BrowserMob Proxy REST API needs to be done in another place:
  * this class assumes that such REST API is up and running and consumes it.
+ * </p>
+ *
+ * All the instances talking to the same REST API share, by default, the same
+ * pooled HTTP Client (see {@link BMPCHttpClient#shared(String, int)}).
  */
 public class BMPCProxy {
 
@@ -87,12 +115,25 @@ public class BMPCProxy {
             .serializeNulls()
             .create();
 
-    private final CloseableHttpClient HTTPclient = HttpClients.createSystem();
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final BMPCProxyListener[] NO_LISTENERS = new BMPCProxyListener[0];
+
+    private final BMPCHttpClient httpClient;
+    private final CloseableHttpClient HTTPclient;
 
     private final String APIHost;
     private final int APIPort;
     private final int proxyPort;
 
+    // Copied on write: listeners are rarely changed, but notified on every request
+    private volatile BMPCProxyListener[] listeners = NO_LISTENERS;
+
+    // What is known about the HAR without asking BrowserMob Proxy again.
+    // Only facts that traffic can't invalidate are cached: they are reset by newHar/newPage.
+    private volatile boolean harCreated = false;
+    private volatile boolean trafficCaptured = false;
+
 
     /**
      * Create a BrowserMob Proxy Instance
@@ -103,11 +144,7 @@ public class BMPCProxy {
      * @param apiPort Port were BrowserMob Proxy REST API is listening
      */
     public BMPCProxy(String apiHost, int apiPort) {
-        this.APIHost = apiHost;
-        this.APIPort = apiPort;
-
-        // Store newly created Proxy Port
-        this.proxyPort = requestNewProxyPort(null);
+        this(BMPCHttpClient.shared(apiHost, apiPort));
     }
 
     /**
@@ -124,11 +161,7 @@ public class BMPCProxy {
      *                          IMPORTANT: format must be "HOST:PORT".
      */
     public BMPCProxy(String apiHost, int apiPort, String upstreamProxyHostAndPort) {
-        this.APIHost = apiHost;
-        this.APIPort = apiPort;
-
-        // Store newly created Proxy Port
-        this.proxyPort = requestNewProxyPort(upstreamProxyHostAndPort);
+        this(BMPCHttpClient.shared(apiHost, apiPort), upstreamProxyHostAndPort);
     }
 
     /**
@@ -145,12 +178,93 @@ public class BMPCProxy {
      * @param proxyPort Existing Proxy Port to connect to
      */
     public BMPCProxy(String apiHost, int apiPort, int proxyPort) {
-        this.APIHost = apiHost;
-        this.APIPort = apiPort;
+        this(BMPCHttpClient.shared(apiHost, apiPort), proxyPort);
+    }
+
+    /**
+     * Create a BrowserMob Proxy Instance, using the given pooled HTTP Client.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     */
+    public BMPCProxy(BMPCHttpClient httpClient) {
+        this(httpClient, (String) null);
+    }
+
+    /**
+     * Create a BrowserMob Proxy Instance, using the given pooled HTTP Client.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param upstreamProxyHostAndPort New proxy will use this HTTP Proxy instead of
+     *                          directly connecting to the target address.
+     *                          IMPORTANT: format must be "HOST:PORT".
+     */
+    public BMPCProxy(BMPCHttpClient httpClient, String upstreamProxyHostAndPort) {
+        this.httpClient = httpClient;
+        this.HTTPclient = httpClient.getHttpClient();
+        this.APIHost = httpClient.getAPIHost();
+        this.APIPort = httpClient.getAPIPort();
+
+        // Store newly created Proxy Port
+        this.proxyPort = requestNewProxyPort(upstreamProxyHostAndPort);
+
+        // Close the Proxy if this client is collected before being closed
+        BMPCProxyReaper.register(this);
+    }
+
+    /**
+     * Create a BrowserMob Proxy Instance, using the given pooled HTTP Client.
+     *
+     * This constructor will not actually request a NEW Proxy: it will
+     * just assume the one provided (via the <code>proxyPort</code> parameter)
+     * exists. If it doesn't, behaviour is undefined.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param proxyPort Existing Proxy Port to connect to
+     */
+    public BMPCProxy(BMPCHttpClient httpClient, int proxyPort) {
+        this(httpClient, proxyPort, true);
+    }
+
+    private BMPCProxy(BMPCHttpClient httpClient, int proxyPort, boolean tracked) {
+        this.httpClient = httpClient;
+        this.HTTPclient = httpClient.getHttpClient();
+        this.APIHost = httpClient.getAPIHost();
+        this.APIPort = httpClient.getAPIPort();
         this.proxyPort = proxyPort;
+
+        if (tracked) {
+            BMPCProxyReaper.register(this);
+        }
+    }
+
+    /**
+     * Client of an existing Proxy that is not closed if it's garbage collected:
+     * for views on a Proxy whose lifecycle is managed elsewhere.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param proxyPort Existing Proxy Port to connect to
+     * @return Untracked client of the Proxy
+     */
+    static BMPCProxy untracked(BMPCHttpClient httpClient, int proxyPort) {
+        return new BMPCProxy(httpClient, proxyPort, false);
+    }
+
+    /**
+     * Close an existing Proxy, without creating a client for it that would be
+     * tracked by {@link BMPCProxyReaper}.
+     *
+     * Any client of the same Proxy stops being tracked as well.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     * @param proxyPort Port of the Proxy to close
+     * @throws BMPCUnableToCloseProxyException if the Proxy could not be closed
+     */
+    public static void closeProxy(BMPCHttpClient httpClient, int proxyPort) {
+        untracked(httpClient, proxyPort).close();
     }
 
     private int requestNewProxyPort(String upstreamHttpProxy) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.CREATE_PROXY);
         try {
             // Request BMP to create a new Proxy
             HttpPost request = new HttpPost(requestURIBuilder()
@@ -162,29 +276,54 @@ public class BMPCProxy {
                     new BasicNameValuePair("httpProxy", upstreamHttpProxy));
 
             // Execute request
-            CloseableHttpResponse response = HTTPclient.execute(request);
+            CloseableHttpResponse response = execute(request, timer);
 
             // Parse response into JSON
-            JsonObject createProxyResponseJson = httpResponseToJsonObject(response);
-            response.close();
+            JsonObject createProxyResponseJson;
+            try {
+                createProxyResponseJson = httpResponseToJsonObject(response, timer);
+            } finally {
+                response.close();
+            }
             if (null == createProxyResponseJson || !createProxyResponseJson.isJsonObject()) {
                 throw new RuntimeException("Unexpected Response JSON: " + createProxyResponseJson);
             }
 
             return  createProxyResponseJson.getAsJsonPrimitive("port").getAsInt();
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnableToConnectException(String.format(
                     "Unable to connect to BMP Proxy at '%s:%s'",
                     APIHost,
                     APIPort
             ), e);
+        } finally {
+            timer.stop();
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        close();
-        super.finalize();
+    /**
+     * Add a listener, notified every time this Proxy is used and when it's closed.
+     *
+     * @param listener Listener to add
+     */
+    public synchronized void addListener(BMPCProxyListener listener) {
+        BMPCProxyListener[] updated = new BMPCProxyListener[listeners.length + 1];
+        System.arraycopy(listeners, 0, updated, 0, listeners.length);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Remove a listener previously added.
+     *
+     * @param listener Listener to remove
+     */
+    public synchronized void removeListener(BMPCProxyListener listener) {
+        List<BMPCProxyListener> updated = new ArrayList<BMPCProxyListener>(Arrays.asList(listeners));
+        if (updated.remove(listener)) {
+            listeners = updated.isEmpty() ? NO_LISTENERS : updated.toArray(new BMPCProxyListener[updated.size()]);
+        }
     }
 
     /**
@@ -239,6 +378,15 @@ public class BMPCProxy {
         return proxyPort;
     }
 
+    /**
+     * Pooled HTTP Client used to talk to the BrowserMob Proxy REST API.
+     *
+     * @return Pooled HTTP Client
+     */
+    public BMPCHttpClient getHttpClient() {
+        return httpClient;
+    }
+
     /**
      * @see BMPCProxy#newHar(String, boolean, boolean, boolean)
      */
@@ -278,6 +426,7 @@ public class BMPCProxy {
                              boolean captureHeaders,
                              boolean captureContent,
                              boolean captureBinaryContent) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.NEW_HAR);
         try {
             // Request BMP to create a new HAR for this Proxy
             HttpPut request = new HttpPut(requestURIBuilder()
@@ -292,16 +441,26 @@ public class BMPCProxy {
                     new BasicNameValuePair("captureBinaryContent", Boolean.toString(captureBinaryContent)));
 
             // Execute request
-            CloseableHttpResponse response = HTTPclient.execute(request);
+            CloseableHttpResponse response = execute(request, timer);
 
-            // Parse response into JSON
-            JsonObject previousHar = httpResponseToJsonObject(response);
-            // Close HTTP Response
-            response.close();
+            try {
+                // Parse response into JSON
+                JsonObject previousHar = httpResponseToJsonObject(response, timer);
+
+                // The new HAR has no traffic yet
+                harCreated = true;
+                trafficCaptured = false;
 
-            return previousHar;
+                return previousHar;
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
         }
     }
 
@@ -322,6 +481,7 @@ public class BMPCProxy {
      *                of pages so far.
      */
     public void newPage(String pageRef) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.NEW_PAGE);
         try {
             // Request BMP to create a new HAR for this Proxy
             HttpPut request = new HttpPut(requestURIBuilder()
@@ -333,23 +493,33 @@ public class BMPCProxy {
                     new BasicNameValuePair("pageRef", pageRef));
 
             // Execute request
-            CloseableHttpResponse response = HTTPclient.execute(request);
-
-            // Check request was successful
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 200) {
-                throw new BMPCUnableToCreatePageException(
-                        "Invalid HTTP Response when attempting to create"
-                                + "new Page in HAR: "
-                                + statusCode
-                );
-            }
+            CloseableHttpResponse response = execute(request, timer);
 
-            // Close HTTP Response
-            response.close();
+            try {
+                // Check request was successful
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != 200) {
+                    throw new BMPCUnableToCreatePageException(
+                            "Invalid HTTP Response when attempting to create"
+                                    + "new Page in HAR: "
+                                    + statusCode
+                    );
+                }
+
+                // Release connection back to the pool
+                EntityUtils.consume(response.getEntity());
+
+                trafficCaptured = false;
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
 
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
         }
     }
 
@@ -362,23 +532,286 @@ public class BMPCProxy {
      * @return JsonObject in HAR format.
      */
     public JsonObject har() {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
         try {
-            // Request BMP to create a new HAR for this Proxy
-            HttpGet request = new HttpGet(requestURIBuilder()
-                    .setPath(proxyURIPath() + "/har")
-                    .build());
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
 
+            try {
+                // Parse response into JSON
+                return httpResponseToJsonObject(response, timer);
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Produces the HAR so far, decoding only the parts that match the given projection.
+     *
+     * Everything else (ex. headers, cookies, content) is skipped while the HAR is
+     * being received, and never allocated.
+     *
+     * @param projection Paths of the HAR to decode
+     * @return Projected HAR, or "null" if there is no HAR yet.
+     */
+    public JsonObject har(BMPCHarProjection projection) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
             // Execute request
-            CloseableHttpResponse response = HTTPclient.execute(request);
+            CloseableHttpResponse response = requestHar(timer);
 
-            // Parse response into JSON
-            JsonObject har = httpResponseToJsonObject(response);
-            // Close HTTP Response
-            response.close();
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null == entity) {
+                    return null;
+                }
+
+                // Project while receiving
+                JsonObject har = projection.read(new JsonReader(entityReader(entity, timer)));
+
+                // Release connection back to the pool
+                EntityUtils.consume(entity);
+
+                return har;
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Evaluates JsonPath expressions against the HAR so far.
+     *
+     * Only the parts of the HAR needed to evaluate the expressions are decoded
+     * (see {@link BMPCHarProjection#forJsonPaths(String...)}).
+     *
+     * @param jsonPaths JsonPath expressions (ex. <code>$.log.entries[*].request.url</code>)
+     * @return Result of every expression, in the same order, or "null" if there is no HAR yet.
+     */
+    public List<Object> harQuery(String... jsonPaths) {
+        JsonObject projectedHar = har(BMPCHarProjection.forJsonPaths(jsonPaths));
+        if (null == projectedHar) {
+            return null;
+        }
+
+        // Evaluate expressions on the (small) projected HAR
+        ReadContext context = JsonPath.parse(projectedHar.toString());
+        List<Object> results = new ArrayList<Object>(jsonPaths.length);
+        for (String jsonPath : jsonPaths) {
+            results.add(context.read(jsonPath));
+        }
+
+        return results;
+    }
+
+    /**
+     * @see BMPCProxy#typedHar(boolean)
+     */
+    public BMPCHar typedHar() {
+        return typedHar(true);
+    }
+
+    /**
+     * Produces the HAR so far, as a typed object.
+     *
+     * The HAR is parsed while it's being received, straight into the typed model,
+     * skipping everything that is not modelled (see {@link BMPCHarTypeAdapter}).
+     *
+     * @param includeContent If "false", Response Content (i.e. <code>response.content.text</code>)
+     *                       is skipped
+     * @return Typed HAR, or "null" if there is no HAR yet.
+     */
+    public BMPCHar typedHar(boolean includeContent) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null == entity) {
+                    return null;
+                }
+
+                // Parse while receiving
+                BMPCHar har = new BMPCHarTypeAdapter(includeContent).read(new JsonReader(entityReader(entity, timer)));
+
+                // Release connection back to the pool
+                EntityUtils.consume(entity);
+
+                return har;
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @see BMPCProxy#streamHarEntries(BMPCHarEntryVisitor, boolean)
+     */
+    public void streamHarEntries(BMPCHarEntryVisitor visitor) {
+        streamHarEntries(visitor, true);
+    }
+
+    /**
+     * Streams the HAR so far, calling back the visitor for every Page and Entry, in order.
+     *
+     * Differently from {@link BMPCProxy#har()}, the HAR is never held in
+     * memory as a whole: only one Page or Entry at a time is.
+     * Nothing is visited if there is no HAR yet.
+     *
+     * @param visitor Visitor to call back for every Page and Entry
+     * @param includeContent If "false", Response Content (i.e. <code>response.content.text</code>)
+     *                       is skipped and not handed to the visitor
+     */
+    public void streamHarEntries(BMPCHarEntryVisitor visitor, boolean includeContent) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null != entity) {
+                    // Walk the HAR while it's being received
+                    new BMPCHarStreamReader(includeContent).read(
+                            new JsonReader(entityReader(entity, timer)), visitor);
+
+                    // Release connection back to the pool
+                    EntityUtils.consume(entity);
+                }
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Produces the Pages and Entries added to the HAR since the given cursor.
+     *
+     * Meant for polling a HAR that keeps growing: pass {@link BMPCHarCursor#START}
+     * the first time, then the cursor of the previous increment
+     * (see {@link BMPCHarIncrement#getCursor()}).
+     *
+     * @param since Cursor returned by a previous call, or {@link BMPCHarCursor#START}
+     * @return Pages and Entries added since the cursor, with the cursor for the next call.
+     *         Empty if there is no HAR yet.
+     * @see BMPCProxy#harSince(BMPCHarCursor, BMPCHarEntryVisitor, boolean)
+     */
+    public BMPCHarIncrement harSince(BMPCHarCursor since) {
+        BMPCHarIncrement increment = new BMPCHarIncrement(since);
+        increment.setCursor(harSince(since, increment, true));
+        return increment;
+    }
 
-            return har;
+    /**
+     * Streams the Pages and Entries added to the HAR since the given cursor,
+     * calling back the visitor for every one of them, in order.
+     *
+     * BrowserMob Proxy always sends the whole HAR: the Pages and Entries already
+     * consumed are skipped while the HAR is being received, without being decoded
+     * (see {@link BMPCHarStreamReader#readSince(JsonReader, BMPCHarCursor, BMPCHarEntryVisitor)}).
+     * If the HAR was reset since the cursor was taken (ex. by {@link BMPCProxy#newHar()}),
+     * the new HAR is visited from the start and the returned cursor is marked as reset.
+     *
+     * @param since Cursor returned by a previous call, or {@link BMPCHarCursor#START}
+     * @param visitor Visitor to call back for every new Page and Entry
+     * @param includeContent If "false", Response Content (i.e. <code>response.content.text</code>)
+     *                       is skipped and not handed to the visitor
+     * @return Cursor to pass to the next call. Same as "since" if there is no HAR yet.
+     */
+    public BMPCHarCursor harSince(BMPCHarCursor since, BMPCHarEntryVisitor visitor, boolean includeContent) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null == entity) {
+                    return since;
+                }
+
+                // Walk the HAR while it's being received, skipping what was already consumed
+                BMPCHarCursor next = new BMPCHarStreamReader(includeContent).readSince(
+                        new JsonReader(entityReader(entity, timer)), since, visitor);
+
+                // Release connection back to the pool
+                EntityUtils.consume(entity);
+
+                return next;
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Writes the HAR so far to the given OutputStream, exactly as received
+     * from BrowserMob Proxy (decompressed, if it was received compressed).
+     *
+     * The HAR is streamed: it's never parsed nor held in memory as a whole.
+     * Nothing is written if there is no HAR yet.
+     * The OutputStream is not closed.
+     *
+     * @param outputStream Destination of the HAR content
+     */
+    public void harToStream(OutputStream outputStream) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null != entity) {
+                    InputStream content = entityContent(entity, timer);
+                    try {
+                        copy(content, outputStream);
+                    } finally {
+                        content.close();
+                    }
+                }
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
         }
     }
 
@@ -386,11 +819,101 @@ public class BMPCProxy {
      * Store current HAR content to file.
      * File, if it exists, will be overwritten with HAR content.
      *
+     * The HAR is streamed straight to disk, as received from BrowserMob Proxy.
+     *
      * @param destinationDir Path to destination Directory
      * @param destinationFile Path to destination File
      */
     public void harToFile(String destinationDir, String destinationFile) {
-        harToFile(this.har(), destinationDir, destinationFile);
+        harToFile(destinationDir, destinationFile, false);
+    }
+
+    /**
+     * Store current HAR content to file, optionally GZip compressed.
+     * File, if it exists, will be overwritten with HAR content.
+     *
+     * The HAR is streamed straight to disk, as received from BrowserMob Proxy:
+     * it's never parsed nor held in memory as a whole.
+     * If it was received GZip compressed (see {@link BMPCHttpClientConfig#setHarCompression(boolean)})
+     * and GZip is requested, the compressed bytes are stored untouched.
+     *
+     * @param destinationDir Path to destination Directory
+     * @param destinationFile Path to destination File
+     * @param gzip Compress the file content with GZip
+     */
+    public void harToFile(String destinationDir, String destinationFile, boolean gzip) {
+        harToFile(destinationDir, destinationFile, gzip ? BMPCHarFormat.JSON_GZIP : BMPCHarFormat.JSON);
+    }
+
+    /**
+     * Store current HAR content to file, in the given format.
+     * File, if it exists, will be overwritten with HAR content.
+     *
+     * The HAR is streamed straight to disk, converted to the format while it's received:
+     * it's never held in memory as a whole.
+     * If it was received GZip compressed (see {@link BMPCHttpClientConfig#setHarCompression(boolean)})
+     * and the format is {@link BMPCHarFormat#JSON_GZIP}, the compressed bytes are stored untouched.
+     *
+     * @param destinationDir Path to destination Directory
+     * @param destinationFile Path to destination File
+     * @param format Format of the file content
+     */
+    public void harToFile(String destinationDir, String destinationFile, BMPCHarFormat format) {
+        // Prepare HAR destination directory
+        File harDestinationDir = new File(destinationDir);
+        if (!harDestinationDir.exists()) harDestinationDir.mkdirs();
+
+        // Store HAR to disk
+        FileOutputStream harDestinationFileStream = null;
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+
+                // Prepare destination
+                harDestinationFileStream = new FileOutputStream(
+                        destinationDir + File.separator + destinationFile);
+
+                // Store HAR if any, otherwise empty file
+                if (null != entity) {
+                    // A HAR already GZip compressed on the wire is stored untouched
+                    boolean passThrough = format == BMPCHarFormat.JSON_GZIP && isGzipEncoded(entity);
+
+                    InputStream content = passThrough ? entity.getContent() : entityContent(entity, timer);
+                    try {
+                        if (passThrough || format == BMPCHarFormat.JSON) {
+                            transfer(content, harDestinationFileStream.getChannel());
+                        } else if (format == BMPCHarFormat.JSON_GZIP) {
+                            GZIPOutputStream gzipStream = new GZIPOutputStream(harDestinationFileStream, STREAM_BUFFER_SIZE);
+                            copy(content, gzipStream);
+                            gzipStream.finish();
+                        } else {
+                            format.transcode(contentReader(entity, content), harDestinationFileStream);
+                        }
+                    } finally {
+                        content.close();
+                    }
+                }
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToSaveHarToFileException(e);
+        } finally {
+            timer.stop();
+            if (null != harDestinationFileStream) {
+                try {
+                    harDestinationFileStream.close();
+                } catch (IOException e) {
+                    /* ignore */
+                }
+            }
+        }
     }
 
     /**
@@ -401,29 +924,68 @@ public class BMPCProxy {
      * @param destinationFile Path to destination File
      */
     public static void harToFile(JsonObject har, String destinationDir, String destinationFile) {
+        harToFile(har, destinationDir, destinationFile, BMPCHarFormat.JSON);
+    }
+
+    /**
+     * Utility to store HAR to file, in the given format.
+     *
+     * @param har JsonObject containing HAR data
+     * @param destinationDir Path to destination Directory
+     * @param destinationFile Path to destination File
+     * @param format Format of the file content
+     */
+    public static void harToFile(JsonObject har, String destinationDir, String destinationFile, BMPCHarFormat format) {
         // Prepare HAR destination directory
         File harDestinationDir = new File(destinationDir);
         if (!harDestinationDir.exists()) harDestinationDir.mkdirs();
 
         // Store HAR to disk
-        PrintWriter harDestinationFileWriter = null;
+        OutputStream harDestinationFileStream = null;
         try {
-            // Prepare Writer
-            harDestinationFileWriter = new PrintWriter(
-                    destinationDir + File.separator + destinationFile);
+            harDestinationFileStream = new BufferedOutputStream(new FileOutputStream(
+                    destinationDir + File.separator + destinationFile), STREAM_BUFFER_SIZE);
 
-            // Store HAR if any, otherwise empty file
+            // Store HAR if any (serialized straight into the file), otherwise empty file
             if (null != har) {
-                harDestinationFileWriter.print(har.toString());
-            } else {
-                harDestinationFileWriter.print("");
+                format.write(har, harDestinationFileStream);
             }
-        } catch (FileNotFoundException e) {
+            harDestinationFileStream.flush();
+        } catch (Exception e) {
             throw new BMPCUnableToSaveHarToFileException(e);
         } finally {
-            if (null != harDestinationFileWriter) {
-                harDestinationFileWriter.flush();
-                harDestinationFileWriter.close();
+            if (null != harDestinationFileStream) {
+                try {
+                    harDestinationFileStream.close();
+                } catch (IOException e) {
+                    /* ignore */
+                }
+            }
+        }
+    }
+
+    /**
+     * Utility to load a HAR stored to file, in the given format.
+     *
+     * @param sourceDir Path to source Directory
+     * @param sourceFile Path to source File
+     * @param format Format of the file content (see {@link BMPCHarFormat#forFileName(String)})
+     * @return JsonObject containing HAR data, or "null" if the file is empty
+     */
+    public static JsonObject harFromFile(String sourceDir, String sourceFile, BMPCHarFormat format) {
+        InputStream harSourceFileStream = null;
+        try {
+            harSourceFileStream = new FileInputStream(sourceDir + File.separator + sourceFile);
+            return format.read(harSourceFileStream);
+        } catch (Exception e) {
+            throw new BMPCUnableToReadHarFromFileException(e);
+        } finally {
+            if (null != harSourceFileStream) {
+                try {
+                    harSourceFileStream.close();
+                } catch (IOException e) {
+                    /* ignore */
+                }
             }
         }
     }
@@ -434,19 +996,108 @@ public class BMPCProxy {
      * This means that no HAR has been created yet and no traffic has
      * been recoreded yet either.
      *
+     * Only the HTTP Status of the response is looked at: the HAR itself
+     * is never downloaded (the connection is aborted instead).
+     * Once the HAR is known to exist, BrowserMob Proxy is not asked again.
+     *
      * @return "true" if it has not been used yet.
      */
     public boolean notUsedYet() {
-        return null == har();
+        if (harCreated) {
+            return false;
+        }
+
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                harCreated = null != harEntity(response);
+                return !harCreated;
+            } finally {
+                // Close HTTP Response, without reading the HAR
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
     }
 
     /**
-     * Closes the Proxy and releases the Proxy Client resources (ex. HTTPClient).
+     * Some traffic has been recorded in the HAR so far.
      *
+     * The HAR is read only up to its first Entry, then the connection is aborted.
+     * Once traffic is known to be there, BrowserMob Proxy is not asked again
+     * until the next {@link BMPCProxy#newHar()} or {@link BMPCProxy#newPage()}.
+     *
+     * @return "true" if the HAR contains at least one Entry.
+     */
+    public boolean hasTraffic() {
+        if (!trafficCaptured) {
+            trafficCaptured = harEntryCount(1) > 0;
+        }
+        return trafficCaptured;
+    }
+
+    /**
+     * Number of Entries recorded in the HAR so far.
+     *
+     * The HAR is read only up to the end of <code>log.entries</code>, without
+     * decoding any Entry, then the connection is aborted.
+     *
+     * @return Number of Entries in the HAR, "0" if there is no HAR yet.
+     */
+    public int harEntryCount() {
+        return harEntryCount(Integer.MAX_VALUE);
+    }
+
+    private int harEntryCount(int max) {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        try {
+            // Execute request
+            CloseableHttpResponse response = requestHar(timer);
+
+            try {
+                HttpEntity entity = harEntity(response);
+                if (null == entity) {
+                    return 0;
+                }
+                harCreated = true;
+
+                // Count while receiving
+                int count = BMPCHarStreamReader.countEntries(new JsonReader(entityReader(entity, timer)), max);
+                if (count > 0) {
+                    trafficCaptured = true;
+                }
+                return count;
+            } finally {
+                // Close HTTP Response, without reading the rest of the HAR
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnableToCreateHarException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Closes the Proxy.
+     *
+     * The pooled HTTP Client is not closed, as it's shared with other Proxies.
      * After this call the Proxy Client is rendered unusable and references
      * to it should be discarded.
+     *
+     * A Proxy Client that is discarded without being closed is closed anyway,
+     * some time after it's garbage collected (see {@link BMPCProxyReaper}).
      */
     public void close() {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.CLOSE_PROXY);
         try {
             // Request BMP to create a new HAR for this Proxy
             HttpDelete shutdownProxyDELETE = new HttpDelete(requestURIBuilder()
@@ -454,51 +1105,159 @@ public class BMPCProxy {
                     .build());
 
             // Execute request
-            CloseableHttpResponse response = HTTPclient.execute(shutdownProxyDELETE);
-
-            // Check request was successful
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 200) {
-                throw new BMPCUnableToCloseProxyException(String.format(
-                        "Invalid HTTP Response when attempting to close " +
-                                "Proxy '%d'. Status code: %d",
-                        proxyPort, statusCode));
-            }
-            // Close HTTP Response
-            response.close();
+            CloseableHttpResponse response = execute(shutdownProxyDELETE, timer);
 
-            // Close HTTP Client
-            HTTPclient.close();
+            try {
+                // Check request was successful
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != 200) {
+                    throw new BMPCUnableToCloseProxyException(String.format(
+                            "Invalid HTTP Response when attempting to close " +
+                                    "Proxy '%d'. Status code: %d",
+                            proxyPort, statusCode));
+                }
+
+                // Release connection back to the pool
+                EntityUtils.consume(response.getEntity());
+
+                // Closed: nothing left to reclaim, whichever client of this Proxy is collected
+                BMPCProxyReaper.unregister(httpClient, proxyPort);
+                for (BMPCProxyListener listener : listeners) {
+                    listener.proxyClosed(this);
+                }
+            } finally {
+                // Close HTTP Response
+                response.close();
+            }
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnableToCloseProxyException(e);
+        } finally {
+            timer.stop();
         }
     }
 
-    private JsonObject httpResponseToJsonObject(HttpResponse response) {
+    private CloseableHttpResponse requestHar(BMPCRequestTimer timer) throws URISyntaxException, IOException {
+        // Request BMP to return the HAR of this Proxy
+        HttpGet request = new HttpGet(requestURIBuilder()
+                .setPath(proxyURIPath() + "/har")
+                .build());
+
+        // Ask for a compressed HAR, if allowed
+        if (httpClient.getConfig().isHarCompression()) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        }
+
+        return execute(request, timer);
+    }
+
+    private CloseableHttpResponse execute(HttpUriRequest request, BMPCRequestTimer timer) throws IOException {
+        for (BMPCProxyListener listener : listeners) {
+            listener.proxyUsed(this);
+        }
+
+        CloseableHttpResponse response = HTTPclient.execute(request);
+        timer.responseReceived(response);
+        return response;
+    }
+
+    private HttpEntity harEntity(HttpResponse response) {
+        checkSuccessfulResponse(response);
+
+        // Request successful but there is No Content (i.e. no HAR yet)
+        return response.getStatusLine().getStatusCode() == 204
+                ? null
+                : response.getEntity();
+    }
+
+    private static void checkSuccessfulResponse(HttpResponse response) {
         int statusCode = response.getStatusLine().getStatusCode();
-        HttpEntity entity = response.getEntity();
 
         // Workout if we got back a good response
         if (statusCode < 200 || statusCode >= 300) {
-            throw new RuntimeException(String.format(
+            throw new BMPCUnexpectedStatusCodeException(String.format(
                     "Unexpected HTTP Status Code %d. Response: %s",
                     statusCode,
                     response
-            ));
+            ), statusCode);
+        }
+    }
+
+    private static Reader entityReader(HttpEntity entity, BMPCRequestTimer timer) throws IOException {
+        return contentReader(entity, entityContent(entity, timer));
+    }
+
+    private static Reader contentReader(HttpEntity entity, InputStream content) {
+        // Workout the charset
+        Charset charset = ContentType.getOrDefault(entity).getCharset();
+
+        return new InputStreamReader(content, null != charset ? charset : Consts.UTF_8);
+    }
+
+    private static InputStream entityContent(HttpEntity entity, BMPCRequestTimer timer) throws IOException {
+        Header contentEncoding = entity.getContentEncoding();
+        if (null == contentEncoding) {
+            return entity.getContent();
         }
 
+        // Decompress while reading
+        String encoding = contentEncoding.getValue().trim().toLowerCase(Locale.ENGLISH);
+        if (isGzipEncoded(entity)) {
+            return timer.decoding(encoding, new GZIPInputStream(entity.getContent(), STREAM_BUFFER_SIZE));
+        } else if (encoding.equals("deflate")) {
+            return timer.decoding(encoding, new DeflateInputStream(entity.getContent()));
+        } else if (encoding.equals("identity") || encoding.isEmpty()) {
+            return entity.getContent();
+        }
+        throw new IOException("Unsupported Content-Encoding: " + encoding);
+    }
+
+    private static boolean isGzipEncoded(HttpEntity entity) {
+        Header contentEncoding = entity.getContentEncoding();
+        if (null == contentEncoding) {
+            return false;
+        }
+
+        String encoding = contentEncoding.getValue().trim();
+        return encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip");
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+        int len;
+        while ((len = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, len);
+        }
+        outputStream.flush();
+    }
+
+    private static void transfer(InputStream inputStream, FileChannel fileChannel) throws IOException {
+        ReadableByteChannel sourceChannel = Channels.newChannel(inputStream);
+        long position = 0;
+        long transferred;
+        while ((transferred = fileChannel.transferFrom(sourceChannel, position, STREAM_BUFFER_SIZE)) > 0) {
+            position += transferred;
+        }
+    }
+
+    private JsonObject httpResponseToJsonObject(HttpResponse response, BMPCRequestTimer timer) {
+        checkSuccessfulResponse(response);
+
+        int statusCode = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+
         if (statusCode == 204) {
             // Request successful but the response has No Content
             return null;
         } else {
             try {
-                // Workout the charset
-                Charset charset = ContentType.getOrDefault(entity).getCharset();
-
                 // De-serialize
-                return GSON.fromJson(
-                        new InputStreamReader(entity.getContent(), null != charset ? charset : Consts.UTF_8),
-                        JsonObject.class);
+                JsonObject json = GSON.fromJson(entityReader(entity, timer), JsonObject.class);
+
+                // Release connection back to the pool
+                EntityUtils.consume(entity);
+
+                return json;
             } catch (IOException e) {
                 throw new BMPCUnableToParseJsonResponseException(e);
             }
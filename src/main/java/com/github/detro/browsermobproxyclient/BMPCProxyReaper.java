@@ -0,0 +1,263 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closes the Proxies whose {@link BMPCProxy} was garbage collected without being closed.
+ * <p/>
+ *
+ * Every {@link BMPCProxy} is tracked with a {@link PhantomReference}, instead of
+ * relying on <code>finalize()</code>: collecting a Proxy costs the GC nothing more
+ * than any other object, and no network I/O ever runs on the finalizer thread.
+ * <p/>
+ *
+ * A dedicated daemon thread waits for collected Proxies and hands them over,
+ * in batches, to a small pool of daemon threads that close them on BrowserMob Proxy
+ * (see {@link #CLOSE_PARALLELISM}).
+ * Every such Proxy is counted as a leak: closing Proxies explicitly,
+ * via {@link BMPCProxy#close()}, is always preferable.
+ * <p/>
+ *
+ * Many clients can wrap the same Proxy (i.e. same REST API and Proxy port): the
+ * Proxy is closed only once the last of them is collected, and closing it through
+ * any of them stops tracking all of them.
+ */
+public final class BMPCProxyReaper {
+
+    /** Maximum number of leaked Proxies being closed at the same time */
+    public static final int CLOSE_PARALLELISM = 4;
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final ReferenceQueue<BMPCProxy> QUEUE = new ReferenceQueue<BMPCProxy>();
+    // Clients tracked, by Proxy they wrap. Guarded by itself.
+    private static final Map<String, List<ProxyReference>> REFERENCES = new HashMap<String, List<ProxyReference>>();
+    private static int trackedCount = 0;
+
+    private static final AtomicLong LEAKED = new AtomicLong();
+    private static final AtomicLong LEAKS_CLOSED = new AtomicLong();
+    private static final AtomicLong LEAKS_FAILED = new AtomicLong();
+
+    private static final ExecutorService CLOSER = new ThreadPoolExecutor(
+            CLOSE_PARALLELISM, CLOSE_PARALLELISM,
+            30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            daemonThreadFactory("BMPCProxyReaper-close"));
+
+    static {
+        ((ThreadPoolExecutor) CLOSER).allowCoreThreadTimeOut(true);
+
+        Thread reaper = daemonThreadFactory("BMPCProxyReaper").newThread(new Runnable() {
+            @Override
+            public void run() {
+                reap();
+            }
+        });
+        reaper.start();
+    }
+
+    /**
+     * Tracks a single Proxy, without keeping it reachable.
+     */
+    private static final class ProxyReference extends PhantomReference<BMPCProxy> {
+        private final BMPCHttpClient httpClient;
+        private final int proxyPort;
+        private final String key;
+
+        private ProxyReference(BMPCProxy proxy) {
+            super(proxy, QUEUE);
+            this.httpClient = proxy.getHttpClient();
+            this.proxyPort = proxy.getProxyPort();
+            this.key = key(httpClient, proxyPort);
+        }
+    }
+
+    private BMPCProxyReaper() {
+    }
+
+    /**
+     * Start tracking a client of a Proxy.
+     *
+     * @param proxy Client to close the Proxy of, if it's collected before being closed
+     */
+    static void register(BMPCProxy proxy) {
+        ProxyReference reference = new ProxyReference(proxy);
+        synchronized (REFERENCES) {
+            List<ProxyReference> references = REFERENCES.get(reference.key);
+            if (null == references) {
+                references = new ArrayList<ProxyReference>(1);
+                REFERENCES.put(reference.key, references);
+            }
+            references.add(reference);
+            ++trackedCount;
+        }
+    }
+
+    /**
+     * The Proxy was closed explicitly: stop tracking all its clients.
+     *
+     * @param httpClient Pooled HTTP Client towards the REST API of the Proxy
+     * @param proxyPort Port of the Proxy
+     */
+    static void unregister(BMPCHttpClient httpClient, int proxyPort) {
+        List<ProxyReference> references;
+        synchronized (REFERENCES) {
+            references = REFERENCES.remove(key(httpClient, proxyPort));
+            if (null == references) {
+                return;
+            }
+            trackedCount -= references.size();
+        }
+        for (ProxyReference reference : references) {
+            reference.clear();
+        }
+    }
+
+    /**
+     * @return Number of clients currently tracked (i.e. neither closed nor collected yet)
+     */
+    public static int getTrackedCount() {
+        synchronized (REFERENCES) {
+            return trackedCount;
+        }
+    }
+
+    /**
+     * @return Number of Proxies that were collected without being closed
+     */
+    public static long getLeakCount() {
+        return LEAKED.get();
+    }
+
+    /**
+     * @return Number of leaked Proxies that were then closed on BrowserMob Proxy
+     */
+    public static long getLeaksClosedCount() {
+        return LEAKS_CLOSED.get();
+    }
+
+    /**
+     * @return Number of leaked Proxies that could not be closed on BrowserMob Proxy
+     *         (ex. they were already closed, or BrowserMob Proxy was gone)
+     */
+    public static long getLeaksFailedCount() {
+        return LEAKS_FAILED.get();
+    }
+
+    private static void reap() {
+        while (true) {
+            try {
+                // Wait for the first collected Proxy, then take whatever else is ready
+                List<ProxyReference> batch = new ArrayList<ProxyReference>();
+                Reference<? extends BMPCProxy> reference = QUEUE.remove();
+                do {
+                    ProxyReference proxyReference = (ProxyReference) reference;
+                    if (isLastReference(proxyReference)) {
+                        batch.add(proxyReference);
+                    }
+                } while (batch.size() < MAX_BATCH_SIZE && null != (reference = QUEUE.poll()));
+
+                if (!batch.isEmpty()) {
+                    LEAKED.addAndGet(batch.size());
+                    close(batch);
+                }
+            } catch (InterruptedException e) {
+                /* daemon thread: keep reaping */
+            } catch (Throwable e) {
+                /* never let the reaper die */
+            }
+        }
+    }
+
+    /**
+     * Stop tracking a collected client.
+     *
+     * @return "true" if it was the last client tracked for its Proxy, which is then leaked
+     */
+    private static boolean isLastReference(ProxyReference reference) {
+        synchronized (REFERENCES) {
+            List<ProxyReference> references = REFERENCES.get(reference.key);
+            if (null == references || !references.remove(reference)) {
+                // Closed meanwhile
+                return false;
+            }
+            --trackedCount;
+            if (!references.isEmpty()) {
+                // Other clients of the same Proxy are still around
+                return false;
+            }
+            REFERENCES.remove(reference.key);
+            return true;
+        }
+    }
+
+    private static String key(BMPCHttpClient httpClient, int proxyPort) {
+        return httpClient.getAPIHost() + ":" + httpClient.getAPIPort() + "/" + proxyPort;
+    }
+
+    private static void close(List<ProxyReference> batch) {
+        for (final ProxyReference leaked : batch) {
+            CLOSER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        BMPCProxy.closeProxy(leaked.httpClient, leaked.proxyPort);
+                        LEAKS_CLOSED.incrementAndGet();
+                    } catch (Throwable e) {
+                        LEAKS_FAILED.incrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
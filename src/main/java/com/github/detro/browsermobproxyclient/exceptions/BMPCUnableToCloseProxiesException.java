@@ -0,0 +1,62 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.exceptions;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Thrown when closing many Proxies at once, and some of them fail to close.
+ *
+ * All the Proxies are attempted: the failures of each one are available
+ * via {@link BMPCUnableToCloseProxiesException#getFailures()}.
+ */
+public class BMPCUnableToCloseProxiesException extends BMPCUnableToCloseProxyException {
+
+    private final SortedMap<Integer, Throwable> failures;
+
+    public BMPCUnableToCloseProxiesException(Map<Integer, Throwable> failures) {
+        this(String.format("Unable to close %d Proxies: %s", failures.size(), new TreeMap<Integer, Throwable>(failures).keySet()), failures);
+    }
+
+    public BMPCUnableToCloseProxiesException(String message, Map<Integer, Throwable> failures) {
+        super(message, failures.isEmpty() ? null : failures.values().iterator().next());
+        this.failures = Collections.unmodifiableSortedMap(new TreeMap<Integer, Throwable>(failures));
+    }
+
+    /**
+     * Failures, by port of the Proxy that failed to close.
+     *
+     * @return Failures, by Proxy port
+     */
+    public SortedMap<Integer, Throwable> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Encoder and decoder of JSON documents as CBOR (Concise Binary Object Representation, RFC 7049).
+ * <p/>
+ *
+ * Objects and arrays are always written with indefinite length, so documents can be
+ * transcoded from JSON while they are read, without knowing sizes in advance.
+ * Integers are written in the smallest form that fits, decimals as single precision
+ * if that's lossless, double precision otherwise.
+ * <p/>
+ *
+ * The decoder accepts any CBOR document that maps to JSON (byte strings and tags are
+ * not expected in a HAR: tags are ignored, byte strings are decoded as UTF-8 text).
+ */
+final class BMPCHarCbor {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int FALSE = 0xF4;
+    private static final int TRUE = 0xF5;
+    private static final int NULL = 0xF6;
+    private static final int UNDEFINED = 0xF7;
+    private static final int FLOAT16 = 0xF9;
+    private static final int FLOAT32 = 0xFA;
+    private static final int FLOAT64 = 0xFB;
+    private static final int BREAK = 0xFF;
+    private static final int INDEFINITE = 31;
+
+    private BMPCHarCbor() {
+    }
+
+    /**
+     * Encode a JSON tree. The OutputStream is flushed, not closed.
+     *
+     * @param json JSON to encode
+     * @param out Destination of the CBOR
+     * @throws IOException if writing fails
+     */
+    static void write(JsonElement json, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        writeElement(json, data);
+        data.flush();
+    }
+
+    /**
+     * Encode a JSON document while reading it: it's never held in memory as a whole.
+     * The OutputStream is flushed, not closed.
+     *
+     * @param reader JSON to encode
+     * @param out Destination of the CBOR
+     * @throws IOException if reading or writing fails
+     */
+    static void transcode(JsonReader reader, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    data.writeByte(MAJOR_MAP << 5 | INDEFINITE);
+                    ++depth;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    data.writeByte(BREAK);
+                    --depth;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    data.writeByte(MAJOR_ARRAY << 5 | INDEFINITE);
+                    ++depth;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    data.writeByte(BREAK);
+                    --depth;
+                    break;
+                case NAME:
+                    writeText(reader.nextName(), data);
+                    break;
+                case STRING:
+                    writeText(reader.nextString(), data);
+                    break;
+                case NUMBER:
+                    writeNumber(reader.nextString(), data);
+                    break;
+                case BOOLEAN:
+                    data.writeByte(reader.nextBoolean() ? TRUE : FALSE);
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    data.writeByte(NULL);
+                    break;
+                default:
+                    throw new IOException("Unexpected JSON token: " + reader.peek());
+            }
+        } while (depth > 0);
+        data.flush();
+    }
+
+    /**
+     * Decode a CBOR document.
+     *
+     * @param in Source of the CBOR
+     * @return Decoded JSON
+     * @throws IOException if reading fails or the CBOR is malformed
+     */
+    static JsonElement read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+        JsonElement json = readElement(data, data.readUnsignedByte());
+        if (json == null) {
+            throw new IOException("Unexpected CBOR break");
+        }
+        return json;
+    }
+
+    private static void writeElement(JsonElement json, DataOutputStream data) throws IOException {
+        if (json.isJsonObject()) {
+            data.writeByte(MAJOR_MAP << 5 | INDEFINITE);
+            for (Map.Entry<String, JsonElement> member : json.getAsJsonObject().entrySet()) {
+                writeText(member.getKey(), data);
+                writeElement(member.getValue(), data);
+            }
+            data.writeByte(BREAK);
+        } else if (json.isJsonArray()) {
+            data.writeByte(MAJOR_ARRAY << 5 | INDEFINITE);
+            for (JsonElement element : json.getAsJsonArray()) {
+                writeElement(element, data);
+            }
+            data.writeByte(BREAK);
+        } else if (json.isJsonNull()) {
+            data.writeByte(NULL);
+        } else {
+            JsonPrimitive primitive = json.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                data.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                writeNumber(primitive.getAsNumber().toString(), data);
+            } else {
+                writeText(primitive.getAsString(), data);
+            }
+        }
+    }
+
+    private static void writeText(String text, DataOutputStream data) throws IOException {
+        byte[] bytes = text.getBytes(UTF_8);
+        writeHead(MAJOR_TEXT, bytes.length, data);
+        data.write(bytes);
+    }
+
+    private static void writeNumber(String literal, DataOutputStream data) throws IOException {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= 0) {
+                    writeHead(MAJOR_UNSIGNED, value, data);
+                } else {
+                    writeHead(MAJOR_NEGATIVE, -1 - value, data);
+                }
+                return;
+            } catch (NumberFormatException e) {
+                // Beyond long, but CBOR integers go up to 2^64 - 1 (and down to -2^64)
+                BigInteger value = new BigInteger(literal);
+                boolean negative = value.signum() < 0;
+                BigInteger argument = negative ? value.negate().subtract(BigInteger.ONE) : value;
+                if (argument.bitLength() <= 64) {
+                    data.writeByte((negative ? MAJOR_NEGATIVE : MAJOR_UNSIGNED) << 5 | 27);
+                    data.writeLong(argument.longValue());
+                    return;
+                }
+                /* too big: written as decimal */
+            }
+        }
+
+        double value = Double.parseDouble(literal);
+        if ((double) (float) value == value) {
+            data.writeByte(FLOAT32);
+            data.writeFloat((float) value);
+        } else {
+            data.writeByte(FLOAT64);
+            data.writeDouble(value);
+        }
+    }
+
+    private static void writeHead(int major, long value, DataOutputStream data) throws IOException {
+        if (value < 24) {
+            data.writeByte(major << 5 | (int) value);
+        } else if (value <= 0xFFL) {
+            data.writeByte(major << 5 | 24);
+            data.writeByte((int) value);
+        } else if (value <= 0xFFFFL) {
+            data.writeByte(major << 5 | 25);
+            data.writeShort((int) value);
+        } else if (value <= 0xFFFFFFFFL) {
+            data.writeByte(major << 5 | 26);
+            data.writeInt((int) value);
+        } else {
+            data.writeByte(major << 5 | 27);
+            data.writeLong(value);
+        }
+    }
+
+    // Returns "null" when the initial byte is a BREAK
+    private static JsonElement readElement(DataInputStream data, int initialByte) throws IOException {
+        if (initialByte == BREAK) {
+            return null;
+        }
+
+        int major = initialByte >>> 5;
+        int info = initialByte & 0x1F;
+        switch (major) {
+            case MAJOR_UNSIGNED: {
+                long value = readArgument(data, info);
+                return new JsonPrimitive(value >= 0 ? (Number) value : unsigned(value));
+            }
+            case MAJOR_NEGATIVE: {
+                long value = readArgument(data, info);
+                return new JsonPrimitive(value >= 0
+                        ? (Number) (-1 - value)
+                        : BigInteger.valueOf(-1).subtract(unsigned(value)));
+            }
+            case MAJOR_BYTES:
+            case MAJOR_TEXT:
+                return new JsonPrimitive(readText(data, major, info));
+            case MAJOR_ARRAY: {
+                JsonArray array = new JsonArray();
+                if (info == INDEFINITE) {
+                    JsonElement element;
+                    while (null != (element = readElement(data, data.readUnsignedByte()))) {
+                        array.add(element);
+                    }
+                } else {
+                    for (long i = readArgument(data, info); i > 0; --i) {
+                        array.add(readItem(data));
+                    }
+                }
+                return array;
+            }
+            case MAJOR_MAP: {
+                JsonObject object = new JsonObject();
+                if (info == INDEFINITE) {
+                    int keyByte;
+                    while ((keyByte = data.readUnsignedByte()) != BREAK) {
+                        object.add(readKey(data, keyByte), readItem(data));
+                    }
+                } else {
+                    for (long i = readArgument(data, info); i > 0; --i) {
+                        object.add(readKey(data, data.readUnsignedByte()), readItem(data));
+                    }
+                }
+                return object;
+            }
+            case MAJOR_TAG:
+                // Tags add semantics JSON can't represent: keep the tagged item only
+                readArgument(data, info);
+                return readItem(data);
+            default:
+                return readSimple(data, initialByte);
+        }
+    }
+
+    private static JsonElement readItem(DataInputStream data) throws IOException {
+        JsonElement element = readElement(data, data.readUnsignedByte());
+        if (null == element) {
+            throw new IOException("Unexpected CBOR break");
+        }
+        return element;
+    }
+
+    private static String readKey(DataInputStream data, int initialByte) throws IOException {
+        int major = initialByte >>> 5;
+        if (major != MAJOR_TEXT && major != MAJOR_BYTES) {
+            // Not a string: use its JSON representation
+            JsonElement key = readElement(data, initialByte);
+            if (null == key) {
+                throw new IOException("Unexpected CBOR break");
+            }
+            return key.isJsonPrimitive() ? key.getAsString() : key.toString();
+        }
+        return readText(data, major, initialByte & 0x1F);
+    }
+
+    private static String readText(DataInputStream data, int major, int info) throws IOException {
+        if (info != INDEFINITE) {
+            long length = readArgument(data, info);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("CBOR string too long: " + length);
+            }
+            byte[] bytes = new byte[(int) length];
+            data.readFully(bytes);
+            return new String(bytes, UTF_8);
+        }
+
+        // Indefinite length: concatenation of definite length chunks
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        int chunkByte;
+        while ((chunkByte = data.readUnsignedByte()) != BREAK) {
+            if (chunkByte >>> 5 != major || (chunkByte & 0x1F) == INDEFINITE) {
+                throw new IOException("Malformed CBOR string chunk");
+            }
+            byte[] chunk = new byte[(int) readArgument(data, chunkByte & 0x1F)];
+            data.readFully(chunk);
+            chunks.write(chunk);
+        }
+        return new String(chunks.toByteArray(), UTF_8);
+    }
+
+    private static JsonElement readSimple(DataInputStream data, int initialByte) throws IOException {
+        switch (initialByte) {
+            case FALSE:
+                return new JsonPrimitive(false);
+            case TRUE:
+                return new JsonPrimitive(true);
+            case NULL:
+            case UNDEFINED:
+                return JsonNull.INSTANCE;
+            case FLOAT16:
+                return new JsonPrimitive(halfToDouble(data.readUnsignedShort()));
+            case FLOAT32:
+                return new JsonPrimitive((double) data.readFloat());
+            case FLOAT64:
+                return new JsonPrimitive(data.readDouble());
+            default:
+                throw new IOException(String.format("Unsupported CBOR initial byte 0x%02X", initialByte));
+        }
+    }
+
+    private static long readArgument(DataInputStream data, int info) throws IOException {
+        if (info < 24) {
+            return info;
+        }
+        switch (info) {
+            case 24:
+                return data.readUnsignedByte();
+            case 25:
+                return data.readUnsignedShort();
+            case 26:
+                return data.readInt() & 0xFFFFFFFFL;
+            case 27:
+                return data.readLong();
+            default:
+                throw new IOException("Malformed CBOR argument: " + info);
+        }
+    }
+
+    private static BigInteger unsigned(long value) {
+        return BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63);
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1F;
+        int mantissa = half & 0x3FF;
+        double value;
+        if (exponent == 0) {
+            value = mantissa * Math.pow(2, -24);
+        } else if (exponent != 31) {
+            value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+/**
+ * Position in a HAR that is still being captured: how many Pages and Entries
+ * have been consumed so far.
+ * <p/>
+ *
+ * Cursors are immutable and are produced by
+ * {@link com.github.detro.browsermobproxyclient.BMPCProxy#harSince(BMPCHarCursor)}:
+ * start from {@link BMPCHarCursor#START} and pass the cursor returned by every call
+ * to the next one.
+ * <p/>
+ *
+ * A cursor also remembers the first Page of the HAR it was taken from.
+ * If the HAR was reset in the meantime (ex. by
+ * {@link com.github.detro.browsermobproxyclient.BMPCProxy#newHar()}), the new HAR
+ * is read from the start and the cursor returned is marked as such (see {@link #isReset()}).
+ */
+public final class BMPCHarCursor {
+
+    /** Cursor at the very beginning of any HAR */
+    public static final BMPCHarCursor START = new BMPCHarCursor(0, 0, null, false);
+
+    private final int pageCount;
+    private final int entryCount;
+    private final String firstPage;
+    private final boolean reset;
+
+    BMPCHarCursor(int pageCount, int entryCount, String firstPage, boolean reset) {
+        this.pageCount = pageCount;
+        this.entryCount = entryCount;
+        this.firstPage = firstPage;
+        this.reset = reset;
+    }
+
+    /**
+     * @return Number of Pages consumed so far
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return Number of Entries consumed so far
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return "true" if the HAR was found reset when this cursor was produced,
+     *         so everything before it was read again from the start
+     */
+    public boolean isReset() {
+        return reset;
+    }
+
+    String getFirstPage() {
+        return firstPage;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BMPCHarCursor)) return false;
+
+        BMPCHarCursor that = (BMPCHarCursor) o;
+        return pageCount == that.pageCount
+                && entryCount == that.entryCount
+                && reset == that.reset
+                && (null == firstPage ? null == that.firstPage : firstPage.equals(that.firstPage));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = pageCount;
+        result = 31 * result + entryCount;
+        result = 31 * result + (null != firstPage ? firstPage.hashCode() : 0);
+        result = 31 * result + (reset ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BMPCHarCursor{pages=" + pageCount + ", entries=" + entryCount + (reset ? ", reset" : "") + "}";
+    }
+}
@@ -0,0 +1,85 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+/**
+ * HAR Entry: a single HTTP Request/Response exchange.
+ */
+public class BMPCHarEntry {
+
+    String pageref;
+    String startedDateTime;
+    long time = -1;
+    BMPCHarRequest request;
+    BMPCHarResponse response;
+    BMPCHarTimings timings;
+    String serverIPAddress;
+    String connection;
+    String comment;
+
+    public String getPageref() {
+        return pageref;
+    }
+
+    public String getStartedDateTime() {
+        return startedDateTime;
+    }
+
+    /**
+     * Total elapsed time of the Request, in milliseconds.
+     *
+     * @return Total elapsed time of the Request
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public BMPCHarRequest getRequest() {
+        return request;
+    }
+
+    public BMPCHarResponse getResponse() {
+        return response;
+    }
+
+    public BMPCHarTimings getTimings() {
+        return timings;
+    }
+
+    public String getServerIPAddress() {
+        return serverIPAddress;
+    }
+
+    public String getConnection() {
+        return connection;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+}
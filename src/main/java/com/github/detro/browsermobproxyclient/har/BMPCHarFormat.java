@@ -0,0 +1,190 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formats a HAR can be stored in.
+ * <p/>
+ *
+ * Every format can write a HAR already in memory, transcode a HAR while it's being
+ * read as JSON (i.e. streaming, without ever holding it in memory as a whole),
+ * and read back what it wrote.
+ * <ul>
+ *     <li>{@link BMPCHarFormat#JSON}: plain JSON, as produced by BrowserMob Proxy</li>
+ *     <li>{@link BMPCHarFormat#JSON_GZIP}: GZip compressed JSON</li>
+ *     <li>{@link BMPCHarFormat#CBOR}: CBOR (RFC 7049), a binary encoding of JSON</li>
+ *     <li>{@link BMPCHarFormat#CBOR_GZIP}: GZip compressed CBOR</li>
+ * </ul>
+ */
+public enum BMPCHarFormat {
+
+    JSON(".har", false, false),
+    JSON_GZIP(".har.gz", false, true),
+    CBOR(".har.cbor", true, false),
+    CBOR_GZIP(".har.cbor.gz", true, true);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Produces the same output of JsonObject#toString()
+    private static final Gson JSON_WRITER_GSON = new GsonBuilder()
+            .serializeNulls()
+            .disableHtmlEscaping()
+            .create();
+
+    private final String fileExtension;
+    private final boolean cbor;
+    private final boolean gzip;
+
+    private BMPCHarFormat(String fileExtension, boolean cbor, boolean gzip) {
+        this.fileExtension = fileExtension;
+        this.cbor = cbor;
+        this.gzip = gzip;
+    }
+
+    /**
+     * @return Conventional file extension of the format (ex. ".har.gz")
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * @return "true" if the format is GZip compressed
+     */
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * Workout the format of a file from its extension.
+     *
+     * @param fileName Name of the file
+     * @return Format of the file, {@link BMPCHarFormat#JSON} if the extension is not recognised
+     */
+    public static BMPCHarFormat forFileName(String fileName) {
+        // Longest extensions first
+        for (BMPCHarFormat format : new BMPCHarFormat[]{ CBOR_GZIP, CBOR, JSON_GZIP }) {
+            if (fileName.endsWith(format.fileExtension)) {
+                return format;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Write a HAR in this format.
+     * The OutputStream is not closed.
+     *
+     * @param har HAR to write
+     * @param out Destination
+     * @throws IOException if writing fails
+     */
+    public void write(JsonObject har, OutputStream out) throws IOException {
+        OutputStream destination = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        if (cbor) {
+            BMPCHarCbor.write(har, destination);
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(destination, UTF_8), BUFFER_SIZE);
+            JSON_WRITER_GSON.toJson(har, writer);
+            writer.flush();
+        }
+        finish(destination);
+    }
+
+    /**
+     * Write a HAR in this format, while reading it as JSON.
+     * The HAR is never held in memory as a whole.
+     * The OutputStream is not closed.
+     *
+     * @param json Source of the HAR, as JSON
+     * @param out Destination
+     * @throws IOException if reading or writing fails
+     */
+    public void transcode(Reader json, OutputStream out) throws IOException {
+        OutputStream destination = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        if (cbor) {
+            BMPCHarCbor.transcode(new JsonReader(json), destination);
+        } else {
+            // Already JSON: copy as is
+            Writer writer = new OutputStreamWriter(destination, UTF_8);
+            char[] buffer = new char[BUFFER_SIZE / 2];
+            int len;
+            while ((len = json.read(buffer)) != -1) {
+                writer.write(buffer, 0, len);
+            }
+            writer.flush();
+        }
+        finish(destination);
+    }
+
+    /**
+     * Read a HAR written in this format.
+     * The InputStream is not closed.
+     *
+     * @param in Source of the HAR
+     * @return HAR, or "null" if the source is empty
+     * @throws IOException if reading fails or the HAR is malformed
+     */
+    public JsonObject read(InputStream in) throws IOException {
+        PushbackInputStream source = new PushbackInputStream(in, 1);
+        int first = source.read();
+        if (first == -1) {
+            return null;
+        }
+        source.unread(first);
+
+        InputStream content = gzip ? new GZIPInputStream(source, BUFFER_SIZE) : source;
+        JsonElement har = cbor
+                ? BMPCHarCbor.read(content)
+                : new JsonParser().parse(new BufferedReader(new InputStreamReader(content, UTF_8), BUFFER_SIZE));
+        if (!har.isJsonObject()) {
+            throw new IOException("HAR is not a JSON Object");
+        }
+        return har.getAsJsonObject();
+    }
+
+    private static void finish(OutputStream destination) throws IOException {
+        if (destination instanceof GZIPOutputStream) {
+            ((GZIPOutputStream) destination).finish();
+        }
+        destination.flush();
+    }
+}
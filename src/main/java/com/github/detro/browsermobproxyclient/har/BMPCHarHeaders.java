@@ -0,0 +1,90 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+/**
+ * Compact, read-only list of HAR Headers (name/value pairs).
+ * <p/>
+ *
+ * Names and values are stored interleaved in a single array, instead of
+ * one object per Header.
+ */
+public class BMPCHarHeaders {
+
+    public static final BMPCHarHeaders EMPTY = new BMPCHarHeaders(new String[0]);
+
+    private final String[] namesAndValues;
+
+    BMPCHarHeaders(String[] namesAndValues) {
+        this.namesAndValues = namesAndValues;
+    }
+
+    /**
+     * Number of Headers.
+     *
+     * @return Number of Headers
+     */
+    public int size() {
+        return namesAndValues.length / 2;
+    }
+
+    /**
+     * Name of the Header at the given position.
+     *
+     * @param index Position of the Header
+     * @return Name of the Header
+     */
+    public String getName(int index) {
+        return namesAndValues[index * 2];
+    }
+
+    /**
+     * Value of the Header at the given position.
+     *
+     * @param index Position of the Header
+     * @return Value of the Header
+     */
+    public String getValue(int index) {
+        return namesAndValues[index * 2 + 1];
+    }
+
+    /**
+     * Value of the first Header with the given name (case-insensitive).
+     *
+     * @param name Name of the Header
+     * @return Value of the Header, or "null" if not present
+     */
+    public String get(String name) {
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (namesAndValues[i].equalsIgnoreCase(name)) {
+                return namesAndValues[i + 1];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pages and Entries added to a HAR since a given {@link BMPCHarCursor},
+ * plus the cursor to use for the next increment.
+ * <p/>
+ *
+ * See {@link com.github.detro.browsermobproxyclient.BMPCProxy#harSince(BMPCHarCursor)}.
+ */
+public class BMPCHarIncrement implements BMPCHarEntryVisitor {
+
+    private final List<JsonObject> pages = new ArrayList<JsonObject>();
+    private final List<JsonObject> entries = new ArrayList<JsonObject>();
+    private BMPCHarCursor cursor;
+
+    /**
+     * Create an empty increment.
+     *
+     * @param cursor Cursor the increment starts from
+     */
+    public BMPCHarIncrement(BMPCHarCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void visitPage(JsonObject page) {
+        pages.add(page);
+    }
+
+    @Override
+    public void visitEntry(JsonObject entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * @return Pages added since the previous cursor, in order
+     */
+    public List<JsonObject> getPages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    /**
+     * @return Entries added since the previous cursor, in order
+     */
+    public List<JsonObject> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return Cursor to pass to the next call, to receive only what's added after this increment
+     */
+    public BMPCHarCursor getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return "true" if the HAR was reset since the previous cursor: this increment
+     *         then contains the new HAR from the start
+     */
+    public boolean isReset() {
+        return cursor.isReset();
+    }
+
+    /**
+     * @param cursor Cursor to pass to the next call
+     */
+    public void setCursor(BMPCHarCursor cursor) {
+        this.cursor = cursor;
+    }
+}
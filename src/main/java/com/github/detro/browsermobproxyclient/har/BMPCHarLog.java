@@ -0,0 +1,68 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HAR Log: the root of the HTTP ARchive data.
+ */
+public class BMPCHarLog {
+
+    String version;
+    BMPCHarCreator creator;
+    BMPCHarCreator browser;
+    List<BMPCHarPage> pages = new ArrayList<BMPCHarPage>();
+    List<BMPCHarEntry> entries = new ArrayList<BMPCHarEntry>();
+    String comment;
+
+    public String getVersion() {
+        return version;
+    }
+
+    public BMPCHarCreator getCreator() {
+        return creator;
+    }
+
+    public BMPCHarCreator getBrowser() {
+        return browser;
+    }
+
+    public List<BMPCHarPage> getPages() {
+        return pages;
+    }
+
+    public List<BMPCHarEntry> getEntries() {
+        return entries;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Projection of a HAR onto a set of paths: only the parts of the HAR that match
+ * are decoded, everything else is skipped while streaming.
+ * <p/>
+ *
+ * Paths use a subset of the JsonPath syntax: fields separated by dots, optionally
+ * followed by <code>[*]</code> (all the elements of an array) or <code>[N]</code>
+ * (the N-th element of an array). For example:
+ * <ul>
+ *     <li><code>$.log.entries[*].request.url</code></li>
+ *     <li><code>log.entries[*].response.status</code></li>
+ *     <li><code>$.log.pages[0]</code></li>
+ * </ul>
+ * The matched values are decoded with all their content. Array elements that
+ * are not matched are replaced by <code>null</code>, so that positions are preserved.
+ * If an array is selected both by <code>[*]</code> and <code>[N]</code>, the N-th
+ * element matches all the paths.
+ * <p/>
+ *
+ * Use {@link BMPCHarProjection#forJsonPaths(String...)} to project onto the
+ * parts needed to evaluate arbitrary JsonPath expressions: paths are cut at the
+ * first step this class doesn't support (ex. filters, deep scans) and the whole
+ * subtree from there on is decoded.
+ */
+public class BMPCHarProjection {
+
+    private final JsonParser parser = new JsonParser();
+    private final Node root = new Node();
+
+    private static class Node {
+        boolean whole = false;
+        Map<String, Node> fields = null;
+        Node anyElement = null;
+        Map<Integer, Node> elements = null;
+        int maxElement = -1;
+
+        Node field(String name) {
+            if (null == fields) fields = new HashMap<String, Node>();
+            Node child = fields.get(name);
+            if (null == child) {
+                child = new Node();
+                fields.put(name, child);
+            }
+            return child;
+        }
+
+        Node anyElement() {
+            if (null == anyElement) anyElement = new Node();
+            return anyElement;
+        }
+
+        Node element(int index) {
+            if (null == elements) elements = new HashMap<Integer, Node>();
+            Node child = elements.get(index);
+            if (null == child) {
+                child = new Node();
+                elements.put(index, child);
+                maxElement = Math.max(maxElement, index);
+            }
+            return child;
+        }
+
+        /**
+         * Make this node match also everything the other one matches.
+         */
+        void merge(Node other) {
+            whole |= other.whole;
+            if (null != other.fields) {
+                for (Map.Entry<String, Node> field : other.fields.entrySet()) {
+                    field(field.getKey()).merge(field.getValue());
+                }
+            }
+            if (null != other.anyElement) {
+                anyElement().merge(other.anyElement);
+            }
+            if (null != other.elements) {
+                for (Map.Entry<Integer, Node> element : other.elements.entrySet()) {
+                    element(element.getKey()).merge(element.getValue());
+                }
+            }
+        }
+
+        /**
+         * Elements selected by index are read only through their own node:
+         * make it match also what <code>[*]</code> does, all the way down.
+         */
+        void resolve() {
+            if (null != fields) {
+                for (Node field : fields.values()) field.resolve();
+            }
+            if (null != anyElement) {
+                if (null != elements) {
+                    for (Node element : elements.values()) element.merge(anyElement);
+                }
+                anyElement.resolve();
+            }
+            if (null != elements) {
+                for (Node element : elements.values()) element.resolve();
+            }
+        }
+    }
+
+    /**
+     * Create a projection onto the given paths.
+     *
+     * @param paths Paths to project the HAR onto
+     * @throws IllegalArgumentException If a path uses an unsupported syntax
+     */
+    public BMPCHarProjection(String... paths) {
+        this(false, paths);
+    }
+
+    private BMPCHarProjection(boolean lenient, String... paths) {
+        for (String path : paths) {
+            add(path, lenient);
+        }
+        root.resolve();
+    }
+
+    /**
+     * Create a projection onto the parts of the HAR needed to evaluate
+     * the given JsonPath expressions.
+     *
+     * @param jsonPaths JsonPath expressions
+     * @return Projection
+     */
+    public static BMPCHarProjection forJsonPaths(String... jsonPaths) {
+        return new BMPCHarProjection(true, jsonPaths);
+    }
+
+    /**
+     * Read the HAR, decoding only the parts matching this projection.
+     *
+     * @param in JsonReader positioned at the beginning of the HAR document
+     * @return Projected HAR
+     * @throws IOException If reading or parsing fails
+     */
+    public JsonObject read(JsonReader in) throws IOException {
+        JsonElement projected = read(in, root);
+        return null != projected && projected.isJsonObject()
+                ? projected.getAsJsonObject()
+                : new JsonObject();
+    }
+
+    private JsonElement read(JsonReader in, Node node) throws IOException {
+        if (node.whole) {
+            return parser.parse(in);
+        }
+
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                if (null == node.fields) break;
+
+                JsonObject object = new JsonObject();
+                in.beginObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    Node child = node.fields.get(name);
+                    if (null == child) {
+                        in.skipValue();
+                    } else {
+                        JsonElement value = read(in, child);
+                        if (null != value) object.add(name, value);
+                    }
+                }
+                in.endObject();
+                return object;
+
+            case BEGIN_ARRAY:
+                if (null == node.anyElement && null == node.elements) break;
+
+                JsonArray array = new JsonArray();
+                in.beginArray();
+                for (int i = 0; in.hasNext(); ++i) {
+                    Node child = null != node.elements ? node.elements.get(i) : null;
+                    if (null == child) child = node.anyElement;
+
+                    if (null != child) {
+                        JsonElement value = read(in, child);
+                        array.add(null != value ? value : JsonNull.INSTANCE);
+                    } else {
+                        in.skipValue();
+                        // Keep positions, but only up to the last requested element
+                        if (i < node.maxElement) array.add(JsonNull.INSTANCE);
+                    }
+                }
+                in.endArray();
+                return array;
+
+            default:
+                break;
+        }
+
+        // Not what the projection expected here: skip it
+        in.skipValue();
+        return null;
+    }
+
+    private void add(String path, boolean lenient) {
+        String p = path.trim();
+        if (p.startsWith("$")) p = p.substring(1);
+
+        Node node = root;
+        int i = 0;
+        while (i < p.length() && !node.whole) {
+            char c = p.charAt(i);
+            if (c == '.') {
+                // Field: ".name" (".." is a deep scan)
+                int start = ++i;
+                while (i < p.length() && p.charAt(i) != '.' && p.charAt(i) != '[') ++i;
+                String name = p.substring(start, i);
+                if (name.isEmpty() || name.equals("*")) {
+                    unsupported(path, lenient);
+                    break;
+                }
+                node = node.field(name);
+            } else if (c == '[') {
+                // Array element(s) or bracket-notation field
+                int end = p.indexOf(']', i);
+                if (end < 0) {
+                    unsupported(path, lenient);
+                    break;
+                }
+                String selector = p.substring(i + 1, end).trim();
+                i = end + 1;
+                if (selector.equals("*")) {
+                    node = node.anyElement();
+                } else if (selector.matches("\\d+")) {
+                    node = node.element(Integer.parseInt(selector));
+                } else if (selector.length() > 1 && selector.startsWith("'") && selector.endsWith("'")
+                        && selector.indexOf('\'', 1) == selector.length() - 1) {
+                    node = node.field(selector.substring(1, selector.length() - 1));
+                } else {
+                    unsupported(path, lenient);
+                    break;
+                }
+            } else if (node == root && i == 0) {
+                // Path not starting with "$": treat as if it started with "$."
+                p = "." + p;
+            } else {
+                unsupported(path, lenient);
+                break;
+            }
+        }
+
+        // Whatever is at the end of the path is decoded entirely
+        node.whole = true;
+    }
+
+    private static void unsupported(String path, boolean lenient) {
+        if (!lenient) {
+            throw new IllegalArgumentException("Unsupported HAR projection path: " + path);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+/**
+ * HAR Response, including the Response Content.
+ * <p/>
+ *
+ * Sizes are in bytes; "-1" if not available.
+ * The Content text is only available if captured by BrowserMob Proxy and
+ * if requested when parsing (see {@link BMPCHarTypeAdapter#BMPCHarTypeAdapter(boolean)}).
+ */
+public class BMPCHarResponse {
+
+    int status;
+    String statusText;
+    String httpVersion;
+    BMPCHarHeaders headers = BMPCHarHeaders.EMPTY;
+    String redirectURL;
+    long headersSize = -1;
+    long bodySize = -1;
+    long contentSize = -1;
+    String contentMimeType;
+    String contentText;
+    String contentEncoding;
+    String comment;
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    public String getHttpVersion() {
+        return httpVersion;
+    }
+
+    public BMPCHarHeaders getHeaders() {
+        return headers;
+    }
+
+    public String getRedirectURL() {
+        return redirectURL;
+    }
+
+    public long getHeadersSize() {
+        return headersSize;
+    }
+
+    public long getBodySize() {
+        return bodySize;
+    }
+
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    public String getContentMimeType() {
+        return contentMimeType;
+    }
+
+    public String getContentText() {
+        return contentText;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Walks a HAR document with a {@link JsonReader}, handing every Page and Entry
+ * to a {@link BMPCHarEntryVisitor} as soon as it's read.
+ * <p/>
+ *
+ * Only one Page or Entry is held in memory at any time, no matter how big the HAR is.
+ * Everything that is not part of <code>log.pages</code> or <code>log.entries</code> is skipped.
+ * <p/>
+ *
+ * If the Response Content is not needed (i.e. <code>response.content.text</code>),
+ * it can be skipped as well: it's by far the biggest part of a HAR when
+ * content capturing is enabled.
+ */
+public class BMPCHarStreamReader {
+
+    private final JsonParser parser = new JsonParser();
+    private final boolean includeContent;
+
+    /**
+     * Create a reader that hands over complete Entries.
+     */
+    public BMPCHarStreamReader() {
+        this(true);
+    }
+
+    /**
+     * Create a reader.
+     *
+     * @param includeContent If "false", <code>response.content.text</code> is skipped
+     *                       from every Entry
+     */
+    public BMPCHarStreamReader(boolean includeContent) {
+        this.includeContent = includeContent;
+    }
+
+    /**
+     * Read the HAR and visit all its Pages and Entries.
+     *
+     * @param reader JsonReader positioned at the beginning of the HAR document
+     * @param visitor Visitor to call back for every Page and Entry
+     * @throws IOException If reading or parsing fails
+     */
+    public void read(JsonReader reader, BMPCHarEntryVisitor visitor) throws IOException {
+        readSince(reader, BMPCHarCursor.START, visitor);
+    }
+
+    /**
+     * Read the HAR and visit only the Pages and Entries after the given cursor.
+     *
+     * The Pages and Entries before the cursor are skipped token by token, without
+     * being decoded. If the first Page of the HAR is not the one the cursor was
+     * taken from, the HAR was reset: everything is visited from the start.
+     * This relies on <code>log.pages</code> preceding <code>log.entries</code>,
+     * as it does in the HARs produced by BrowserMob Proxy.
+     *
+     * @param reader JsonReader positioned at the beginning of the HAR document
+     * @param since Cursor returned by a previous read, or {@link BMPCHarCursor#START}
+     * @param visitor Visitor to call back for every Page and Entry after the cursor
+     * @return Cursor at the end of this HAR
+     * @throws IOException If reading or parsing fails
+     */
+    public BMPCHarCursor readSince(JsonReader reader, BMPCHarCursor since, BMPCHarEntryVisitor visitor) throws IOException {
+        Position position = new Position(since);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("log".equals(reader.nextName())) {
+                readLog(reader, position, visitor);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new BMPCHarCursor(position.pageCount, position.entryCount, position.firstPage, position.reset);
+    }
+
+    /**
+     * Count the Entries of the HAR, without decoding them.
+     *
+     * Reading stops as soon as <code>log.entries</code> is over, or "max" Entries
+     * have been counted: the rest of the HAR is left unread.
+     *
+     * @param reader JsonReader positioned at the beginning of the HAR document
+     * @param max Maximum number of Entries to count
+     * @return Number of Entries, up to "max"
+     * @throws IOException If reading or parsing fails
+     */
+    public static int countEntries(JsonReader reader, int max) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"log".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!"entries".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                int count = 0;
+                reader.beginArray();
+                while (count < max && reader.hasNext()) {
+                    reader.skipValue();
+                    ++count;
+                }
+                return count;
+            }
+            return 0;
+        }
+        return 0;
+    }
+
+    private static class Position {
+        final BMPCHarCursor since;
+        int skipPages;
+        int skipEntries;
+        int pageCount = 0;
+        int entryCount = 0;
+        String firstPage = null;
+        boolean reset = false;
+
+        Position(BMPCHarCursor since) {
+            this.since = since;
+            this.skipPages = since.getPageCount();
+            this.skipEntries = since.getEntryCount();
+        }
+
+        void firstPage(JsonObject page) {
+            firstPage = stringOrNull(page, "id") + "@" + stringOrNull(page, "startedDateTime");
+            if (null != since.getFirstPage() && !since.getFirstPage().equals(firstPage)) {
+                reset = true;
+                skipPages = 0;
+                skipEntries = 0;
+            }
+        }
+
+        private static String stringOrNull(JsonObject object, String name) {
+            JsonElement value = object.get(name);
+            return null != value && value.isJsonPrimitive() ? value.getAsString() : null;
+        }
+    }
+
+    private void readLog(JsonReader reader, Position position, BMPCHarEntryVisitor visitor) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("pages".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (0 == position.pageCount) {
+                        // The first Page is always decoded, to detect if the HAR was reset
+                        JsonObject page = parser.parse(reader).getAsJsonObject();
+                        position.firstPage(page);
+                        if (position.pageCount >= position.skipPages) {
+                            visitor.visitPage(page);
+                        }
+                    } else if (position.pageCount < position.skipPages) {
+                        reader.skipValue();
+                    } else {
+                        visitor.visitPage(parser.parse(reader).getAsJsonObject());
+                    }
+                    ++position.pageCount;
+                }
+                reader.endArray();
+            } else if ("entries".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (position.entryCount < position.skipEntries) {
+                        reader.skipValue();
+                    } else {
+                        visitor.visitEntry(readEntry(reader));
+                    }
+                    ++position.entryCount;
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private JsonObject readEntry(JsonReader reader) throws IOException {
+        if (includeContent) {
+            return parser.parse(reader).getAsJsonObject();
+        }
+
+        // Read Entry, but skip "response.content.text"
+        JsonObject entry = new JsonObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("response".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                entry.add(name, readResponseWithoutContentText(reader));
+            } else {
+                entry.add(name, parser.parse(reader));
+            }
+        }
+        reader.endObject();
+
+        return entry;
+    }
+
+    private JsonObject readResponseWithoutContentText(JsonReader reader) throws IOException {
+        JsonObject response = new JsonObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("content".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                JsonObject content = new JsonObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String contentName = reader.nextName();
+                    if ("text".equals(contentName)) {
+                        reader.skipValue();
+                    } else {
+                        content.add(contentName, parser.parse(reader));
+                    }
+                }
+                reader.endObject();
+                response.add(name, content);
+            } else {
+                response.add(name, parser.parse(reader));
+            }
+        }
+        reader.endObject();
+
+        return response;
+    }
+}
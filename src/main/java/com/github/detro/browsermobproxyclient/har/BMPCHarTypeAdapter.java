@@ -0,0 +1,518 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.har;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson TypeAdapter for {@link BMPCHar}.
+ * <p/>
+ *
+ * It doesn't use reflection: every part of the HAR is read straight from the
+ * {@link JsonReader} into the typed model, and everything that is not modelled
+ * (ex. cookies, query string, post data, cache) is skipped without being parsed.
+ * <p/>
+ *
+ * Can be used directly (see {@link TypeAdapter#read(JsonReader)}) or
+ * registered with a {@link com.google.gson.GsonBuilder}.
+ */
+public class BMPCHarTypeAdapter extends TypeAdapter<BMPCHar> {
+
+    private final boolean includeContent;
+
+    /**
+     * Create an adapter that also reads the Response Content text.
+     */
+    public BMPCHarTypeAdapter() {
+        this(true);
+    }
+
+    /**
+     * Create an adapter.
+     *
+     * @param includeContent If "false", <code>response.content.text</code> is skipped
+     */
+    public BMPCHarTypeAdapter(boolean includeContent) {
+        this.includeContent = includeContent;
+    }
+
+    @Override
+    public BMPCHar read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        BMPCHar har = new BMPCHar();
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("log".equals(in.nextName())) {
+                har.log = readLog(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return har;
+    }
+
+    /**
+     * Read a single HAR Page.
+     *
+     * @param in JsonReader positioned at the beginning of the Page
+     * @return HAR Page
+     * @throws IOException If reading or parsing fails
+     */
+    public BMPCHarPage readPage(JsonReader in) throws IOException {
+        BMPCHarPage page = new BMPCHarPage();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("id".equals(name)) {
+                page.id = nextString(in);
+            } else if ("startedDateTime".equals(name)) {
+                page.startedDateTime = nextString(in);
+            } else if ("title".equals(name)) {
+                page.title = nextString(in);
+            } else if ("pageTimings".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    String timingName = in.nextName();
+                    if ("onContentLoad".equals(timingName)) {
+                        page.onContentLoad = nextLong(in, -1);
+                    } else if ("onLoad".equals(timingName)) {
+                        page.onLoad = nextLong(in, -1);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else if ("comment".equals(name)) {
+                page.comment = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return page;
+    }
+
+    /**
+     * Read a single HAR Entry.
+     *
+     * @param in JsonReader positioned at the beginning of the Entry
+     * @return HAR Entry
+     * @throws IOException If reading or parsing fails
+     */
+    public BMPCHarEntry readEntry(JsonReader in) throws IOException {
+        BMPCHarEntry entry = new BMPCHarEntry();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("pageref".equals(name)) {
+                entry.pageref = nextString(in);
+            } else if ("startedDateTime".equals(name)) {
+                entry.startedDateTime = nextString(in);
+            } else if ("time".equals(name)) {
+                entry.time = nextLong(in, -1);
+            } else if ("request".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                entry.request = readRequest(in);
+            } else if ("response".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                entry.response = readResponse(in);
+            } else if ("timings".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                entry.timings = readTimings(in);
+            } else if ("serverIPAddress".equals(name)) {
+                entry.serverIPAddress = nextString(in);
+            } else if ("connection".equals(name)) {
+                entry.connection = nextString(in);
+            } else if ("comment".equals(name)) {
+                entry.comment = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return entry;
+    }
+
+    private BMPCHarLog readLog(JsonReader in) throws IOException {
+        BMPCHarLog log = new BMPCHarLog();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("version".equals(name)) {
+                log.version = nextString(in);
+            } else if ("creator".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                log.creator = readCreator(in);
+            } else if ("browser".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                log.browser = readCreator(in);
+            } else if ("pages".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    log.pages.add(readPage(in));
+                }
+                in.endArray();
+            } else if ("entries".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    log.entries.add(readEntry(in));
+                }
+                in.endArray();
+            } else if ("comment".equals(name)) {
+                log.comment = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return log;
+    }
+
+    private BMPCHarCreator readCreator(JsonReader in) throws IOException {
+        BMPCHarCreator creator = new BMPCHarCreator();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("name".equals(name)) {
+                creator.name = nextString(in);
+            } else if ("version".equals(name)) {
+                creator.version = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return creator;
+    }
+
+    private BMPCHarRequest readRequest(JsonReader in) throws IOException {
+        BMPCHarRequest request = new BMPCHarRequest();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("method".equals(name)) {
+                request.method = nextString(in);
+            } else if ("url".equals(name)) {
+                request.url = nextString(in);
+            } else if ("httpVersion".equals(name)) {
+                request.httpVersion = nextString(in);
+            } else if ("headers".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                request.headers = readHeaders(in);
+            } else if ("headersSize".equals(name)) {
+                request.headersSize = nextLong(in, -1);
+            } else if ("bodySize".equals(name)) {
+                request.bodySize = nextLong(in, -1);
+            } else if ("comment".equals(name)) {
+                request.comment = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return request;
+    }
+
+    private BMPCHarResponse readResponse(JsonReader in) throws IOException {
+        BMPCHarResponse response = new BMPCHarResponse();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("status".equals(name)) {
+                response.status = (int) nextLong(in, 0);
+            } else if ("statusText".equals(name)) {
+                response.statusText = nextString(in);
+            } else if ("httpVersion".equals(name)) {
+                response.httpVersion = nextString(in);
+            } else if ("headers".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                response.headers = readHeaders(in);
+            } else if ("content".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    String contentName = in.nextName();
+                    if ("size".equals(contentName)) {
+                        response.contentSize = nextLong(in, -1);
+                    } else if ("mimeType".equals(contentName)) {
+                        response.contentMimeType = nextString(in);
+                    } else if ("text".equals(contentName) && includeContent) {
+                        response.contentText = nextString(in);
+                    } else if ("encoding".equals(contentName)) {
+                        response.contentEncoding = nextString(in);
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else if ("redirectURL".equals(name)) {
+                response.redirectURL = nextString(in);
+            } else if ("headersSize".equals(name)) {
+                response.headersSize = nextLong(in, -1);
+            } else if ("bodySize".equals(name)) {
+                response.bodySize = nextLong(in, -1);
+            } else if ("comment".equals(name)) {
+                response.comment = nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return response;
+    }
+
+    private BMPCHarTimings readTimings(JsonReader in) throws IOException {
+        BMPCHarTimings timings = new BMPCHarTimings();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("blocked".equals(name)) {
+                timings.blocked = nextLong(in, -1);
+            } else if ("dns".equals(name)) {
+                timings.dns = nextLong(in, -1);
+            } else if ("connect".equals(name)) {
+                timings.connect = nextLong(in, -1);
+            } else if ("send".equals(name)) {
+                timings.send = nextLong(in, -1);
+            } else if ("wait".equals(name)) {
+                timings.wait = nextLong(in, -1);
+            } else if ("receive".equals(name)) {
+                timings.receive = nextLong(in, -1);
+            } else if ("ssl".equals(name)) {
+                timings.ssl = nextLong(in, -1);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return timings;
+    }
+
+    private BMPCHarHeaders readHeaders(JsonReader in) throws IOException {
+        List<String> namesAndValues = new ArrayList<String>();
+        in.beginArray();
+        while (in.hasNext()) {
+            String headerName = null;
+            String headerValue = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("name".equals(name)) {
+                    headerName = nextString(in);
+                } else if ("value".equals(name)) {
+                    headerValue = nextString(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (null != headerName) {
+                namesAndValues.add(headerName);
+                namesAndValues.add(headerValue);
+            }
+        }
+        in.endArray();
+
+        return namesAndValues.isEmpty()
+                ? BMPCHarHeaders.EMPTY
+                : new BMPCHarHeaders(namesAndValues.toArray(new String[namesAndValues.size()]));
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static long nextLong(JsonReader in, long defaultValue) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return defaultValue;
+        }
+        // Some values (ex. timings) could be fractional: truncate them
+        return (long) in.nextDouble();
+    }
+
+    @Override
+    public void write(JsonWriter out, BMPCHar har) throws IOException {
+        if (null == har) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (null != har.log) {
+            out.name("log");
+            writeLog(out, har.log);
+        }
+        out.endObject();
+    }
+
+    private void writeLog(JsonWriter out, BMPCHarLog log) throws IOException {
+        out.beginObject();
+        out.name("version").value(log.version);
+        if (null != log.creator) {
+            out.name("creator");
+            writeCreator(out, log.creator);
+        }
+        if (null != log.browser) {
+            out.name("browser");
+            writeCreator(out, log.browser);
+        }
+        out.name("pages").beginArray();
+        for (BMPCHarPage page : log.pages) {
+            writePage(out, page);
+        }
+        out.endArray();
+        out.name("entries").beginArray();
+        for (BMPCHarEntry entry : log.entries) {
+            writeEntry(out, entry);
+        }
+        out.endArray();
+        out.name("comment").value(log.comment);
+        out.endObject();
+    }
+
+    private void writeCreator(JsonWriter out, BMPCHarCreator creator) throws IOException {
+        out.beginObject();
+        out.name("name").value(creator.name);
+        out.name("version").value(creator.version);
+        out.endObject();
+    }
+
+    private void writePage(JsonWriter out, BMPCHarPage page) throws IOException {
+        out.beginObject();
+        out.name("id").value(page.id);
+        out.name("startedDateTime").value(page.startedDateTime);
+        out.name("title").value(page.title);
+        out.name("pageTimings").beginObject();
+        out.name("onContentLoad").value(page.onContentLoad);
+        out.name("onLoad").value(page.onLoad);
+        out.endObject();
+        out.name("comment").value(page.comment);
+        out.endObject();
+    }
+
+    private void writeEntry(JsonWriter out, BMPCHarEntry entry) throws IOException {
+        out.beginObject();
+        out.name("pageref").value(entry.pageref);
+        out.name("startedDateTime").value(entry.startedDateTime);
+        out.name("time").value(entry.time);
+        if (null != entry.request) {
+            out.name("request");
+            writeRequest(out, entry.request);
+        }
+        if (null != entry.response) {
+            out.name("response");
+            writeResponse(out, entry.response);
+        }
+        if (null != entry.timings) {
+            out.name("timings");
+            writeTimings(out, entry.timings);
+        }
+        out.name("serverIPAddress").value(entry.serverIPAddress);
+        out.name("connection").value(entry.connection);
+        out.name("comment").value(entry.comment);
+        out.endObject();
+    }
+
+    private void writeRequest(JsonWriter out, BMPCHarRequest request) throws IOException {
+        out.beginObject();
+        out.name("method").value(request.method);
+        out.name("url").value(request.url);
+        out.name("httpVersion").value(request.httpVersion);
+        out.name("headers");
+        writeHeaders(out, request.headers);
+        out.name("headersSize").value(request.headersSize);
+        out.name("bodySize").value(request.bodySize);
+        out.name("comment").value(request.comment);
+        out.endObject();
+    }
+
+    private void writeResponse(JsonWriter out, BMPCHarResponse response) throws IOException {
+        out.beginObject();
+        out.name("status").value(response.status);
+        out.name("statusText").value(response.statusText);
+        out.name("httpVersion").value(response.httpVersion);
+        out.name("headers");
+        writeHeaders(out, response.headers);
+        out.name("content").beginObject();
+        out.name("size").value(response.contentSize);
+        out.name("mimeType").value(response.contentMimeType);
+        if (null != response.contentText) {
+            out.name("text").value(response.contentText);
+        }
+        if (null != response.contentEncoding) {
+            out.name("encoding").value(response.contentEncoding);
+        }
+        out.endObject();
+        out.name("redirectURL").value(response.redirectURL);
+        out.name("headersSize").value(response.headersSize);
+        out.name("bodySize").value(response.bodySize);
+        out.name("comment").value(response.comment);
+        out.endObject();
+    }
+
+    private void writeTimings(JsonWriter out, BMPCHarTimings timings) throws IOException {
+        out.beginObject();
+        out.name("blocked").value(timings.blocked);
+        out.name("dns").value(timings.dns);
+        out.name("connect").value(timings.connect);
+        out.name("send").value(timings.send);
+        out.name("wait").value(timings.wait);
+        out.name("receive").value(timings.receive);
+        out.name("ssl").value(timings.ssl);
+        out.endObject();
+    }
+
+    private void writeHeaders(JsonWriter out, BMPCHarHeaders headers) throws IOException {
+        out.beginArray();
+        for (int i = 0, size = headers.size(); i < size; ++i) {
+            out.beginObject();
+            out.name("name").value(headers.getName(i));
+            out.name("value").value(headers.getValue(i));
+            out.endObject();
+        }
+        out.endArray();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCAsyncProxy;
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToCloseProxyException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedErrorException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-blocking counterpart of {@link BMPCDefaultManager}.
+ *
+ * Every call returns immediately a {@link Future} and, optionally, notifies
+ * a {@link FutureCallback} once the BrowserMob Proxy REST API has responded.
+ * Proxies are created as {@link BMPCAsyncProxy}.
+ */
+public class BMPCAsyncManager {
+
+    private final BMPCHttpClient httpClient;
+
+    private final String APIHost;
+    private final int APIPort;
+
+    public BMPCAsyncManager(String apiHost, int apiPort) {
+        this(BMPCHttpClient.shared(apiHost, apiPort));
+    }
+
+    /**
+     * Create a Manager that uses the pooled HTTP Client shared by the whole JVM,
+     * configured as given (see {@link BMPCHttpClient#shared(String, int, BMPCHttpClientConfig)}).
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     * @param config Configuration of the shared HTTP Client
+     */
+    public BMPCAsyncManager(String apiHost, int apiPort, BMPCHttpClientConfig config) {
+        this(BMPCHttpClient.shared(apiHost, apiPort, config));
+    }
+
+    /**
+     * Create a Manager that uses the given pooled HTTP Client for itself
+     * and for all the Proxies it creates.
+     *
+     * Differently from {@link BMPCDefaultManager}, no test-call is done
+     * to validate the server is up and running.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     */
+    public BMPCAsyncManager(BMPCHttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.APIHost = httpClient.getAPIHost();
+        this.APIPort = httpClient.getAPIPort();
+    }
+
+    /**
+     * @see BMPCAsyncManager#createProxy(String, FutureCallback)
+     */
+    public Future<BMPCAsyncProxy> createProxy() {
+        return createProxy(null, null);
+    }
+
+    /**
+     * @see BMPCAsyncManager#createProxy(String, FutureCallback)
+     */
+    public Future<BMPCAsyncProxy> createProxy(String upstreamProxyHostAndPort) {
+        return createProxy(upstreamProxyHostAndPort, null);
+    }
+
+    /**
+     * Request the creation of a new Proxy, without waiting for it.
+     *
+     * @param upstreamProxyHostAndPort Bind the new Proxy instance to
+     *                                 pass through an Upstream Proxy.
+     *                                 Can be "null".
+     * @param callback Notified once the Proxy is created. Can be "null".
+     * @return Future of the new Proxy
+     */
+    public Future<BMPCAsyncProxy> createProxy(String upstreamProxyHostAndPort,
+                                              FutureCallback<BMPCAsyncProxy> callback) {
+        return BMPCAsyncProxy.create(httpClient, upstreamProxyHostAndPort, callback);
+    }
+
+    /**
+     * @see BMPCAsyncManager#getOpenProxies(FutureCallback)
+     */
+    public Future<Set<Integer>> getOpenProxies() {
+        return getOpenProxies(null);
+    }
+
+    /**
+     * Request the list of Proxies currently open (i.e. list of the ports they listen on)
+     *
+     * @param callback Notified once the list is received. Can be "null".
+     * @return Future of the list of Proxies currently open
+     */
+    public Future<Set<Integer>> getOpenProxies(FutureCallback<Set<Integer>> callback) {
+        final BasicFuture<Set<Integer>> future = new BasicFuture<Set<Integer>>(callback);
+
+        try {
+            // Request list of Proxy currently running
+            HttpGet request = new HttpGet(new URIBuilder()
+                    .setScheme("http")
+                    .setHost(APIHost)
+                    .setPort(APIPort)
+                    .setPath("/proxy")
+                    .build());
+
+            httpClient.getAsyncHttpClient().execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(final HttpResponse response) {
+                    // Parse and notify on a worker thread, away from the I/O dispatcher
+                    Runnable handle = new Runnable() {
+                        @Override
+                        public void run() {
+                            Set<Integer> openProxiesPorts;
+                            try {
+                                // Check request was successful
+                                int statusCode = response.getStatusLine().getStatusCode();
+                                if (statusCode != 200) {
+                                    throw new BMPCUnexpectedErrorException(String.format(
+                                            "Can't fetch list of Open Proxies from '%s:%d'." +
+                                                    " Status code: %d",
+                                            APIHost, APIPort, statusCode));
+                                }
+
+                                // Parse JSON response
+                                openProxiesPorts = BMPCDefaultManager.openProxiesPorts(
+                                        BMPCDefaultManager.httpResponseToJsonObject(response));
+                            } catch (Exception e) {
+                                future.failed(new BMPCUnexpectedErrorException(e));
+                                return;
+                            }
+                            future.completed(openProxiesPorts);
+                        }
+                    };
+
+                    try {
+                        httpClient.getAsyncWorkerExecutor().execute(handle);
+                    } catch (RejectedExecutionException ree) {
+                        // HTTP Client closed in the meantime: nothing else to hold up
+                        handle.run();
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    future.failed(new BMPCUnexpectedErrorException(e));
+                }
+
+                @Override
+                public void cancelled() {
+                    future.cancel();
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCUnexpectedErrorException(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * @see BMPCAsyncManager#closeAll(FutureCallback)
+     */
+    public Future<Void> closeAll() {
+        return closeAll(null);
+    }
+
+    /**
+     * Close all Proxies, concurrently.
+     *
+     * This will not close the BrowserMob Proxy itself.
+     * If any Proxy fails to close, the returned Future fails with the first
+     * error encountered, but only after all the others have been attempted.
+     *
+     * @param callback Notified once all the Proxies are closed. Can be "null".
+     * @return Future completed once all the Proxies are closed
+     */
+    public Future<Void> closeAll(FutureCallback<Void> callback) {
+        final BasicFuture<Void> future = new BasicFuture<Void>(callback);
+
+        getOpenProxies(new FutureCallback<Set<Integer>>() {
+            @Override
+            public void completed(Set<Integer> openProxiesPorts) {
+                if (openProxiesPorts.isEmpty()) {
+                    future.completed(null);
+                    return;
+                }
+
+                final AtomicInteger pending = new AtomicInteger(openProxiesPorts.size());
+                final AtomicReference<Exception> firstFailure = new AtomicReference<Exception>();
+
+                FutureCallback<Void> onClose = new FutureCallback<Void>() {
+                    @Override
+                    public void completed(Void result) {
+                        done();
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        firstFailure.compareAndSet(null, e);
+                        done();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        firstFailure.compareAndSet(null, new BMPCUnableToCloseProxyException("Close cancelled"));
+                        done();
+                    }
+
+                    private void done() {
+                        if (pending.decrementAndGet() == 0) {
+                            if (null == firstFailure.get()) {
+                                future.completed(null);
+                            } else {
+                                future.failed(firstFailure.get());
+                            }
+                        }
+                    }
+                };
+
+                for (int openProxyPort : openProxiesPorts) {
+                    try {
+                        new BMPCAsyncProxy(httpClient, openProxyPort).close(onClose);
+                    } catch (Exception e) {
+                        onClose.failed(e);
+                    }
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                future.failed(e);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Returns host where BrowserMob Proxy is running.
+     *
+     * @return Host where BrowserMob Proxy is running.
+     */
+    public String getAPIHost() {
+        return APIHost;
+    }
+
+    /**
+     * Returns port where BrowserMob Proxy is listening.
+     *
+     * @return Port where BrowserMob Proxy is listening.
+     */
+    public int getAPIPort() {
+        return APIPort;
+    }
+
+    /**
+     * Pooled HTTP Client shared by this Manager and all the Proxies it creates.
+     *
+     * @return Pooled HTTP Client
+     */
+    public BMPCHttpClient getHttpClient() {
+        return httpClient;
+    }
+}
@@ -0,0 +1,611 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.BMPCProxyListener;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToCloseProxyException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToConnectException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedErrorException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedStatusCodeException;
+import org.apache.http.Consts;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manager that spreads Proxies across multiple BrowserMob Proxy servers (nodes).
+ * <p/>
+ *
+ * Each new Proxy is placed on a node chosen by a {@link Placement} policy:
+ * <ul>
+ *     <li>{@link Placement#LEAST_LOADED}: the node with the fewest open Proxies</li>
+ *     <li>{@link Placement#CONSISTENT_HASH}: the node a placement key hashes to, so
+ *     that the same key keeps landing on the same node while the cluster doesn't change</li>
+ * </ul>
+ * <p/>
+ *
+ * Nodes are checked periodically, by fetching their list of open Proxies: this both
+ * refreshes their load and detects when they are down. Unhealthy nodes are taken out
+ * of rotation until a check succeeds again. A node that can't be reached, or fails
+ * (HTTP Status Code 5xx), while creating a Proxy is taken out of rotation straight away,
+ * and the Proxy is placed on another node. Any other failure (ex. an invalid Upstream Proxy)
+ * is the caller's: it's thrown as is, and the node stays in rotation.
+ * <p/>
+ *
+ * Proxies created by this Manager talk directly to the node they were placed on.
+ * As ports are only unique within a node, this Manager can't be wrapped by Managers
+ * that identify Proxies by port alone (ex. {@link BMPCLeasingManager}, which rejects it):
+ * wrap each node instead.
+ */
+public class BMPCClusterManager implements BMPCManager {
+
+    /**
+     * Policy used to choose the node a new Proxy is placed on.
+     */
+    public enum Placement {
+        LEAST_LOADED,
+        CONSISTENT_HASH
+    }
+
+    public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = 5000;
+
+    // Points each node occupies on the consistent hash ring
+    private static final int VIRTUAL_NODES = 128;
+
+    private final List<Node> nodes;
+    private final Placement placement;
+    private final TreeMap<Integer, Node> ring = new TreeMap<Integer, Node>();
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @see BMPCClusterManager#BMPCClusterManager(List, Placement, long)
+     */
+    public BMPCClusterManager(List<? extends BMPCManager> managers) {
+        this(managers, Placement.LEAST_LOADED, DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @see BMPCClusterManager#BMPCClusterManager(List, Placement, long)
+     */
+    public BMPCClusterManager(List<? extends BMPCManager> managers, Placement placement) {
+        this(managers, placement, DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Create a Manager over the given nodes.
+     *
+     * @param managers Managers of the nodes, one per BrowserMob Proxy server
+     * @param placement Policy used to place new Proxies
+     * @param healthCheckIntervalMillis How often nodes are checked
+     */
+    public BMPCClusterManager(List<? extends BMPCManager> managers,
+                              Placement placement,
+                              long healthCheckIntervalMillis) {
+        if (managers.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+
+        this.placement = placement;
+
+        List<Node> nodes = new ArrayList<Node>(managers.size());
+        for (BMPCManager manager : managers) {
+            Node node = new Node(manager);
+            nodes.add(node);
+
+            // Place the node on the ring
+            for (int i = 0; i < VIRTUAL_NODES; ++i) {
+                ring.put(hash(manager.getAPIHost() + ":" + manager.getAPIPort() + "#" + i), node);
+            }
+        }
+        this.nodes = Collections.unmodifiableList(nodes);
+
+        // Initial load and health, then keep them up to date
+        checkNodes();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BMPCClusterManager-health");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        healthChecker.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                checkNodes();
+            }
+        }, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a Manager over the BrowserMob Proxy servers at the given endpoints.
+     *
+     * @param endpoints BrowserMob Proxy REST API endpoints, in format "HOST:PORT"
+     * @param placement Policy used to place new Proxies
+     * @return Cluster Manager
+     */
+    public static BMPCClusterManager forEndpoints(List<String> endpoints, Placement placement) {
+        List<BMPCManager> managers = new ArrayList<BMPCManager>(endpoints.size());
+        for (String endpoint : endpoints) {
+            int separator = endpoint.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Endpoint format must be \"HOST:PORT\": " + endpoint);
+            }
+            managers.add(new BMPCDefaultManager(
+                    endpoint.substring(0, separator),
+                    Integer.parseInt(endpoint.substring(separator + 1))));
+        }
+        return new BMPCClusterManager(managers, placement);
+    }
+
+    /**
+     * Create a new BMPCProxy Instance, on the node chosen by the placement policy.
+     *
+     * With {@link Placement#CONSISTENT_HASH}, the name of the current thread is used
+     * as placement key.
+     *
+     * @return New BMPCProxy Instance
+     */
+    @Override
+    public BMPCProxy createProxy() {
+        return createProxy(null, Thread.currentThread().getName());
+    }
+
+    /**
+     * Create a new BMPCProxy Instance, on the node chosen by the placement policy.
+     *
+     * With {@link Placement#CONSISTENT_HASH}, the name of the current thread is used
+     * as placement key.
+     *
+     * @param upstreamProxyHostAndPort Bind the new Proxy instance to
+     *                                 pass through an Upstream Proxy
+     * @return New BMPCProxy Instance
+     */
+    @Override
+    public BMPCProxy createProxy(String upstreamProxyHostAndPort) {
+        return createProxy(upstreamProxyHostAndPort, Thread.currentThread().getName());
+    }
+
+    /**
+     * Create a new BMPCProxy Instance, on the node chosen by the placement policy.
+     *
+     * If the chosen node can't be reached or fails, it's taken out of rotation
+     * and the next candidate is tried.
+     *
+     * @param upstreamProxyHostAndPort Bind the new Proxy instance to
+     *                                 pass through an Upstream Proxy. Can be "null".
+     * @param placementKey Key used by {@link Placement#CONSISTENT_HASH}. Ignored otherwise.
+     * @return New BMPCProxy Instance
+     */
+    public BMPCProxy createProxy(String upstreamProxyHostAndPort, String placementKey) {
+        Exception lastFailure = null;
+
+        for (Node node : candidates(placementKey)) {
+            try {
+                BMPCProxy proxy = node.manager.createProxy(upstreamProxyHostAndPort);
+                node.placed(proxy);
+                return proxy;
+            } catch (RuntimeException e) {
+                if (!isNodeFailure(e)) {
+                    throw e;
+                }
+                node.healthy = false;
+                lastFailure = e;
+            }
+        }
+
+        throw new BMPCUnableToConnectException("No healthy node could create a Proxy", lastFailure);
+    }
+
+    /**
+     * Create many new BMPCProxy Instances at once, spread across the nodes
+     * as if they were placed one by one.
+     *
+     * Nodes create their share concurrently. If any node fails, all the Proxies
+     * already created are closed (and the node is taken out of rotation, if it
+     * can't be reached or fails).
+     * With {@link Placement#CONSISTENT_HASH}, the name of the current thread followed
+     * by the index of each Proxy is used as placement key.
+     *
+     * @param count Number of Proxies to create
+     * @param upstreamProxyHostAndPort Bind the new Proxy instances to
+     *                                 pass through an Upstream Proxy. Can be "null".
+     * @return New BMPCProxy Instances
+     */
+    @Override
+    public List<BMPCProxy> createProxies(int count, final String upstreamProxyHostAndPort) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid count: " + count);
+        }
+
+        // Decide how many Proxies each node gets
+        final Map<Node, Integer> shares = new LinkedHashMap<Node, Integer>();
+        String placementKeyPrefix = Thread.currentThread().getName() + "#";
+        for (int i = 0; i < count; ++i) {
+            Node node = place(placementKeyPrefix + i, shares);
+            shares.put(node, shares.containsKey(node) ? shares.get(node) + 1 : 1);
+        }
+
+        List<BMPCProxy> proxies = new ArrayList<BMPCProxy>(count);
+        if (shares.isEmpty()) {
+            return proxies;
+        }
+
+        // Each node creates its share concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(shares.size());
+        Throwable failure = null;
+        try {
+            Map<Node, Future<List<BMPCProxy>>> creations = new LinkedHashMap<Node, Future<List<BMPCProxy>>>();
+            for (final Map.Entry<Node, Integer> share : shares.entrySet()) {
+                creations.put(share.getKey(), executor.submit(new Callable<List<BMPCProxy>>() {
+                    @Override
+                    public List<BMPCProxy> call() {
+                        return share.getKey().manager.createProxies(share.getValue(), upstreamProxyHostAndPort);
+                    }
+                }));
+            }
+
+            for (Map.Entry<Node, Future<List<BMPCProxy>>> creation : creations.entrySet()) {
+                Node node = creation.getKey();
+                try {
+                    for (BMPCProxy proxy : creation.getValue().get()) {
+                        node.placed(proxy);
+                        proxies.add(proxy);
+                    }
+                } catch (ExecutionException e) {
+                    if (isNodeFailure(e.getCause())) {
+                        node.healthy = false;
+                    }
+                    failure = e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (null != failure) {
+            // Fail cleanly: close the ones created
+            for (BMPCProxy proxy : proxies) {
+                try {
+                    proxy.close();
+                } catch (Exception e) {
+                    /* ignore */
+                }
+            }
+            throw new BMPCUnableToConnectException(
+                    String.format("Unable to create %d Proxies across the cluster", count), failure);
+        }
+
+        return proxies;
+    }
+
+    /**
+     * Returns the ports of the Proxies currently open on all the healthy nodes.
+     *
+     * Different nodes can use the same ports: this is their union, so it can be smaller
+     * than the number of Proxies open across the cluster. Use
+     * {@link BMPCClusterManager#getOpenProxyCount()} to count them, and
+     * {@link BMPCClusterManager#getOpenProxiesByNode()} to tell them apart.
+     *
+     * @return Ports of the Proxies currently open across the cluster
+     */
+    @Override
+    public Set<Integer> getOpenProxies() {
+        Set<Integer> openProxiesPorts = new HashSet<Integer>();
+        for (Set<Integer> nodeOpenProxies : getOpenProxiesByNode().values()) {
+            openProxiesPorts.addAll(nodeOpenProxies);
+        }
+        return openProxiesPorts;
+    }
+
+    /**
+     * Returns the number of Proxies currently open on all the healthy nodes.
+     *
+     * @return Number of Proxies open across the cluster
+     */
+    public int getOpenProxyCount() {
+        int count = 0;
+        for (Set<Integer> nodeOpenProxies : getOpenProxiesByNode().values()) {
+            count += nodeOpenProxies.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ports of the Proxies currently open, for each healthy node.
+     *
+     * @return Ports of the Proxies currently open, by node
+     */
+    public Map<BMPCManager, Set<Integer>> getOpenProxiesByNode() {
+        Map<BMPCManager, Set<Integer>> openProxiesByNode = new LinkedHashMap<BMPCManager, Set<Integer>>();
+        for (Node node : nodes) {
+            if (node.healthy) {
+                try {
+                    Set<Integer> openProxiesPorts = node.manager.getOpenProxies();
+                    node.load.set(openProxiesPorts.size());
+                    openProxiesByNode.put(node.manager, openProxiesPorts);
+                } catch (Exception e) {
+                    node.healthy = false;
+                }
+            }
+        }
+        return openProxiesByNode;
+    }
+
+    /**
+     * Close all Proxies, on all the nodes.
+     *
+     * All the nodes are attempted, even if some fail.
+     */
+    @Override
+    public void closeAll() {
+        List<String> failedNodes = new ArrayList<String>();
+        Exception lastFailure = null;
+
+        for (Node node : nodes) {
+            try {
+                node.manager.closeAll();
+                node.load.set(0);
+            } catch (Exception e) {
+                failedNodes.add(node.manager.getAPIHost() + ":" + node.manager.getAPIPort());
+                lastFailure = e;
+            }
+        }
+
+        if (null != lastFailure) {
+            throw new BMPCUnableToCloseProxyException(
+                    "Unable to close all Proxies on nodes " + failedNodes, lastFailure);
+        }
+    }
+
+    /**
+     * Returns host of the first node.
+     *
+     * Proxies can live on any node: use {@link BMPCProxy#getAPIHost()} to know where.
+     *
+     * @return Host of the first node
+     */
+    @Override
+    public String getAPIHost() {
+        return nodes.get(0).manager.getAPIHost();
+    }
+
+    /**
+     * Returns port of the first node.
+     *
+     * Proxies can live on any node: use {@link BMPCProxy#getAPIPort()} to know where.
+     *
+     * @return Port of the first node
+     */
+    @Override
+    public int getAPIPort() {
+        return nodes.get(0).manager.getAPIPort();
+    }
+
+    /**
+     * Managers of all the nodes, healthy or not.
+     *
+     * @return Managers of all the nodes
+     */
+    public List<BMPCManager> getNodes() {
+        List<BMPCManager> managers = new ArrayList<BMPCManager>(nodes.size());
+        for (Node node : nodes) {
+            managers.add(node.manager);
+        }
+        return managers;
+    }
+
+    /**
+     * Managers of the nodes currently in rotation.
+     *
+     * @return Managers of the healthy nodes
+     */
+    public List<BMPCManager> getHealthyNodes() {
+        List<BMPCManager> managers = new ArrayList<BMPCManager>(nodes.size());
+        for (Node node : nodes) {
+            if (node.healthy) {
+                managers.add(node.manager);
+            }
+        }
+        return managers;
+    }
+
+    /**
+     * Placement policy in use.
+     *
+     * @return Placement policy
+     */
+    public Placement getPlacement() {
+        return placement;
+    }
+
+    /**
+     * Stop checking the nodes, and stop all of them.
+     */
+    @Override
+    public void stop() {
+        healthChecker.shutdownNow();
+
+        RuntimeException lastFailure = null;
+        for (Node node : nodes) {
+            try {
+                node.manager.stop();
+            } catch (RuntimeException e) {
+                lastFailure = e;
+            }
+        }
+        if (null != lastFailure) {
+            throw lastFailure;
+        }
+    }
+
+    /**
+     * Healthy nodes, in the order they should be tried to place a new Proxy.
+     */
+    private List<Node> candidates(String placementKey) {
+        List<Node> candidates = new ArrayList<Node>(nodes.size());
+
+        if (placement == Placement.CONSISTENT_HASH) {
+            // Walk the ring clockwise from the key, collecting distinct healthy nodes
+            int keyHash = hash(null != placementKey ? placementKey : "");
+            Collection<Node> clockwise = new ArrayList<Node>(ring.tailMap(keyHash).values());
+            clockwise.addAll(ring.headMap(keyHash).values());
+            for (Node node : clockwise) {
+                if (node.healthy && !candidates.contains(node)) {
+                    candidates.add(node);
+                    if (candidates.size() == nodes.size()) {
+                        break;
+                    }
+                }
+            }
+        } else {
+            for (Node node : nodes) {
+                if (node.healthy) {
+                    candidates.add(node);
+                }
+            }
+            Collections.sort(candidates, new Comparator<Node>() {
+                @Override
+                public int compare(Node n1, Node n2) {
+                    int l1 = n1.load.get();
+                    int l2 = n2.load.get();
+                    return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+                }
+            });
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Node the next Proxy should be placed on, given the ones already assigned.
+     */
+    private Node place(String placementKey, Map<Node, Integer> assigned) {
+        List<Node> candidates = candidates(placementKey);
+        if (candidates.isEmpty()) {
+            throw new BMPCUnableToConnectException("No healthy node to create a Proxy on");
+        }
+        if (placement == Placement.CONSISTENT_HASH) {
+            return candidates.get(0);
+        }
+
+        Node leastLoaded = null;
+        int leastLoad = Integer.MAX_VALUE;
+        for (Node node : candidates) {
+            int load = node.load.get() + (assigned.containsKey(node) ? assigned.get(node) : 0);
+            if (load < leastLoad) {
+                leastLoaded = node;
+                leastLoad = load;
+            }
+        }
+        return leastLoaded;
+    }
+
+    /**
+     * Is the failure the node's (i.e. unreachable, or failing with HTTP Status Code 5xx),
+     * rather than the caller's?
+     */
+    private static boolean isNodeFailure(Throwable failure) {
+        for (Throwable cause = failure; null != cause; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof BMPCUnexpectedStatusCodeException) {
+                return ((BMPCUnexpectedStatusCodeException) cause).isServerError();
+            }
+        }
+        return false;
+    }
+
+    private void checkNodes() {
+        for (Node node : nodes) {
+            try {
+                node.load.set(node.manager.getOpenProxies().size());
+                node.healthy = true;
+            } catch (Exception e) {
+                node.healthy = false;
+            }
+        }
+    }
+
+    private static int hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(Consts.UTF_8));
+            return ((digest[0] & 0xFF) << 24)
+                    | ((digest[1] & 0xFF) << 16)
+                    | ((digest[2] & 0xFF) << 8)
+                    | (digest[3] & 0xFF);
+        } catch (Exception e) {
+            throw new BMPCUnexpectedErrorException(e);
+        }
+    }
+
+    private static class Node implements BMPCProxyListener {
+        private final BMPCManager manager;
+        private final AtomicInteger load = new AtomicInteger(0);
+        private volatile boolean healthy = true;
+
+        private Node(BMPCManager manager) {
+            this.manager = manager;
+        }
+
+        /**
+         * A Proxy was placed on this node: count it, until it's closed.
+         */
+        private void placed(BMPCProxy proxy) {
+            load.incrementAndGet();
+            proxy.addListener(this);
+        }
+
+        @Override
+        public void proxyUsed(BMPCProxy proxy) {
+            /* nothing to do */
+        }
+
+        @Override
+        public void proxyClosed(BMPCProxy proxy) {
+            proxy.removeListener(this);
+
+            // Never below zero: the load may have been refreshed since the Proxy was placed
+            int current;
+            do {
+                current = load.get();
+                if (current == 0) {
+                    return;
+                }
+            } while (!load.compareAndSet(current, current - 1));
+        }
+    }
+}
@@ -27,10 +27,17 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.github.detro.browsermobproxyclient.manager;
 
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
 import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.BMPCProxyListener;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCInvalidJsonException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToCloseProxiesException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToConnectException;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToParseJsonResponseException;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedErrorException;
+import com.github.detro.browsermobproxyclient.metrics.BMPCEndpoint;
+import com.github.detro.browsermobproxyclient.metrics.BMPCRequestTimer;
 import com.google.gson.*;
 import org.apache.http.Consts;
 import org.apache.http.HttpEntity;
@@ -40,49 +47,231 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
 
 public class BMPCDefaultManager implements BMPCManager {
 
+    public static final int DEFAULT_CLOSE_PARALLELISM = 16;
+    public static final int DEFAULT_CREATE_PARALLELISM = 16;
+
     private static final Gson GSON = new GsonBuilder()
             .serializeNulls()
             .create();
 
-    private final CloseableHttpClient HTTPclient = HttpClients.createSystem();
+    private final BMPCHttpClient httpClient;
+    private final CloseableHttpClient HTTPclient;
 
     private final String APIHost;
     private final int APIPort;
 
+    // Ports of the Proxies created by this Manager, and not closed yet
+    private final BMPCPortSet ownedProxies = new BMPCPortSet();
+    private final BMPCProxyListener ownershipListener = new BMPCProxyListener() {
+        @Override
+        public void proxyUsed(BMPCProxy proxy) {
+            /* nothing to do */
+        }
+
+        @Override
+        public void proxyClosed(BMPCProxy proxy) {
+            ownedProxies.remove(proxy.getProxyPort());
+        }
+    };
+
     public BMPCDefaultManager(String apiHost, int apiPort) {
-        this.APIHost = apiHost;
-        this.APIPort = apiPort;
+        this(BMPCHttpClient.shared(apiHost, apiPort));
+    }
+
+    /**
+     * Create a Manager that uses the pooled HTTP Client shared by the whole JVM,
+     * configured as given (see {@link BMPCHttpClient#shared(String, int, BMPCHttpClientConfig)}).
+     *
+     * @param apiHost Host were BrowserMob Proxy is running
+     * @param apiPort Port were BrowserMob Proxy REST API is listening
+     * @param config Configuration of the shared HTTP Client
+     */
+    public BMPCDefaultManager(String apiHost, int apiPort, BMPCHttpClientConfig config) {
+        this(BMPCHttpClient.shared(apiHost, apiPort, config));
+    }
+
+    /**
+     * Create a Manager that uses the given pooled HTTP Client for itself
+     * and for all the Proxies it creates.
+     *
+     * @param httpClient Pooled HTTP Client towards the BrowserMob Proxy REST API
+     */
+    public BMPCDefaultManager(BMPCHttpClient httpClient) {
+        this.httpClient = httpClient;
+        this.HTTPclient = httpClient.getHttpClient();
+        this.APIHost = httpClient.getAPIHost();
+        this.APIPort = httpClient.getAPIPort();
 
         // Validate server is up an running by doing a test-call.
         // The following will throw an exception in case the BrowserMob Proxy
         // isnt' there.
-        getOpenProxies().size();
+        checkHealth();
     }
 
     @Override
     public BMPCProxy createProxy() {
-        return new BMPCProxy(APIHost, APIPort);
+        return own(new BMPCProxy(httpClient));
     }
 
     @Override
     public BMPCProxy createProxy(String upstreamProxyHostAndPort) {
-        return new BMPCProxy(APIHost, APIPort, upstreamProxyHostAndPort);
+        return own(new BMPCProxy(httpClient, upstreamProxyHostAndPort));
     }
 
+    /**
+     * Create many new BMPCProxy Instances at once,
+     * {@link BMPCDefaultManager#DEFAULT_CREATE_PARALLELISM} at a time.
+     *
+     * @see BMPCDefaultManager#createProxies(int, String, int)
+     */
     @Override
-    public Set<Integer> getOpenProxies() {
-        Set<Integer> openProxiesPorts = new HashSet<Integer>();
+    public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort) {
+        return createProxies(count, upstreamProxyHostAndPort, DEFAULT_CREATE_PARALLELISM);
+    }
 
+    /**
+     * Create many new BMPCProxy Instances at once, concurrently.
+     *
+     * Returns once all of them are ready. If any fails to be created,
+     * the ones already created are closed.
+     *
+     * @param count Number of Proxies to create
+     * @param upstreamProxyHostAndPort Bind the new Proxy instances to
+     *                                 pass through an Upstream Proxy. Can be "null".
+     * @param parallelism Maximum number of Proxies being created at the same time
+     * @return New BMPCProxy Instances
+     */
+    public List<BMPCProxy> createProxies(int count, final String upstreamProxyHostAndPort, int parallelism) {
+        if (count < 0 || parallelism < 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid count %d or parallelism %d", count, parallelism));
+        }
+        if (count == 0) {
+            return new ArrayList<BMPCProxy>();
+        }
+
+        // All the POSTs go through the same pooled HTTP Client
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, count),
+                daemonThreadFactory("BMPCDefaultManager-createProxies"));
+
+        List<BMPCProxy> proxies = new ArrayList<BMPCProxy>(count);
+        Throwable failure = null;
+        try {
+            List<Future<BMPCProxy>> creations = new ArrayList<Future<BMPCProxy>>(count);
+            for (int i = 0; i < count; ++i) {
+                creations.add(executor.submit(new Callable<BMPCProxy>() {
+                    @Override
+                    public BMPCProxy call() {
+                        return new BMPCProxy(httpClient, upstreamProxyHostAndPort);
+                    }
+                }));
+            }
+
+            // Wait for all of them, even if some fail, so none is left behind
+            for (Future<BMPCProxy> creation : creations) {
+                try {
+                    proxies.add(creation.get());
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = e;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (null != failure) {
+            // Fail cleanly: close the ones created
+            Set<Integer> createdPorts = new HashSet<Integer>();
+            for (BMPCProxy proxy : proxies) {
+                createdPorts.add(proxy.getProxyPort());
+            }
+            try {
+                closeAll(httpClient, createdPorts, parallelism, null);
+            } catch (Exception e) {
+                /* ignore */
+            }
+            throw new BMPCUnableToConnectException(String.format(
+                    "Unable to create %d Proxies at '%s:%d'", count, APIHost, APIPort), failure);
+        }
+
+        for (BMPCProxy proxy : proxies) {
+            own(proxy);
+        }
+        return proxies;
+    }
+
+    /**
+     * Check BrowserMob Proxy is up and running.
+     *
+     * Only the HTTP Status of <code>GET /proxy</code> is looked at: the list
+     * of Proxies is never downloaded (the connection is aborted instead),
+     * no matter how many Proxies are open.
+     *
+     * @throws BMPCUnexpectedErrorException if BrowserMob Proxy is not reachable,
+     *                                      or doesn't respond as expected
+     */
+    public void checkHealth() {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.LIST_PROXIES);
+        try {
+            HttpGet request = new HttpGet(requestURIBuilder()
+                    .setPath("/proxy")
+                    .build());
+
+            // Execute request
+            CloseableHttpResponse response = HTTPclient.execute(request);
+            timer.responseReceived(response);
+
+            try {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != 200) {
+                    throw new BMPCUnexpectedErrorException(String.format(
+                            "BrowserMob Proxy at '%s:%d' is not healthy." +
+                                    " Status code: %d",
+                            APIHost, APIPort, statusCode));
+                }
+            } finally {
+                // Close HTTP Response, without reading the list of Proxies
+                response.close();
+            }
+        } catch (Exception e) {
+            timer.failed(e);
+            throw new BMPCUnexpectedErrorException(e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Returns list of Proxies created by this Manager and not closed yet
+     * (i.e. list of the ports they listen on).
+     *
+     * Differently from {@link BMPCDefaultManager#getOpenProxies()}, this doesn't
+     * involve BrowserMob Proxy at all: Proxies closed by other means than
+     * {@link BMPCProxy#close()} (ex. by another client) are still listed.
+     *
+     * @return List of Proxies created by this Manager
+     */
+    public Set<Integer> getOwnedProxies() {
+        return ownedProxies.toSet();
+    }
+
+    @Override
+    public Set<Integer> getOpenProxies() {
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.LIST_PROXIES);
         try {
             // Request list of Proxy currently running
             HttpGet request = new HttpGet(requestURIBuilder()
@@ -91,42 +280,129 @@ public class BMPCDefaultManager implements BMPCManager {
 
             // Execute request
             CloseableHttpResponse response = HTTPclient.execute(request);
+            timer.responseReceived(response);
 
             // Check request was successful
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (statusCode != 200) {
-                throw new BMPCUnexpectedErrorException(String.format(
-                        "Can't fetch list of Open Proxies from '%s:%d'." +
-                                " Status code: %d",
-                        APIHost, APIPort, statusCode));
-            }
+            JsonObject jsonResponse;
+            try {
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (statusCode != 200) {
+                    throw new BMPCUnexpectedErrorException(String.format(
+                            "Can't fetch list of Open Proxies from '%s:%d'." +
+                                    " Status code: %d",
+                            APIHost, APIPort, statusCode));
+                }
 
-            // Parse JSON response and check it's valid
-            String proxyListKey = "proxyList";
-            JsonObject jsonResponse = httpResponseToJsonObject(response);
-            if (null == jsonResponse || !jsonResponse.has(proxyListKey)) {
-                throw new BMPCInvalidJsonException(String.format(
-                        "JSON Response does not contain '%s'", proxyListKey));
+                // Parse JSON response
+                jsonResponse = httpResponseToJsonObject(response);
+            } finally {
+                response.close();
             }
 
-            // Create response with list of Open Proxies Ports
-            JsonArray proxyList = jsonResponse.getAsJsonArray(proxyListKey);
-            for (JsonElement proxy : proxyList) {
-                openProxiesPorts.add(proxy.getAsJsonObject().getAsJsonPrimitive("port").getAsInt());
-            }
+            return openProxiesPorts(jsonResponse);
         } catch (Exception e) {
+            timer.failed(e);
             throw new BMPCUnexpectedErrorException(e);
+        } finally {
+            timer.stop();
         }
-
-        return openProxiesPorts;
     }
 
+    /**
+     * Close all Proxies, {@link BMPCDefaultManager#DEFAULT_CLOSE_PARALLELISM} at a time.
+     *
+     * @see BMPCDefaultManager#closeAll(int)
+     */
     @Override
     public void closeAll() {
-        BMPCProxy proxy;
-        for (int openProxyPort : getOpenProxies()) {
-            proxy = new BMPCProxy(APIHost, APIPort, openProxyPort);
-            proxy.close();
+        closeAll(DEFAULT_CLOSE_PARALLELISM);
+    }
+
+    /**
+     * Close all Proxies, concurrently.
+     *
+     * This will not close the BrowserMob Proxy itself.
+     * All the Proxies are attempted, even if some fail to close.
+     *
+     * @param parallelism Maximum number of Proxies being closed at the same time
+     * @throws BMPCUnableToCloseProxiesException if any Proxy failed to close
+     */
+    public void closeAll(int parallelism) {
+        closeAll(httpClient, getOpenProxies(), parallelism, ownedProxies);
+    }
+
+    /**
+     * Close all Proxies created by this Manager,
+     * {@link BMPCDefaultManager#DEFAULT_CLOSE_PARALLELISM} at a time.
+     *
+     * @see BMPCDefaultManager#closeAllOwned(int)
+     */
+    public void closeAllOwned() {
+        closeAllOwned(DEFAULT_CLOSE_PARALLELISM);
+    }
+
+    /**
+     * Close all Proxies created by this Manager (see {@link BMPCDefaultManager#getOwnedProxies()}),
+     * concurrently.
+     *
+     * Differently from {@link BMPCDefaultManager#closeAll(int)}, Proxies created by other
+     * clients of the same BrowserMob Proxy are left alone, and the list of all
+     * the Proxies open is never requested.
+     * All the Proxies are attempted, even if some fail to close.
+     *
+     * @param parallelism Maximum number of Proxies being closed at the same time
+     * @throws BMPCUnableToCloseProxiesException if any Proxy failed to close
+     */
+    public void closeAllOwned(int parallelism) {
+        closeAll(httpClient, ownedProxies.toSet(), parallelism, ownedProxies);
+    }
+
+    static void closeAll(final BMPCHttpClient httpClient, Set<Integer> proxyPorts, int parallelism,
+                         final BMPCPortSet ownedProxies) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        if (proxyPorts.isEmpty()) {
+            return;
+        }
+
+        // All the DELETEs go through the same pooled HTTP Client
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, proxyPorts.size()),
+                daemonThreadFactory("BMPCDefaultManager-closeAll"));
+
+        Map<Integer, Throwable> failures = new HashMap<Integer, Throwable>();
+        try {
+            Map<Integer, Future<?>> closings = new HashMap<Integer, Future<?>>();
+            for (final int proxyPort : proxyPorts) {
+                closings.put(proxyPort, executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        BMPCProxy.closeProxy(httpClient, proxyPort);
+                        if (null != ownedProxies) {
+                            ownedProxies.remove(proxyPort);
+                        }
+                    }
+                }));
+            }
+
+            // Collect failures, without giving up on the remaining Proxies
+            for (Map.Entry<Integer, Future<?>> closing : closings.entrySet()) {
+                try {
+                    closing.getValue().get();
+                } catch (ExecutionException e) {
+                    failures.put(closing.getKey(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.put(closing.getKey(), e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new BMPCUnableToCloseProxiesException(failures);
         }
     }
 
@@ -140,11 +416,26 @@ public class BMPCDefaultManager implements BMPCManager {
         return APIPort;
     }
 
+    /**
+     * Pooled HTTP Client shared by this Manager and all the Proxies it creates.
+     *
+     * @return Pooled HTTP Client
+     */
+    public BMPCHttpClient getHttpClient() {
+        return httpClient;
+    }
+
     @Override
     public void stop() {
         // Nothing to do here: this is not a Local BrowserMob Proxy instance.
     }
 
+    private BMPCProxy own(BMPCProxy proxy) {
+        ownedProxies.add(proxy.getProxyPort());
+        proxy.addListener(ownershipListener);
+        return proxy;
+    }
+
     private URIBuilder requestURIBuilder() {
         return new URIBuilder()
                 .setScheme("http")
@@ -152,7 +443,36 @@ public class BMPCDefaultManager implements BMPCManager {
                 .setPort(APIPort);
     }
 
-    private JsonObject httpResponseToJsonObject(HttpResponse response) {
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    static Set<Integer> openProxiesPorts(JsonObject jsonResponse) {
+        // Check JSON response is valid
+        String proxyListKey = "proxyList";
+        if (null == jsonResponse || !jsonResponse.has(proxyListKey)) {
+            throw new BMPCInvalidJsonException(String.format(
+                    "JSON Response does not contain '%s'", proxyListKey));
+        }
+
+        // Create response with list of Open Proxies Ports
+        Set<Integer> openProxiesPorts = new HashSet<Integer>();
+        JsonArray proxyList = jsonResponse.getAsJsonArray(proxyListKey);
+        for (JsonElement proxy : proxyList) {
+            openProxiesPorts.add(proxy.getAsJsonObject().getAsJsonPrimitive("port").getAsInt());
+        }
+
+        return openProxiesPorts;
+    }
+
+    static JsonObject httpResponseToJsonObject(HttpResponse response) {
         int statusCode = response.getStatusLine().getStatusCode();
         HttpEntity entity = response.getEntity();
 
@@ -165,9 +485,14 @@ public class BMPCDefaultManager implements BMPCManager {
                 Charset charset = ContentType.getOrDefault(entity).getCharset();
 
                 // De-serialize
-                return GSON.fromJson(
+                JsonObject json = GSON.fromJson(
                         new InputStreamReader(entity.getContent(), null != charset ? charset : Consts.UTF_8),
                         JsonObject.class);
+
+                // Release connection back to the pool
+                EntityUtils.consume(entity);
+
+                return json;
             } catch (IOException e) {
                 throw new BMPCUnableToParseJsonResponseException(e);
             }
@@ -0,0 +1,469 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.BMPCProxyListener;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToReadLeasesException;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manager that leases every Proxy it creates, and closes the Proxies whose lease expired.
+ * <p/>
+ *
+ * Layered over another {@link BMPCManager}, which actually creates the Proxies.
+ * Every Proxy gets a lease that lasts {@link BMPCLeasingManagerConfig#getLeaseTtlMillis()},
+ * renewed every time the Proxy is used via the REST API, or explicitly via
+ * {@link BMPCLeasingManager#renew(BMPCProxy)}. A background reaper compares the leases
+ * with the Proxies still open on BrowserMob Proxy (see {@link BMPCManager#getOpenProxies()}):
+ * Proxies whose lease expired are closed, leases of Proxies already gone are dropped.
+ * Proxies open on BrowserMob Proxy but not leased by this Manager are never touched.
+ * <p/>
+ *
+ * If a lease file is configured, leases are persisted there: a Manager created
+ * with the same file (ex. after the JVM crashed) takes over the leases left behind,
+ * and closes the corresponding Proxies once they expire.
+ */
+public class BMPCLeasingManager implements BMPCManager {
+
+    private static final String LEASE_FILE_HEADER = "# BrowserMob Proxy Client leases for ";
+
+    private final BMPCManager manager;
+    private final BMPCLeasingManagerConfig config;
+
+    // Leases by "[API HOST]:[API PORT]/[PROXY PORT]"
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+    private final BMPCProxyListener leaseListener = new BMPCProxyListener() {
+        @Override
+        public void proxyUsed(BMPCProxy proxy) {
+            renew(proxy);
+        }
+
+        @Override
+        public void proxyClosed(BMPCProxy proxy) {
+            if (null != leases.remove(leaseKey(proxy))) {
+                persist();
+            }
+        }
+    };
+
+    // Order in which leases are taken, to tell which ones are newer than a list of open Proxies
+    private final AtomicLong leaseGeneration = new AtomicLong(0);
+
+    private final ScheduledExecutorService executor;
+    // Renewals are persisted lazily, by the reaper
+    private volatile boolean renewed = false;
+    private volatile long expiredCount = 0;
+    // Guards the lease file only, so that leasing never waits for the reaper
+    private final Object leaseFileLock = new Object();
+
+    private final class Lease {
+        final String apiHost;
+        final int apiPort;
+        final int proxyPort;
+        // "null" if the lease was taken over from a lease file
+        final WeakReference<BMPCProxy> proxy;
+        final long generation;
+        volatile long expiresAtMillis;
+
+        Lease(String apiHost, int apiPort, int proxyPort, BMPCProxy proxy, long expiresAtMillis) {
+            this.apiHost = apiHost;
+            this.apiPort = apiPort;
+            this.proxyPort = proxyPort;
+            this.proxy = null != proxy ? new WeakReference<BMPCProxy>(proxy) : null;
+            this.generation = leaseGeneration.incrementAndGet();
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        void renew() {
+            expiresAtMillis = System.currentTimeMillis() + config.getLeaseTtlMillis();
+            renewed = true;
+        }
+
+        String key() {
+            return leaseKey(apiHost, apiPort, proxyPort);
+        }
+
+        boolean isOn(String host, int port) {
+            return apiHost.equals(host) && apiPort == port;
+        }
+    }
+
+    /**
+     * Create a leasing Manager with the default configuration.
+     *
+     * @param manager Manager used to create and close the leased Proxies
+     */
+    public BMPCLeasingManager(BMPCManager manager) {
+        this(manager, new BMPCLeasingManagerConfig());
+    }
+
+    /**
+     * Create a leasing Manager, take over the leases in the lease file (if any)
+     * and start reaping in background.
+     *
+     * @param manager Manager used to create and close the leased Proxies.
+     *                Can't be a {@link BMPCClusterManager}: lease each node instead.
+     * @param config Configuration of the leases
+     * @throws BMPCUnableToReadLeasesException if the lease file exists, but can't be read
+     */
+    public BMPCLeasingManager(BMPCManager manager, BMPCLeasingManagerConfig config) {
+        if (manager instanceof BMPCClusterManager) {
+            // Its open Proxies span many BrowserMob Proxies, and their ports collide
+            throw new IllegalArgumentException("Can't lease Proxies across a cluster: lease each node instead");
+        }
+        if (config.getLeaseTtlMillis() <= 0 || config.getReapIntervalMillis() <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid lease TTL %dms or reap interval %dms",
+                    config.getLeaseTtlMillis(), config.getReapIntervalMillis()));
+        }
+
+        this.manager = manager;
+        this.config = config;
+
+        loadLeases();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BMPCLeasingManager-" + BMPCLeasingManager.this.manager.getAPIPort());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reap();
+                } catch (RuntimeException e) {
+                    /* BrowserMob Proxy unreachable: try again next time */
+                }
+            }
+        }, config.getReapIntervalMillis(), config.getReapIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public BMPCProxy createProxy() {
+        return lease(manager.createProxy());
+    }
+
+    @Override
+    public BMPCProxy createProxy(String upstreamProxyHostAndPort) {
+        return lease(manager.createProxy(upstreamProxyHostAndPort));
+    }
+
+    @Override
+    public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort) {
+        List<BMPCProxy> proxies = manager.createProxies(count, upstreamProxyHostAndPort);
+        long expiresAtMillis = System.currentTimeMillis() + config.getLeaseTtlMillis();
+        for (BMPCProxy proxy : proxies) {
+            addLease(proxy, expiresAtMillis);
+        }
+        persist();
+
+        return proxies;
+    }
+
+    @Override
+    public Set<Integer> getOpenProxies() {
+        return manager.getOpenProxies();
+    }
+
+    /**
+     * Close all Proxies, and drop all the leases.
+     */
+    @Override
+    public void closeAll() {
+        manager.closeAll();
+        leases.clear();
+        persist();
+    }
+
+    @Override
+    public String getAPIHost() {
+        return manager.getAPIHost();
+    }
+
+    @Override
+    public int getAPIPort() {
+        return manager.getAPIPort();
+    }
+
+    /**
+     * Stop reaping, persist the leases and stop the underlying Manager.
+     *
+     * Proxies still leased are left open: if a lease file is configured,
+     * the next Manager using it will close them once their lease expires.
+     */
+    @Override
+    public void stop() {
+        executor.shutdownNow();
+        persist();
+        manager.stop();
+    }
+
+    /**
+     * Close the Proxies whose lease expired, and drop the leases of
+     * the Proxies no longer open.
+     *
+     * This is done periodically in background, but can be triggered at any time.
+     *
+     * @return Number of Proxies closed
+     */
+    public synchronized int reap() {
+        // Leases taken after this can't be judged against the list of open Proxies
+        long lastGeneration = leaseGeneration.get();
+        Set<Integer> openProxies = manager.getOpenProxies();
+        long now = System.currentTimeMillis();
+
+        int closed = 0;
+        boolean changed = renewed;
+        renewed = false;
+        for (Lease lease : leases.values()) {
+            if (lease.generation > lastGeneration) {
+                continue;
+            }
+
+            // The open Proxies listed are only those of the underlying Manager REST API
+            if (lease.isOn(getAPIHost(), getAPIPort()) && !openProxies.contains(lease.proxyPort)) {
+                // Closed by someone else
+                changed |= leases.remove(lease.key(), lease);
+            } else if (lease.expiresAtMillis <= now && leases.remove(lease.key(), lease)) {
+                changed = true;
+                if (close(lease)) {
+                    ++closed;
+                }
+            }
+        }
+        expiredCount += closed;
+
+        if (changed) {
+            persist();
+        }
+        return closed;
+    }
+
+    /**
+     * Renew the lease of a Proxy, as if it was just used.
+     *
+     * Leases are renewed automatically only by calls to the REST API
+     * (ex. {@link BMPCProxy#har()}): a Proxy that only carries browser traffic
+     * must be renewed explicitly, at least once per lease time-to-live.
+     *
+     * @param proxy Proxy to renew the lease of
+     * @return "true" if the Proxy is leased by this Manager
+     */
+    public boolean renew(BMPCProxy proxy) {
+        Lease lease = leases.get(leaseKey(proxy));
+        if (null == lease) {
+            return false;
+        }
+        lease.renew();
+        return true;
+    }
+
+    /**
+     * Renew the leases of all the Proxies created by this Manager and still referenced.
+     *
+     * Leases taken over from a lease file are not renewed: nobody uses those Proxies anymore.
+     *
+     * @see BMPCLeasingManager#renew(BMPCProxy)
+     */
+    public void renewAll() {
+        for (Lease lease : leases.values()) {
+            if (null != lease.proxy && null != lease.proxy.get()) {
+                lease.renew();
+            }
+        }
+    }
+
+    /**
+     * Manager the leased Proxies are created with.
+     *
+     * @return Manager the leased Proxies are created with
+     */
+    public BMPCManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Configuration of the leases.
+     *
+     * @return Configuration of the leases
+     */
+    public BMPCLeasingManagerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Number of Proxies currently leased.
+     *
+     * @return Number of leases
+     */
+    public int getLeaseCount() {
+        return leases.size();
+    }
+
+    /**
+     * Number of Proxies closed so far because their lease expired.
+     *
+     * @return Number of Proxies closed by the reaper
+     */
+    public long getExpiredCount() {
+        return expiredCount;
+    }
+
+    private BMPCProxy lease(BMPCProxy proxy) {
+        addLease(proxy, System.currentTimeMillis() + config.getLeaseTtlMillis());
+        persist();
+        return proxy;
+    }
+
+    private void addLease(BMPCProxy proxy, long expiresAtMillis) {
+        Lease lease = new Lease(proxy.getAPIHost(), proxy.getAPIPort(), proxy.getProxyPort(), proxy, expiresAtMillis);
+        leases.put(lease.key(), lease);
+        proxy.addListener(leaseListener);
+    }
+
+    private boolean close(Lease lease) {
+        try {
+            BMPCProxy proxy = null != lease.proxy ? lease.proxy.get() : null;
+            if (null != proxy) {
+                proxy.removeListener(leaseListener);
+                proxy.close();
+            } else {
+                BMPCProxy.closeProxy(BMPCHttpClient.shared(lease.apiHost, lease.apiPort), lease.proxyPort);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            // Closed meanwhile
+            return false;
+        }
+    }
+
+    private static String leaseKey(BMPCProxy proxy) {
+        return leaseKey(proxy.getAPIHost(), proxy.getAPIPort(), proxy.getProxyPort());
+    }
+
+    private static String leaseKey(String apiHost, int apiPort, int proxyPort) {
+        return apiHost + ":" + apiPort + "/" + proxyPort;
+    }
+
+    private String leaseFileHeader() {
+        return LEASE_FILE_HEADER + getAPIHost() + ":" + getAPIPort();
+    }
+
+    private void loadLeases() {
+        File leaseFile = config.getLeaseFile();
+        if (null == leaseFile || !leaseFile.exists()) {
+            return;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(leaseFile), "UTF-8"));
+            try {
+                // Leases taken against another BrowserMob Proxy are none of our business
+                if (!leaseFileHeader().equals(reader.readLine())) {
+                    return;
+                }
+
+                String line;
+                while (null != (line = reader.readLine())) {
+                    // "[API HOST]:[API PORT]/[PROXY PORT] [EXPIRES AT MILLIS]"
+                    String[] fields = line.trim().split("\\s+");
+                    int apiPortAt = fields[0].lastIndexOf(':');
+                    int proxyPortAt = fields[0].lastIndexOf('/');
+                    if (fields.length != 2 || apiPortAt <= 0 || proxyPortAt < apiPortAt) {
+                        continue;
+                    }
+                    try {
+                        Lease lease = new Lease(fields[0].substring(0, apiPortAt),
+                                Integer.parseInt(fields[0].substring(apiPortAt + 1, proxyPortAt)),
+                                Integer.parseInt(fields[0].substring(proxyPortAt + 1)),
+                                null,
+                                Long.parseLong(fields[1]));
+                        leases.put(lease.key(), lease);
+                    } catch (NumberFormatException e) {
+                        /* malformed lease: skip it */
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            throw new BMPCUnableToReadLeasesException(e);
+        }
+    }
+
+    private void persist() {
+        File leaseFile = config.getLeaseFile();
+        if (null == leaseFile) {
+            return;
+        }
+
+        synchronized (leaseFileLock) {
+            persist(leaseFile);
+        }
+    }
+
+    private void persist(File leaseFile) {
+        try {
+            // Write aside, then replace, so that the lease file is never half-written
+            File tmpFile = new File(leaseFile.getPath() + ".tmp");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+            try {
+                writer.write(leaseFileHeader());
+                writer.write('\n');
+                for (Map.Entry<String, Lease> lease : leases.entrySet()) {
+                    writer.write(lease.getKey() + " " + lease.getValue().expiresAtMillis + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+
+            if (!tmpFile.renameTo(leaseFile)) {
+                leaseFile.delete();
+                if (!tmpFile.renameTo(leaseFile)) {
+                    throw new IOException("Unable to replace " + leaseFile);
+                }
+            }
+        } catch (IOException e) {
+            // Persisted again at the next change, or reap
+            renewed = true;
+        }
+    }
+}
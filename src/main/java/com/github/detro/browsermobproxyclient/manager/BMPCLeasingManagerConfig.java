@@ -0,0 +1,101 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+
+import java.io.File;
+
+/**
+ * Configuration of a {@link BMPCLeasingManager}.
+ * <p/>
+ *
+ * All the times are expressed in milliseconds.
+ * Setters return the configuration itself, so calls can be chained.
+ */
+public class BMPCLeasingManagerConfig {
+
+    public static final long DEFAULT_LEASE_TTL_MILLIS = 600000;
+    public static final long DEFAULT_REAP_INTERVAL_MILLIS = 30000;
+
+    private long leaseTtlMillis = DEFAULT_LEASE_TTL_MILLIS;
+    private long reapIntervalMillis = DEFAULT_REAP_INTERVAL_MILLIS;
+    private File leaseFile = null;
+
+    /**
+     * How long a Proxy can go unused before its lease expires and it's closed.
+     *
+     * Only calls to the REST API count as use: a Proxy that only carries browser
+     * traffic for longer than this must be renewed explicitly
+     * (see {@link BMPCLeasingManager#renew(BMPCProxy)} and {@link BMPCLeasingManager#renewAll()}),
+     * or it will be closed under the running test.
+     *
+     * @param leaseTtlMillis Lease time-to-live
+     * @return This configuration
+     */
+    public BMPCLeasingManagerConfig setLeaseTtlMillis(long leaseTtlMillis) {
+        this.leaseTtlMillis = leaseTtlMillis;
+        return this;
+    }
+
+    public long getLeaseTtlMillis() {
+        return leaseTtlMillis;
+    }
+
+    /**
+     * How often expired leases are looked for.
+     *
+     * @param reapIntervalMillis Interval between two reaps
+     * @return This configuration
+     */
+    public BMPCLeasingManagerConfig setReapIntervalMillis(long reapIntervalMillis) {
+        this.reapIntervalMillis = reapIntervalMillis;
+        return this;
+    }
+
+    public long getReapIntervalMillis() {
+        return reapIntervalMillis;
+    }
+
+    /**
+     * File the leases are persisted to, so that a new Manager (ex. in a restarted JVM)
+     * can close the Proxies leaked by the previous one.
+     * A lease file must be used by one Manager at a time, against one BrowserMob Proxy.
+     *
+     * @param leaseFile Lease file. "null" to not persist leases.
+     * @return This configuration
+     */
+    public BMPCLeasingManagerConfig setLeaseFile(File leaseFile) {
+        this.leaseFile = leaseFile;
+        return this;
+    }
+
+    public File getLeaseFile() {
+        return leaseFile;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Captures the output of a Local BrowserMob Proxy process into a log file.
+ * <p/>
+ *
+ * The output is read by a dedicated daemon thread and written in batches:
+ * the log file is flushed only once there is no more output ready to be read,
+ * or at least every {@link BMPCLocalLogPump#FLUSH_INTERVAL_MILLIS}.
+ * When it grows beyond the maximum size, the log file is rotated
+ * (i.e. <code>log</code> becomes <code>log.1</code>, <code>log.1</code>
+ * becomes <code>log.2</code> and so forth).
+ * <p/>
+ *
+ * The most recent lines are also kept in memory, so they can be reported
+ * when something goes wrong.
+ */
+public class BMPCLocalLogPump {
+
+    public static final int DEFAULT_RECENT_LINES = 200;
+    public static final long DEFAULT_MAX_FILE_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MAX_ROTATED_FILES = 3;
+    public static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final String logPath;
+    private final long maxFileSize;
+    private final int maxRotatedFiles;
+
+    // Ring buffer of the most recent lines
+    private final String[] recentLines;
+    private int recentLinesNext = 0;
+    private int recentLinesCount = 0;
+
+    private final List<LineWatch> watches = new CopyOnWriteArrayList<LineWatch>();
+    private final Thread thread;
+
+    private Writer writer;
+    private long fileSize;
+
+    /**
+     * @see BMPCLocalLogPump#BMPCLocalLogPump(InputStream, String, int, long, int)
+     */
+    public BMPCLocalLogPump(InputStream input, String logPath) {
+        this(input, logPath, DEFAULT_RECENT_LINES, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_ROTATED_FILES);
+    }
+
+    /**
+     * Create a pump. It doesn't start pumping until {@link BMPCLocalLogPump#start(String)}.
+     *
+     * @param input Output of the process to capture
+     * @param logPath Path to the log file
+     * @param recentLines How many of the most recent lines to keep in memory
+     * @param maxFileSize Size (approximate, in bytes) beyond which the log file is rotated
+     * @param maxRotatedFiles How many rotated log files to keep
+     */
+    public BMPCLocalLogPump(InputStream input, String logPath, int recentLines, long maxFileSize, int maxRotatedFiles) {
+        this.input = input;
+        this.logPath = logPath;
+        this.recentLines = new String[Math.max(1, recentLines)];
+        this.maxFileSize = maxFileSize;
+        this.maxRotatedFiles = maxRotatedFiles;
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pump();
+            }
+        }, "BMPCLocalLogPump-" + new File(logPath).getName());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Returns a signal for the first line, from now on, that contains all the given strings.
+     *
+     * @param substrings Strings the line must contain
+     * @return Signal, counted down once such line is read
+     */
+    public CountDownLatch watchFor(String... substrings) {
+        LineWatch watch = new LineWatch(substrings);
+        watches.add(watch);
+        return watch.signal;
+    }
+
+    /**
+     * Start pumping, in background.
+     *
+     * @param header Line to mark the beginning of this log with
+     * @throws IOException if the log file can't be opened
+     */
+    public void start(String header) throws IOException {
+        openWriter();
+        write(header);
+        writer.flush();
+        thread.start();
+    }
+
+    /**
+     * Returns the most recent lines read, oldest first.
+     *
+     * @return Most recent lines
+     */
+    public List<String> getRecentLines() {
+        synchronized (recentLines) {
+            List<String> lines = new ArrayList<String>(recentLinesCount);
+            int first = (recentLinesNext - recentLinesCount + recentLines.length) % recentLines.length;
+            for (int i = 0; i < recentLinesCount; ++i) {
+                lines.add(recentLines[(first + i) % recentLines.length]);
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Path to the (current) log file.
+     *
+     * @return Path to the log file
+     */
+    public String getLogPath() {
+        return logPath;
+    }
+
+    private void pump() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        try {
+            long lastFlush = System.currentTimeMillis();
+            String line;
+            // Reaches the end once the process exits
+            while ((line = reader.readLine()) != null) {
+                remember(line);
+                notifyWatches(line);
+                write(line);
+
+                // Flush once caught up with the output, or if it's been a while
+                long now = System.currentTimeMillis();
+                if (!reader.ready() || now - lastFlush >= FLUSH_INTERVAL_MILLIS) {
+                    writer.flush();
+                    lastFlush = now;
+                }
+            }
+        } catch (IOException e) {
+            // Process output closed
+        } finally {
+            try { reader.close(); } catch (IOException ioe) { /* ignore */ }
+            try { writer.close(); } catch (IOException ioe) { /* ignore */ }
+        }
+    }
+
+    private void remember(String line) {
+        synchronized (recentLines) {
+            recentLines[recentLinesNext] = line;
+            recentLinesNext = (recentLinesNext + 1) % recentLines.length;
+            if (recentLinesCount < recentLines.length) {
+                ++recentLinesCount;
+            }
+        }
+    }
+
+    private void notifyWatches(String line) {
+        for (LineWatch watch : watches) {
+            if (watch.matches(line)) {
+                watch.signal.countDown();
+                watches.remove(watch);
+            }
+        }
+    }
+
+    private void write(String line) throws IOException {
+        if (fileSize >= maxFileSize) {
+            rotate();
+        }
+        writer.write(line);
+        writer.write(LINE_SEPARATOR);
+        fileSize += line.length() + LINE_SEPARATOR.length();
+    }
+
+    private void rotate() throws IOException {
+        writer.close();
+
+        // Shift "log.N-1" to "log.N", ..., "log" to "log.1", dropping the oldest
+        new File(logPath + "." + maxRotatedFiles).delete();
+        for (int i = maxRotatedFiles - 1; i >= 1; --i) {
+            new File(logPath + "." + i).renameTo(new File(logPath + "." + (i + 1)));
+        }
+        File current = new File(logPath);
+        if (maxRotatedFiles > 0) {
+            current.renameTo(new File(logPath + ".1"));
+        } else {
+            current.delete();
+        }
+
+        openWriter();
+    }
+
+    private void openWriter() throws IOException {
+        File file = new File(logPath);
+        fileSize = file.length();
+        writer = new BufferedWriter(new FileWriter(file, true), WRITE_BUFFER_SIZE);
+    }
+
+    private static class LineWatch {
+        private final String[] substrings;
+        private final CountDownLatch signal = new CountDownLatch(1);
+
+        private LineWatch(String[] substrings) {
+            this.substrings = substrings;
+        }
+
+        private boolean matches(String line) {
+            for (String substring : substrings) {
+                if (!line.contains(substring)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -27,26 +27,50 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.github.detro.browsermobproxyclient.manager;
 
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
 import com.github.detro.browsermobproxyclient.BMPCProxy;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalStartStopException;
+import com.github.detro.browsermobproxyclient.metrics.BMPCMetricsRegistry;
 import org.openqa.selenium.net.PortProber;
-import org.openqa.selenium.net.UrlChecker;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.URL;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class BMPCLocalManager implements BMPCManager {
 
     public static final String DEFAULT_HOST = "localhost";
+    public static final long STARTUP_TIMEOUT_MILLIS = 20000;
+
+    // Printed by Jetty once BrowserMob Proxy REST API is listening (ex. "Started SelectChannelConnector@0.0.0.0:8080")
+    private static final String STARTED_LINE_MARKER = "Started";
+    private static final long READINESS_PROBE_MIN_INTERVAL_MILLIS = 5;
+    private static final long READINESS_PROBE_MAX_INTERVAL_MILLIS = 250;
+
     private final int port;
     private final String logPath;
     private Process process = null;
     private InputStream stdout = null;
     private Thread jvmShotdownHook;
+    private final BMPCLocalLogPump logPump;
+    private long startupTimeMillis;
+
+    // Attached to a Local BrowserMob Proxy launched by another client
+    private final boolean attached;
+    private final long attachedPid;
+    // Registry of the Local BrowserMob Proxy shared with other clients (if any)
+    private BMPCLocalRegistry registry = null;
+    private boolean stopped = false;
 
+    private final BMPCHttpClient httpClient;
     private final BMPCDefaultManager defaultManager;
 
     public BMPCLocalManager(String executablePath, String logPath) {
@@ -54,8 +78,25 @@ public class BMPCLocalManager implements BMPCManager {
     }
 
     public BMPCLocalManager(String executablePath, final String logPath, int port) {
+        this(executablePath, logPath, port, new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Launch a Local BrowserMob Proxy.
+     *
+     * The Manager owns a pooled HTTP Client, configured as given, that is used
+     * by itself and by all the Proxies it creates. It's closed on {@link BMPCLocalManager#stop()}.
+     *
+     * @param executablePath Path to the BrowserMob Proxy executable
+     * @param logPath Path to the log file (the port will be appended to it)
+     * @param port Port to bind Local BrowserMob Proxy to
+     * @param httpClientConfig Configuration of the pooled HTTP Client
+     */
+    public BMPCLocalManager(String executablePath, final String logPath, int port, BMPCHttpClientConfig httpClientConfig) {
         this.port = port;
         this.logPath = logPath + "." + this.port;
+        this.attached = false;
+        this.attachedPid = -1;
 
         final String failStartExceptionMsg = String.format(
                 "Failed to start Local BrowserMob Proxy on port '%d'", this.port);
@@ -65,7 +106,12 @@ public class BMPCLocalManager implements BMPCManager {
             throw new BMPCLocalStartStopException(failStartExceptionMsg);
         }
 
+        // Create the HTTP Client before launching, so nothing can fail between
+        // the launch and the registration of the JVM Shutdown Hook, leaking the process
+        httpClient = new BMPCHttpClient(DEFAULT_HOST, this.port, httpClientConfig);
+
         // Start Local BrowserMob Proxy external process
+        long startTime = System.nanoTime();
         try {
             process = new ProcessBuilder(executablePath,
                     "-port",
@@ -73,64 +119,94 @@ public class BMPCLocalManager implements BMPCManager {
                     .redirectErrorStream(true)
                     .start();
             stdout = process.getInputStream();
+        } catch (Exception e) {
+            throw abortStart(failStartExceptionMsg, e);
+        }
 
-            // Wait for Proxy to start accepting requests
-            new UrlChecker().waitUntilAvailable(
-                    20, TimeUnit.SECONDS,
-                    new URL("http://localhost:" + this.port + "/proxy"));
+        // Capture Local BrowserMob Proxy output to file, in background,
+        // watching for the "Started" line
+        logPump = new BMPCLocalLogPump(stdout, this.logPath);
+        CountDownLatch startedSignal = logPump.watchFor(STARTED_LINE_MARKER, ":" + this.port);
+        try {
+            logPump.start("*** Local BrowserMob Proxy (port " + this.port + ") STARTED ***");
+        } catch (Exception e) {
+            throw abortStart(failStartExceptionMsg, e);
+        }
 
-            // Throw exception if not running
-            if (!isRunning()) {
-                throw new BMPCLocalStartStopException(failStartExceptionMsg);
-            }
+        // Wait for Proxy to start accepting requests
+        try {
+            waitUntilReady(startedSignal);
         } catch (Exception e) {
-            throw new BMPCLocalStartStopException(failStartExceptionMsg, e);
+            throw abortStart(failStartExceptionMsg + recentOutput(), e);
         }
+        long startupNanos = System.nanoTime() - startTime;
+        startupTimeMillis = TimeUnit.NANOSECONDS.toMillis(startupNanos);
 
-        // Launch a Thread to output Local BrowserMob Proxy output to file
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    // Prepare input and output
-                    String lineSeparator = System.getProperty("line.separator");
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(stdout));
-                    BufferedWriter writer = new BufferedWriter(new FileWriter(BMPCLocalManager.this.logPath, true));
-
-                    // Mark beginning of this Log
-                    writer.write("*** Local BrowserMob Proxy (port " +
-                            BMPCLocalManager.this.port +
-                            ") STARTED ***" + lineSeparator);
-
-                    while(BMPCLocalManager.this.isRunning()) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            writer.write(line + lineSeparator);
-                            writer.flush();
-                        }
-                        Thread.currentThread().sleep(250);
-                    }
-
-                    reader.close();
-                    writer.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
-        }).start();
+        // Initialize internal Default Manager
+        try {
+            defaultManager = new BMPCDefaultManager(httpClient);
+        } catch (Exception e) {
+            throw abortStart(failStartExceptionMsg + recentOutput(), e);
+        }
+        BMPCMetricsRegistry.get().localStarted(this.port, startupNanos);
 
         // Register JVM Shutdown Hook to ensure we stop the
         // Local BrowserMob Proxy if client code doesn't
-        jvmShotdownHook = new Thread(new Runnable() {
+        jvmShotdownHook = createShutdownHook();
+        enableShutdownWithJVM();
+    }
+
+    /**
+     * Undo a failed launch: destroy the process, if started, and release the HTTP Client.
+     */
+    private BMPCLocalStartStopException abortStart(String message, Exception cause) {
+        if (null != process) {
+            process.destroy();
+        }
+        httpClient.close();
+        return new BMPCLocalStartStopException(message, cause);
+    }
+
+    /**
+     * Attach to a Local BrowserMob Proxy launched by another client (possibly another JVM).
+     */
+    private BMPCLocalManager(int port, String logPath, BMPCHttpClientConfig httpClientConfig, long pid) {
+        this.port = port;
+        this.logPath = logPath + "." + this.port;
+        this.logPump = null;
+        this.attached = true;
+        this.attachedPid = pid;
+
+        // Initialize internal Default Manager: fails if it's not reachable
+        httpClient = new BMPCHttpClient(DEFAULT_HOST, this.port, httpClientConfig);
+        try {
+            defaultManager = new BMPCDefaultManager(httpClient);
+        } catch (RuntimeException e) {
+            httpClient.close();
+            throw e;
+        }
+
+        // Register JVM Shutdown Hook to ensure we detach from the
+        // Local BrowserMob Proxy if client code doesn't
+        jvmShotdownHook = createShutdownHook();
+        enableShutdownWithJVM();
+    }
+
+    static BMPCLocalManager attach(int port, String logPath, BMPCHttpClientConfig httpClientConfig, long pid) {
+        return new BMPCLocalManager(port, logPath, httpClientConfig, pid);
+    }
+
+    synchronized void shareWith(BMPCLocalRegistry registry) {
+        this.registry = registry;
+    }
+
+    private Thread createShutdownHook() {
+        return new Thread(new Runnable() {
             @Override
             public void run() {
                 BMPCLocalManager.this.stop();
             }
         });
-        enableShutdownWithJVM();
-
-        // Initialize internal Default Manager
-        defaultManager = new BMPCDefaultManager(DEFAULT_HOST, this.port);
     }
 
     /**
@@ -182,6 +258,7 @@ public class BMPCLocalManager implements BMPCManager {
      * @return "true" if Local BrowserMob Proxy is running.
      */
     public synchronized boolean isRunning() {
+        if (attached) return !stopped && isAcceptingConnections(port);
         if (null == process) return false;
 
         try {
@@ -202,6 +279,20 @@ public class BMPCLocalManager implements BMPCManager {
         return defaultManager.createProxy(upstreamProxyHostAndPort);
     }
 
+    @Override
+    public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort) {
+        return defaultManager.createProxies(count, upstreamProxyHostAndPort);
+    }
+
+    /**
+     * Create many new BMPCProxy Instances at once, concurrently.
+     *
+     * @see BMPCDefaultManager#createProxies(int, String, int)
+     */
+    public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort, int parallelism) {
+        return defaultManager.createProxies(count, upstreamProxyHostAndPort, parallelism);
+    }
+
     @Override
     public Set<Integer> getOpenProxies() {
         return defaultManager.getOpenProxies();
@@ -212,6 +303,42 @@ public class BMPCLocalManager implements BMPCManager {
         defaultManager.closeAll();
     }
 
+    /**
+     * Close all Proxies, concurrently.
+     *
+     * @see BMPCDefaultManager#closeAll(int)
+     */
+    public void closeAll(int parallelism) {
+        defaultManager.closeAll(parallelism);
+    }
+
+    /**
+     * Returns the list of Proxies created by this Manager, and not closed yet.
+     *
+     * @see BMPCDefaultManager#getOwnedProxies()
+     */
+    public Set<Integer> getOwnedProxies() {
+        return defaultManager.getOwnedProxies();
+    }
+
+    /**
+     * Close all Proxies created by this Manager.
+     *
+     * @see BMPCDefaultManager#closeAllOwned()
+     */
+    public void closeAllOwned() {
+        defaultManager.closeAllOwned();
+    }
+
+    /**
+     * Close all Proxies created by this Manager, concurrently.
+     *
+     * @see BMPCDefaultManager#closeAllOwned(int)
+     */
+    public void closeAllOwned(int parallelism) {
+        defaultManager.closeAllOwned(parallelism);
+    }
+
     @Override
     public String getAPIHost() {
         return defaultManager.getAPIHost();
@@ -222,6 +349,96 @@ public class BMPCLocalManager implements BMPCManager {
         return defaultManager.getAPIPort();
     }
 
+    /**
+     * Returns the most recent lines of output of Local BrowserMob Proxy, oldest first.
+     *
+     * Useful to find out what went wrong, without reading the log file.
+     *
+     * @return Most recent lines of output
+     */
+    public List<String> getRecentLogLines() {
+        return null != logPump
+                ? logPump.getRecentLines()
+                : Collections.<String>emptyList();
+    }
+
+    /**
+     * Is this Manager attached to a Local BrowserMob Proxy launched by another client?
+     *
+     * If so, its output is not captured, and it's stopped only when the last client stops.
+     *
+     * @return "true" if attached
+     */
+    public boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * Process id of Local BrowserMob Proxy (best-effort).
+     *
+     * @return Process id, or "-1" if unknown
+     */
+    public synchronized long getPid() {
+        if (attached) return attachedPid;
+        return null != process ? BMPCLocalRegistry.pidOf(process) : -1;
+    }
+
+    /**
+     * Time it took for Local BrowserMob Proxy to start accepting requests.
+     * Also reported to {@link com.github.detro.browsermobproxyclient.metrics.BMPCMetrics#localStarted(int, long)}.
+     *
+     * @return Startup time, or "0" if attached
+     */
+    public long getStartupTimeMillis() {
+        return startupTimeMillis;
+    }
+
+    /**
+     * Waits for Local BrowserMob Proxy to be ready, whichever comes first between:
+     * <ul>
+     *     <li>the "Started" line being printed on its output</li>
+     *     <li>its port accepting connections (probed with exponential backoff)</li>
+     * </ul>
+     */
+    private void waitUntilReady(CountDownLatch startedSignal) throws Exception {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        long probeInterval = READINESS_PROBE_MIN_INTERVAL_MILLIS;
+
+        while (!startedSignal.await(probeInterval, TimeUnit.MILLISECONDS)) {
+            if (isAcceptingConnections(port)) {
+                return;
+            }
+            if (!isRunning()) {
+                throw new BMPCLocalStartStopException("Local BrowserMob Proxy exited during startup");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new TimeoutException(String.format(
+                        "Local BrowserMob Proxy not ready after %dms", STARTUP_TIMEOUT_MILLIS));
+            }
+            probeInterval = Math.min(probeInterval * 2, READINESS_PROBE_MAX_INTERVAL_MILLIS);
+        }
+    }
+
+    private String recentOutput() {
+        StringBuilder output = new StringBuilder(". Recent output:");
+        for (String line : logPump.getRecentLines()) {
+            output.append(System.getProperty("line.separator")).append(line);
+        }
+        return output.toString();
+    }
+
+    private boolean isAcceptingConnections(int port) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(DEFAULT_HOST, port), (int) READINESS_PROBE_MAX_INTERVAL_MILLIS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try { socket.close(); } catch (IOException ioe) { /* ignore */ }
+        }
+    }
+
     private boolean isPortFree(int port) {
         ServerSocket socket = null;
         try {
@@ -240,6 +457,24 @@ public class BMPCLocalManager implements BMPCManager {
 
     @Override
     public synchronized void stop() {
+        // Release pooled connections
+        if (null != httpClient) {
+            httpClient.close();
+        }
+
+        if (stopped) return;
+        stopped = true;
+
+        // If shared with other clients, only the last one actually stops it
+        if (null != registry && !registry.detach(port)) {
+            return;
+        }
+
+        if (attached) {
+            BMPCLocalRegistry.kill(attachedPid);
+            return;
+        }
+
         if (isRunning()) {
             try {
                 process.destroy();
@@ -0,0 +1,263 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalStartStopException;
+import org.openqa.selenium.net.PortProber;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * Registry of the Local BrowserMob Proxy shared by all the JVMs of the current user.
+ * <p/>
+ *
+ * The registry is a properties file, guarded by a lock file, that records the port
+ * (and process id) of the shared Local BrowserMob Proxy and how many clients
+ * are using it. The first client launches it; the following ones attach to it;
+ * the last one to stop it actually stops it.
+ * <p/>
+ *
+ * Reference counting relies on clients calling {@link BMPCLocalManager#stop()} (also done
+ * via the JVM Shutdown Hook): clients that die abruptly leave the count behind. If the
+ * registered Local BrowserMob Proxy is no longer reachable, a new one is launched.
+ */
+public class BMPCLocalRegistry {
+
+    private static final String REGISTRY_FILE = "local-registry.properties";
+    private static final String LOCK_FILE = "local-registry.lock";
+
+    private static final String PROP_PORT = "port";
+    private static final String PROP_PID = "pid";
+    private static final String PROP_REFS = "refs";
+
+    private final File registryFile;
+    private final File lockFile;
+
+    /**
+     * Create a registry in the given directory.
+     *
+     * @param dir Directory to keep the registry in (ex. <code>~/.browsermob-proxy-client</code>)
+     */
+    public BMPCLocalRegistry(File dir) {
+        if (!dir.exists()) dir.mkdirs();
+        this.registryFile = new File(dir, REGISTRY_FILE);
+        this.lockFile = new File(dir, LOCK_FILE);
+    }
+
+    /**
+     * Attach to the registered Local BrowserMob Proxy, if it's running, or launch
+     * and register a new one.
+     *
+     * @param executablePath Path to the BrowserMob Proxy executable
+     * @param logPath Path to the log file (the port will be appended to it)
+     * @param httpClientConfig Configuration of the pooled HTTP Client
+     * @return Manager of the shared Local BrowserMob Proxy
+     */
+    public BMPCLocalManager attachOrLaunch(final String executablePath,
+                                           final String logPath,
+                                           final BMPCHttpClientConfig httpClientConfig) {
+        try {
+            return withLock(new Callable<BMPCLocalManager>() {
+                @Override
+                public BMPCLocalManager call() throws Exception {
+                    Properties registry = load();
+
+                    // Attach to the registered one, if still reachable
+                    if (null != registry.getProperty(PROP_PORT)) {
+                        try {
+                            BMPCLocalManager manager = BMPCLocalManager.attach(
+                                    Integer.parseInt(registry.getProperty(PROP_PORT)),
+                                    logPath,
+                                    httpClientConfig,
+                                    Long.parseLong(registry.getProperty(PROP_PID, "-1")));
+                            manager.shareWith(BMPCLocalRegistry.this);
+
+                            registry.setProperty(PROP_REFS, String.valueOf(refs(registry) + 1));
+                            store(registry);
+                            return manager;
+                        } catch (Exception e) {
+                            // Stale registration: launch a new one
+                        }
+                    }
+
+                    BMPCLocalManager manager = new BMPCLocalManager(
+                            executablePath, logPath, PortProber.findFreePort(), httpClientConfig);
+                    manager.shareWith(BMPCLocalRegistry.this);
+
+                    registry.clear();
+                    registry.setProperty(PROP_PORT, String.valueOf(manager.getAPIPort()));
+                    registry.setProperty(PROP_PID, String.valueOf(manager.getPid()));
+                    registry.setProperty(PROP_REFS, "1");
+                    store(registry);
+                    return manager;
+                }
+            });
+        } catch (Exception e) {
+            throw new BMPCLocalStartStopException("Unable to attach to or launch a shared Local BrowserMob Proxy", e);
+        }
+    }
+
+    /**
+     * Drop a reference to the registered Local BrowserMob Proxy.
+     *
+     * @param port Port of the Local BrowserMob Proxy
+     * @return "true" if it was the last reference (or it's not registered), and it should be stopped
+     */
+    boolean detach(final int port) {
+        try {
+            return withLock(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    Properties registry = load();
+                    if (!String.valueOf(port).equals(registry.getProperty(PROP_PORT))) {
+                        return true;
+                    }
+
+                    int refs = refs(registry) - 1;
+                    if (refs > 0) {
+                        registry.setProperty(PROP_REFS, String.valueOf(refs));
+                        store(registry);
+                        return false;
+                    }
+
+                    registryFile.delete();
+                    return true;
+                }
+            });
+        } catch (Exception e) {
+            // Can't tell: better leave it running
+            return false;
+        }
+    }
+
+    /**
+     * Best-effort process id of a Process.
+     *
+     * @param process Process
+     * @return Process id, or "-1" if it can't be determined
+     */
+    static long pidOf(Process process) {
+        try {
+            // Java 9+
+            Method pid = Process.class.getMethod("pid");
+            return ((Number) pid.invoke(process)).longValue();
+        } catch (Exception e) {
+            /* ignore */
+        }
+        try {
+            // UNIXProcess and friends
+            Field pid = process.getClass().getDeclaredField("pid");
+            pid.setAccessible(true);
+            return pid.getLong(process);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Best-effort termination of a process not started by this JVM.
+     *
+     * On Windows the whole process tree is terminated: the launcher script
+     * runs BrowserMob Proxy as a child process, rather than replacing itself with it.
+     *
+     * @param pid Process id
+     */
+    static void kill(long pid) {
+        if (pid <= 0) {
+            return;
+        }
+
+        try {
+            ProcessBuilder kill = System.getProperty("os.name").toLowerCase().contains("windows")
+                    ? new ProcessBuilder("taskkill", "/F", "/T", "/PID", String.valueOf(pid))
+                    : new ProcessBuilder("kill", String.valueOf(pid));
+            kill.redirectErrorStream(true).start().waitFor();
+        } catch (Exception e) {
+            /* ignore */
+        }
+    }
+
+    private <T> T withLock(Callable<T> action) throws Exception {
+        // File locks are held by the whole JVM: serialize threads first
+        synchronized (BMPCLocalRegistry.class) {
+            RandomAccessFile lock = new RandomAccessFile(lockFile, "rw");
+            try {
+                FileLock fileLock = lock.getChannel().lock();
+                try {
+                    return action.call();
+                } finally {
+                    fileLock.release();
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    private Properties load() throws IOException {
+        Properties registry = new Properties();
+        if (registryFile.isFile()) {
+            InputStream is = new FileInputStream(registryFile);
+            try {
+                registry.load(is);
+            } finally {
+                is.close();
+            }
+        }
+        return registry;
+    }
+
+    private void store(Properties registry) throws IOException {
+        // Write aside and move into place, so a crash never leaves a partial registry
+        File tempFile = new File(registryFile.getPath() + ".tmp");
+        OutputStream os = new FileOutputStream(tempFile);
+        try {
+            registry.store(os, "Shared Local BrowserMob Proxy");
+        } finally {
+            os.close();
+        }
+        registryFile.delete();
+        if (!tempFile.renameTo(registryFile)) {
+            throw new IOException("Unable to write registry: " + registryFile);
+        }
+    }
+
+    private static int refs(Properties registry) {
+        try {
+            return Integer.parseInt(registry.getProperty(PROP_REFS, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -29,6 +29,7 @@ package com.github.detro.browsermobproxyclient.manager;
 
 import com.github.detro.browsermobproxyclient.BMPCProxy;
 
+import java.util.List;
 import java.util.Set;
 
 public interface BMPCManager {
@@ -49,6 +50,19 @@ public interface BMPCManager {
      */
     public BMPCProxy createProxy(String upstreamProxyHostAndPort);
 
+    /**
+     * Create many new BMPCProxy Instances at once.
+     *
+     * Returns once all of them are ready. If any fails to be created,
+     * the ones already created are closed.
+     *
+     * @param count Number of Proxies to create
+     * @param upstreamProxyHostAndPort Bind the new Proxy instances to
+     *                                 pass through an Upstream Proxy. Can be "null".
+     * @return New BMPCProxy Instances
+     */
+    public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort);
+
     /**
      * Returns list of Proxies currently open (i.e. list of the ports they listen on)
      *
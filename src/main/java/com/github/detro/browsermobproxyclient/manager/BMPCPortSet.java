@@ -0,0 +1,117 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent set of TCP ports, stored as a bitmap of all the 65536 possible ports.
+ * <p/>
+ *
+ * Lock-free, with no boxing and no allocation on add/remove: 8KB, no matter how many
+ * ports are in it.
+ */
+final class BMPCPortSet {
+
+    private static final int PORTS = 65536;
+
+    private final AtomicLongArray words = new AtomicLongArray(PORTS / 64);
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * @param port Port to add
+     * @return "true" if the port was not in the set already
+     */
+    boolean add(int port) {
+        int index = index(port);
+        long bit = 1L << port;
+        while (true) {
+            long word = words.get(index);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word | bit)) {
+                size.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param port Port to remove
+     * @return "true" if the port was in the set
+     */
+    boolean remove(int port) {
+        int index = index(port);
+        long bit = 1L << port;
+        while (true) {
+            long word = words.get(index);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, word, word & ~bit)) {
+                size.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    boolean contains(int port) {
+        return (words.get(index(port)) & (1L << port)) != 0;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * @return Snapshot of the ports in the set (weakly consistent with concurrent changes)
+     */
+    Set<Integer> toSet() {
+        Set<Integer> ports = new HashSet<Integer>();
+        for (int index = 0; index < words.length(); ++index) {
+            long word = words.get(index);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                ports.add(index * 64 + bit);
+                word &= word - 1;
+            }
+        }
+        return ports;
+    }
+
+    private static int index(int port) {
+        if (port < 0 || port >= PORTS) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        return port >>> 6;
+    }
+}
@@ -0,0 +1,504 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCProxyPoolExhaustedException;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-warmed Proxies, layered over a {@link BMPCManager}.
+ * <p/>
+ *
+ * Creating and closing a Proxy costs a round-trip to the BrowserMob Proxy REST API
+ * each (plus the port allocation on the server side). The pool creates Proxies in
+ * background, before they are needed, and hands them out without any round-trip.
+ * Returned Proxies are reset (i.e. a new, empty HAR is created) and kept for the
+ * next user, instead of being closed.
+ * <p/>
+ *
+ * Usage:
+ * <pre>
+ *     BMPCProxy proxy = pool.acquire();
+ *     try {
+ *         // ... use the proxy ...
+ *     } finally {
+ *         pool.release(proxy);
+ *     }
+ * </pre>
+ *
+ * Proxies acquired from the pool must NOT be closed by the caller.
+ */
+public class BMPCProxyPool {
+
+    // How often callers waiting for a Proxy check if the pool shrank, and they can create one
+    private static final long WAIT_SLICE_MILLIS = 50;
+
+    private final BMPCManager manager;
+    private final BMPCProxyPoolConfig config;
+
+    // Idle Proxies: most recently returned at the head, longest idle at the tail
+    private final LinkedBlockingDeque<IdleProxy> idle = new LinkedBlockingDeque<IdleProxy>();
+    private final Set<BMPCProxy> leased = Collections.newSetFromMap(new ConcurrentHashMap<BMPCProxy, Boolean>());
+    // Proxies open or being opened (idle, leased or being reset)
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+
+    // Refill and eviction
+    private final ScheduledExecutorService executor;
+    // Resets of released Proxies, that can be slow (ex. dropping a large HAR)
+    private final ThreadPoolExecutor resetExecutor;
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong waitNanos = new AtomicLong(0);
+    private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+    /**
+     * Create a pool with the default configuration.
+     *
+     * @param manager Manager used to create and close the pooled Proxies
+     */
+    public BMPCProxyPool(BMPCManager manager) {
+        this(manager, new BMPCProxyPoolConfig());
+    }
+
+    /**
+     * Create a pool and start filling it in background.
+     *
+     * @param manager Manager used to create and close the pooled Proxies
+     * @param config Configuration of the pool
+     */
+    public BMPCProxyPool(BMPCManager manager, BMPCProxyPoolConfig config) {
+        if (config.getMinIdle() < 0 || config.getMaxSize() < 1 || config.getMinIdle() > config.getMaxSize()) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid pool size: min idle %d, max size %d",
+                    config.getMinIdle(), config.getMaxSize()));
+        }
+        if (config.getResetThreads() < 1) {
+            throw new IllegalArgumentException("Invalid number of reset threads: " + config.getResetThreads());
+        }
+
+        this.manager = manager;
+        this.config = config;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BMPCProxyPool-" + BMPCProxyPool.this.manager.getAPIPort());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.resetExecutor = new ThreadPoolExecutor(
+                config.getResetThreads(), config.getResetThreads(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "BMPCProxyPool-reset-" + BMPCProxyPool.this.manager.getAPIPort());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        resetExecutor.allowCoreThreadTimeOut(true);
+
+        // Close Proxies that have been idle for too long
+        long evictionIntervalMillis = Math.max(1000, config.getIdleTimeoutMillis() / 2);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+            }
+        }, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+
+        // Pre-warm
+        scheduleRefill();
+    }
+
+    /**
+     * Acquire a Proxy, waiting up to the configured acquire timeout if the pool is exhausted.
+     *
+     * @see BMPCProxyPool#acquire(long)
+     */
+    public BMPCProxy acquire() {
+        return acquire(config.getAcquireTimeoutMillis());
+    }
+
+    /**
+     * Acquire a Proxy.
+     *
+     * An idle Proxy is handed out straight away, if available.
+     * Otherwise a new one is created (if the pool is below its maximum size),
+     * or the call waits for another user to release one. While waiting, a new one
+     * is created as soon as the pool drops below its maximum size
+     * (ex. a released Proxy failed to reset, and was closed).
+     *
+     * @param timeoutMillis How long to wait for a Proxy to be released, if the pool is exhausted
+     * @return A Proxy, with an empty HAR
+     * @throws BMPCProxyPoolExhaustedException if no Proxy was released in time
+     */
+    public BMPCProxy acquire(long timeoutMillis) {
+        checkNotClosed();
+
+        long start = System.nanoTime();
+        try {
+            BMPCProxy proxy;
+
+            IdleProxy idleProxy = idle.pollFirst();
+            if (null != idleProxy) {
+                hits.incrementAndGet();
+                proxy = idleProxy.proxy;
+            } else {
+                misses.incrementAndGet();
+                proxy = reserve() ? open() : await(start, timeoutMillis);
+            }
+
+            leased.add(proxy);
+            return proxy;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BMPCProxyPoolExhaustedException(e);
+        } finally {
+            recordWait(System.nanoTime() - start);
+            scheduleRefill();
+        }
+    }
+
+    /**
+     * Pool exhausted: wait for a Proxy to be returned, or for room to create a new one.
+     */
+    private BMPCProxy await(long startNanos, long timeoutMillis) throws InterruptedException {
+        long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new BMPCProxyPoolExhaustedException(String.format(
+                        "No Proxy available after %dms (max size %d)",
+                        timeoutMillis, config.getMaxSize()));
+            }
+
+            IdleProxy idleProxy = idle.pollFirst(
+                    Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(WAIT_SLICE_MILLIS)),
+                    TimeUnit.NANOSECONDS);
+            if (null != idleProxy) {
+                return idleProxy.proxy;
+            }
+            if (reserve()) {
+                return open();
+            }
+            checkNotClosed();
+        }
+    }
+
+    /**
+     * Return a Proxy to the pool.
+     *
+     * The Proxy is reset in background, by creating a new HAR, and then made
+     * available again. If the reset fails, the Proxy is closed and replaced.
+     * Up to {@link BMPCProxyPoolConfig#getResetThreads()} Proxies are reset concurrently.
+     *
+     * @param proxy Proxy previously acquired from this pool
+     */
+    public void release(final BMPCProxy proxy) {
+        if (!leased.remove(proxy)) {
+            throw new IllegalArgumentException(String.format(
+                    "Proxy '%d' was not acquired from this pool", proxy.getProxyPort()));
+        }
+
+        try {
+            resetExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    reset(proxy);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool closed
+            discard(proxy);
+        }
+    }
+
+    /**
+     * Close all the idle Proxies and stop refilling the pool.
+     *
+     * Proxies currently acquired are closed once they are released.
+     */
+    public void close() {
+        closed = true;
+
+        executor.shutdown();
+        resetExecutor.shutdown();
+        try {
+            // Resets still pending see the pool closed, and discard their Proxy
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getAcquireTimeoutMillis());
+            executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            resetExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        IdleProxy idleProxy;
+        while (null != (idleProxy = idle.pollFirst())) {
+            discard(idleProxy.proxy);
+        }
+    }
+
+    /**
+     * Manager the pooled Proxies are created with.
+     *
+     * @return Manager the pooled Proxies are created with
+     */
+    public BMPCManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Configuration of the pool.
+     *
+     * @return Configuration of the pool
+     */
+    public BMPCProxyPoolConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Number of Proxies open by the pool (idle, acquired or being reset).
+     *
+     * @return Number of Proxies open by the pool
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Number of Proxies ready to be handed out.
+     *
+     * @return Number of idle Proxies
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Number of Proxies currently acquired.
+     *
+     * @return Number of acquired Proxies
+     */
+    public int getLeasedCount() {
+        return leased.size();
+    }
+
+    /**
+     * Number of acquisitions served by an idle Proxy.
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of acquisitions that found no idle Proxy, and had to create one or wait.
+     *
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Ratio of acquisitions served by an idle Proxy.
+     *
+     * @return Hit rate, between "0" and "1". "0" if nothing was acquired yet.
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Total time callers spent in {@link BMPCProxyPool#acquire(long)}.
+     *
+     * @return Total wait time
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    /**
+     * Average time callers spent in {@link BMPCProxyPool#acquire(long)}.
+     *
+     * @return Average wait time. "0" if nothing was acquired yet.
+     */
+    public double getAverageWaitMillis() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) waitNanos.get() / total / 1000000;
+    }
+
+    /**
+     * Longest time a caller spent in {@link BMPCProxyPool#acquire(long)}.
+     *
+     * @return Longest wait time
+     */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    private void reset(BMPCProxy proxy) {
+        if (closed) {
+            discard(proxy);
+            return;
+        }
+
+        try {
+            // Drop the HAR recorded by the previous user
+            proxy.newHar();
+        } catch (Exception e) {
+            discard(proxy);
+            scheduleRefill();
+            return;
+        }
+        idle.offerFirst(new IdleProxy(proxy));
+    }
+
+    private void scheduleRefill() {
+        if (closed || !refillScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refill();
+                    } finally {
+                        refillScheduled.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool closed
+            refillScheduled.set(false);
+        }
+    }
+
+    private void refill() {
+        while (!closed && idle.size() < config.getMinIdle() && reserve()) {
+            BMPCProxy proxy;
+            try {
+                proxy = open();
+            } catch (Exception e) {
+                // Try again at the next acquisition
+                return;
+            }
+            idle.offerLast(new IdleProxy(proxy));
+        }
+    }
+
+    private void evictIdle() {
+        long idleSinceDeadline = System.currentTimeMillis() - config.getIdleTimeoutMillis();
+
+        // Longest idle Proxies are at the tail
+        while (idle.size() > config.getMinIdle()) {
+            IdleProxy oldest = idle.peekLast();
+            if (null == oldest || oldest.idleSince > idleSinceDeadline) {
+                return;
+            }
+            if (idle.removeLastOccurrence(oldest)) {
+                discard(oldest.proxy);
+            }
+        }
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = size.get();
+            if (current >= config.getMaxSize()) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private BMPCProxy open() {
+        try {
+            return manager.createProxy(config.getUpstreamProxyHostAndPort());
+        } catch (RuntimeException e) {
+            size.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(BMPCProxy proxy) {
+        size.decrementAndGet();
+        try {
+            proxy.close();
+        } catch (Exception e) {
+            /* ignore */
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+
+        long max;
+        do {
+            max = maxWaitNanos.get();
+        } while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos));
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Proxy Pool is closed");
+        }
+    }
+
+    private static class IdleProxy {
+        private final BMPCProxy proxy;
+        private final long idleSince;
+
+        private IdleProxy(BMPCProxy proxy) {
+            this.proxy = proxy;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.manager;
+
+/**
+ * Configuration of a {@link BMPCProxyPool}.
+ * <p/>
+ *
+ * All the timeouts are expressed in milliseconds.
+ * Setters return the configuration itself, so calls can be chained.
+ */
+public class BMPCProxyPoolConfig {
+
+    public static final int DEFAULT_MIN_IDLE = 2;
+    public static final int DEFAULT_MAX_SIZE = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+    public static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 60000;
+    public static final int DEFAULT_RESET_THREADS = 4;
+
+    private int minIdle = DEFAULT_MIN_IDLE;
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+    private long acquireTimeoutMillis = DEFAULT_ACQUIRE_TIMEOUT_MILLIS;
+    private int resetThreads = DEFAULT_RESET_THREADS;
+    private String upstreamProxyHostAndPort = null;
+
+    /**
+     * Number of Proxies kept ready to be handed out.
+     * The pool refills itself in background to stay at this level.
+     *
+     * @param minIdle Minimum number of idle Proxies
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Maximum number of Proxies the pool can open, idle and in use.
+     *
+     * @param maxSize Maximum number of Proxies
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * How long a Proxy can stay idle in the pool before being closed.
+     * Proxies are never closed if that would bring the pool below
+     * the minimum number of idle Proxies.
+     *
+     * @param idleTimeoutMillis Idle timeout
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * How long to wait for a Proxy to be returned, when the pool is exhausted.
+     *
+     * @param acquireTimeoutMillis Acquire timeout
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        return this;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * Maximum number of released Proxies reset concurrently.
+     * Resets run on their own threads, so a slow one doesn't hold up refilling the pool.
+     *
+     * @param resetThreads Maximum number of concurrent resets
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setResetThreads(int resetThreads) {
+        this.resetThreads = resetThreads;
+        return this;
+    }
+
+    public int getResetThreads() {
+        return resetThreads;
+    }
+
+    /**
+     * Upstream Proxy all the pooled Proxies will pass through.
+     *
+     * @param upstreamProxyHostAndPort Upstream Proxy, in format "HOST:PORT".
+     *                                 "null" to connect directly.
+     * @return This configuration
+     */
+    public BMPCProxyPoolConfig setUpstreamProxyHostAndPort(String upstreamProxyHostAndPort) {
+        this.upstreamProxyHostAndPort = upstreamProxyHostAndPort;
+        return this;
+    }
+
+    public String getUpstreamProxyHostAndPort() {
+        return upstreamProxyHostAndPort;
+    }
+}
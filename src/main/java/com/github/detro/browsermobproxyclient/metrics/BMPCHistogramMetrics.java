@@ -0,0 +1,213 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory {@link BMPCMetrics}: for every {@link BMPCEndpoint}, latency, wire time, parse time and
+ * decompression time {@link BMPCHistogram}s, plus counters of requests, bytes received
+ * (on the wire and decompressed) and errors. Also, the startup time of Local BrowserMob Proxies.
+ * <p/>
+ *
+ * Usage:
+ * <pre>
+ *     BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+ *     BMPCMetricsRegistry.set(metrics);
+ *     ...
+ *     long p99 = metrics.getLatency(BMPCEndpoint.GET_HAR).getValueAtPercentile(99);
+ * </pre>
+ */
+public class BMPCHistogramMetrics implements BMPCMetrics {
+
+    private static class EndpointMetrics {
+        final BMPCHistogram latency = new BMPCHistogram();
+        final BMPCHistogram wireTime = new BMPCHistogram();
+        final BMPCHistogram parseTime = new BMPCHistogram();
+        final BMPCHistogram decodeTime = new BMPCHistogram();
+        final AtomicLong bytesReceived = new AtomicLong(0);
+        final AtomicLong decodedBytes = new AtomicLong(0);
+        final AtomicLong errors = new AtomicLong(0);
+    }
+
+    private final Map<BMPCEndpoint, EndpointMetrics> endpoints =
+            new EnumMap<BMPCEndpoint, EndpointMetrics>(BMPCEndpoint.class);
+    private final BMPCHistogram localStartupTime = new BMPCHistogram();
+
+    public BMPCHistogramMetrics() {
+        // Populated once: read-only from now on, hence safe to share between threads
+        for (BMPCEndpoint endpoint : BMPCEndpoint.values()) {
+            endpoints.put(endpoint, new EndpointMetrics());
+        }
+    }
+
+    @Override
+    public void requestCompleted(BMPCEndpoint endpoint, long latencyNanos, long bytesReceived, long wireNanos, long parseNanos) {
+        EndpointMetrics m = endpoints.get(endpoint);
+        m.latency.record(latencyNanos);
+        m.wireTime.record(wireNanos);
+        m.parseTime.record(parseNanos);
+        m.bytesReceived.addAndGet(bytesReceived);
+    }
+
+    @Override
+    public void responseDecoded(BMPCEndpoint endpoint, String contentEncoding, long wireBytes, long decodedBytes, long decodeNanos) {
+        EndpointMetrics m = endpoints.get(endpoint);
+        m.decodeTime.record(decodeNanos);
+        m.decodedBytes.addAndGet(decodedBytes);
+    }
+
+    @Override
+    public void requestFailed(BMPCEndpoint endpoint, long elapsedNanos, Throwable error) {
+        endpoints.get(endpoint).errors.incrementAndGet();
+    }
+
+    @Override
+    public void localStarted(int port, long startupNanos) {
+        localStartupTime.record(startupNanos);
+    }
+
+    /**
+     * Latency, in nanoseconds, of the successful requests to an endpoint.
+     *
+     * @param endpoint Endpoint
+     * @return Latency histogram
+     */
+    public BMPCHistogram getLatency(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).latency;
+    }
+
+    /**
+     * Time, in nanoseconds, spent reading the response bodies of an endpoint off the wire.
+     *
+     * @param endpoint Endpoint
+     * @return Wire time histogram
+     */
+    public BMPCHistogram getWireTime(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).wireTime;
+    }
+
+    /**
+     * Time, in nanoseconds, spent consuming the responses of an endpoint,
+     * excluding the time spent reading them off the wire.
+     *
+     * @param endpoint Endpoint
+     * @return Parse time histogram
+     */
+    public BMPCHistogram getParseTime(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).parseTime;
+    }
+
+    /**
+     * Time, in nanoseconds, spent decompressing the compressed responses of an endpoint.
+     *
+     * @param endpoint Endpoint
+     * @return Decompression time histogram
+     */
+    public BMPCHistogram getDecodeTime(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).decodeTime;
+    }
+
+    /**
+     * Time, in nanoseconds, it took Local BrowserMob Proxies to start accepting requests.
+     *
+     * @return Startup time histogram
+     */
+    public BMPCHistogram getLocalStartupTime() {
+        return localStartupTime;
+    }
+
+    /**
+     * @param endpoint Endpoint
+     * @return Number of successful requests to the endpoint
+     */
+    public long getRequestCount(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).latency.getCount();
+    }
+
+    /**
+     * @param endpoint Endpoint
+     * @return Bytes of response body received from the endpoint, on the wire
+     */
+    public long getBytesReceived(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).bytesReceived.get();
+    }
+
+    /**
+     * @param endpoint Endpoint
+     * @return Bytes produced decompressing the compressed responses of the endpoint
+     */
+    public long getDecodedBytes(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).decodedBytes.get();
+    }
+
+    /**
+     * @param endpoint Endpoint
+     * @return Number of failed requests to the endpoint
+     */
+    public long getErrorCount(BMPCEndpoint endpoint) {
+        return endpoints.get(endpoint).errors.get();
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (EndpointMetrics m : endpoints.values()) {
+            m.latency.reset();
+            m.wireTime.reset();
+            m.parseTime.reset();
+            m.decodeTime.reset();
+            m.bytesReceived.set(0);
+            m.decodedBytes.set(0);
+            m.errors.set(0);
+        }
+        localStartupTime.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (BMPCEndpoint endpoint : BMPCEndpoint.values()) {
+            EndpointMetrics m = endpoints.get(endpoint);
+            sb.append(endpoint)
+                    .append(": latency(ns)[").append(m.latency)
+                    .append("] wire(ns)[").append(m.wireTime)
+                    .append("] parse(ns)[").append(m.parseTime)
+                    .append("] decode(ns)[").append(m.decodeTime)
+                    .append("] bytes=").append(m.bytesReceived.get())
+                    .append(" decodedBytes=").append(m.decodedBytes.get())
+                    .append(" errors=").append(m.errors.get())
+                    .append('\n');
+        }
+        sb.append("LOCAL_STARTUP: startup(ns)[").append(localStartupTime).append("]\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.metrics;
+
+/**
+ * Receives a record of every request made to the BrowserMob Proxy REST API,
+ * and of every Local BrowserMob Proxy launched.
+ * <p/>
+ *
+ * This is the SPI to export client metrics: implementations are picked up via
+ * {@link java.util.ServiceLoader} (i.e. listed in
+ * <code>META-INF/services/com.github.detro.browsermobproxyclient.metrics.BMPCMetrics</code>)
+ * or set explicitly with {@link BMPCMetricsRegistry#set(BMPCMetrics)}.
+ * <p/>
+ *
+ * Methods are called on the thread that made the request, right after it completed:
+ * implementations must be thread-safe and should return quickly.
+ * All the durations are expressed in nanoseconds.
+ */
+public interface BMPCMetrics {
+
+    /**
+     * A request completed successfully.
+     *
+     * @param endpoint Endpoint the request was sent to
+     * @param latencyNanos Time from sending the request to receiving the response headers
+     * @param bytesReceived Bytes of response body read off the wire (i.e. still compressed, if it was)
+     * @param wireNanos Time spent reading the response body off the wire (i.e. waiting for BrowserMob Proxy)
+     * @param parseNanos Time spent consuming the response body, excluding <code>wireNanos</code>
+     *                   (i.e. decompressing and parsing it on the client)
+     */
+    void requestCompleted(BMPCEndpoint endpoint, long latencyNanos, long bytesReceived, long wireNanos, long parseNanos);
+
+    /**
+     * The compressed response of a request was decompressed.
+     * Called right before {@link BMPCMetrics#requestCompleted(BMPCEndpoint, long, long, long, long)}.
+     *
+     * @param endpoint Endpoint the request was sent to
+     * @param contentEncoding Compression of the response (ex. "gzip")
+     * @param wireBytes Bytes read off the wire
+     * @param decodedBytes Bytes produced by decompressing them
+     * @param decodeNanos Time spent decompressing (excluding the time waiting for the network)
+     */
+    void responseDecoded(BMPCEndpoint endpoint, String contentEncoding, long wireBytes, long decodedBytes, long decodeNanos);
+
+    /**
+     * A request failed.
+     *
+     * @param endpoint Endpoint the request was sent to
+     * @param elapsedNanos Time from sending the request to the failure
+     * @param error Cause of the failure
+     */
+    void requestFailed(BMPCEndpoint endpoint, long elapsedNanos, Throwable error);
+
+    /**
+     * A Local BrowserMob Proxy was launched and is accepting requests.
+     * Called on the thread that launched it.
+     *
+     * @param port Port of the REST API of the Local BrowserMob Proxy
+     * @param startupNanos Time from launching the process to it accepting requests
+     */
+    void localStarted(int port, long startupNanos);
+}
@@ -0,0 +1,82 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link BMPCMetrics} every client records to.
+ * <p/>
+ *
+ * The first time it's needed, the first implementation found via {@link ServiceLoader}
+ * is used, falling back to {@link BMPCNoOpMetrics}.
+ * It can be replaced at any time with {@link BMPCMetricsRegistry#set(BMPCMetrics)}.
+ */
+public final class BMPCMetricsRegistry {
+
+    private static volatile BMPCMetrics metrics = null;
+
+    private BMPCMetricsRegistry() {
+    }
+
+    /**
+     * Metrics currently in use.
+     *
+     * @return Metrics currently in use (never "null")
+     */
+    public static BMPCMetrics get() {
+        BMPCMetrics current = metrics;
+        return null != current ? current : discover();
+    }
+
+    /**
+     * Replace the metrics in use.
+     *
+     * @param newMetrics Metrics to use from now on. If "null", metrics are disabled.
+     */
+    public static void set(BMPCMetrics newMetrics) {
+        metrics = null != newMetrics ? newMetrics : BMPCNoOpMetrics.INSTANCE;
+    }
+
+    private static synchronized BMPCMetrics discover() {
+        if (null == metrics) {
+            BMPCMetrics discovered = BMPCNoOpMetrics.INSTANCE;
+            try {
+                Iterator<BMPCMetrics> providers = ServiceLoader.load(BMPCMetrics.class).iterator();
+                if (providers.hasNext()) {
+                    discovered = providers.next();
+                }
+            } catch (Throwable e) {
+                /* broken provider: metrics stay disabled */
+            }
+            metrics = discovered;
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.metrics;
+
+/**
+ * Metrics that record nothing. Default when no other {@link BMPCMetrics} is available.
+ */
+public final class BMPCNoOpMetrics implements BMPCMetrics {
+
+    public static final BMPCNoOpMetrics INSTANCE = new BMPCNoOpMetrics();
+
+    private BMPCNoOpMetrics() {
+    }
+
+    @Override
+    public void requestCompleted(BMPCEndpoint endpoint, long latencyNanos, long bytesReceived, long wireNanos, long parseNanos) {
+        /* nothing to do */
+    }
+
+    @Override
+    public void responseDecoded(BMPCEndpoint endpoint, String contentEncoding, long wireBytes, long decodedBytes, long decodeNanos) {
+        /* nothing to do */
+    }
+
+    @Override
+    public void requestFailed(BMPCEndpoint endpoint, long elapsedNanos, Throwable error) {
+        /* nothing to do */
+    }
+
+    @Override
+    public void localStarted(int port, long startupNanos) {
+        /* nothing to do */
+    }
+}
@@ -0,0 +1,218 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.metrics;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Times a single request to the BrowserMob Proxy REST API and reports it to
+ * the current {@link BMPCMetrics} (see {@link BMPCMetricsRegistry}).
+ * <p/>
+ *
+ * Usage:
+ * <pre>
+ *     BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+ *     try {
+ *         CloseableHttpResponse response = httpClient.execute(request);
+ *         timer.responseReceived(response);
+ *         ... consume the response ...
+ *     } catch (Exception e) {
+ *         timer.failed(e);
+ *         throw ...;
+ *     } finally {
+ *         timer.stop();
+ *     }
+ * </pre>
+ *
+ * Not thread-safe: meant to be used by the thread making the request.
+ */
+public final class BMPCRequestTimer {
+
+    private final BMPCMetrics metrics;
+    private final BMPCEndpoint endpoint;
+    private final long startNanos;
+    private long responseNanos = -1;
+    private long bytesReceived = 0;
+    private long wireNanos = 0;
+    private String contentEncoding = null;
+    private long wireNanosBeforeDecoding = 0;
+    private long decodedBytes = 0;
+    private long decodingNanos = 0;
+    private boolean reported = false;
+
+    private BMPCRequestTimer(BMPCMetrics metrics, BMPCEndpoint endpoint) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Start timing a request.
+     *
+     * @param endpoint Endpoint the request is about to be sent to
+     * @return Timer of the request
+     */
+    public static BMPCRequestTimer start(BMPCEndpoint endpoint) {
+        return new BMPCRequestTimer(BMPCMetricsRegistry.get(), endpoint);
+    }
+
+    /**
+     * Marks the end of the latency, and the beginning of the parse time.
+     *
+     * The response entity (if any) is wrapped, to count the bytes received while it's consumed
+     * and the time spent reading them off the wire (subtracted from the parse time).
+     *
+     * @param response Response just received
+     */
+    public void responseReceived(HttpResponse response) {
+        responseNanos = System.nanoTime();
+
+        HttpEntity entity = response.getEntity();
+        if (null != entity && !(metrics instanceof BMPCNoOpMetrics)) {
+            response.setEntity(new CountingEntity(entity));
+        }
+    }
+
+    /**
+     * Wraps the stream decompressing the response, to measure how much it produces and
+     * how long it takes (the time spent reading from the wire is subtracted).
+     *
+     * @param contentEncoding Compression of the response (ex. "gzip")
+     * @param decoded Stream decompressing the response
+     * @return Stream to read the decompressed response from
+     */
+    public InputStream decoding(String contentEncoding, InputStream decoded) {
+        if (metrics instanceof BMPCNoOpMetrics) {
+            return decoded;
+        }
+
+        this.contentEncoding = contentEncoding;
+        this.wireNanosBeforeDecoding = wireNanos;
+        return new FilterInputStream(decoded) {
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                int b = super.read();
+                decodingNanos += System.nanoTime() - start;
+                if (b != -1) {
+                    ++decodedBytes;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                int n = super.read(b, off, len);
+                decodingNanos += System.nanoTime() - start;
+                if (n > 0) {
+                    decodedBytes += n;
+                }
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Reports the request as failed. Has no effect if already reported.
+     *
+     * @param error Cause of the failure
+     */
+    public void failed(Throwable error) {
+        if (!reported) {
+            reported = true;
+            metrics.requestFailed(endpoint, System.nanoTime() - startNanos, error);
+        }
+    }
+
+    /**
+     * Reports the request as completed. Has no effect if already reported (ex. as failed).
+     */
+    public void stop() {
+        if (!reported) {
+            reported = true;
+            long now = System.nanoTime();
+            if (responseNanos < 0) {
+                responseNanos = now;
+            }
+            if (null != contentEncoding) {
+                long decodeNanos = decodingNanos - (wireNanos - wireNanosBeforeDecoding);
+                metrics.responseDecoded(endpoint, contentEncoding, bytesReceived, decodedBytes, Math.max(0, decodeNanos));
+            }
+            long parseNanos = now - responseNanos - wireNanos;
+            metrics.requestCompleted(endpoint, responseNanos - startNanos, bytesReceived, wireNanos, Math.max(0, parseNanos));
+        }
+    }
+
+    private class CountingEntity extends HttpEntityWrapper {
+
+        CountingEntity(HttpEntity wrappedEntity) {
+            super(wrappedEntity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    int b = super.read();
+                    wireNanos += System.nanoTime() - start;
+                    if (b != -1) {
+                        ++bytesReceived;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    long start = System.nanoTime();
+                    int n = super.read(b, off, len);
+                    wireNanos += System.nanoTime() - start;
+                    if (n > 0) {
+                        bytesReceived += n;
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    long skipped = super.skip(n);
+                    bytesReceived += skipped;
+                    return skipped;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test;
+
+import com.github.detro.browsermobproxyclient.BMPCAsyncProxy;
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.google.gson.JsonObject;
+import org.apache.http.concurrent.FutureCallback;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class BMPCHttpClientTest {
+
+    private BMPCStubServer stub;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer().start();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        stub.stop();
+    }
+
+    @Test
+    public void shouldNotCloseSharedClients() {
+        BMPCHttpClient shared = BMPCHttpClient.shared(stub.getAPIHost(), stub.getAPIPort());
+        BMPCDefaultManager manager = new BMPCDefaultManager(stub.getAPIHost(), stub.getAPIPort());
+        assertTrue(shared.isShared());
+        assertSame(manager.getHttpClient(), shared);
+
+        // Still usable by everyone else
+        shared.close();
+        assertSame(BMPCHttpClient.shared(stub.getAPIHost(), stub.getAPIPort()), shared);
+        manager.checkHealth();
+        manager.createProxy().close();
+    }
+
+    @Test
+    public void shouldShareConfiguredClients() {
+        // A BrowserMob Proxy nobody shared a client towards yet
+        BMPCStubServer other = new BMPCStubServer().start();
+        try {
+            BMPCHttpClientConfig config = new BMPCHttpClientConfig()
+                    .setMaxConnections(4)
+                    .setHarCompression(false);
+            BMPCHttpClient shared = BMPCHttpClient.shared(other.getAPIHost(), other.getAPIPort(), config);
+            assertSame(shared.getConfig(), config);
+
+            // Whoever asks just for host and port gets the configured client
+            BMPCDefaultManager manager = new BMPCDefaultManager(other.getAPIHost(), other.getAPIPort());
+            assertSame(manager.getHttpClient(), shared);
+            assertSame(new BMPCDefaultManager(other.getAPIHost(), other.getAPIPort(), new BMPCHttpClientConfig()
+                    .setMaxConnections(4)
+                    .setHarCompression(false)).getHttpClient(), shared);
+
+            try {
+                BMPCHttpClient.shared(other.getAPIHost(), other.getAPIPort(), new BMPCHttpClientConfig());
+                fail("Shared HTTP Client has a different configuration");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    public void shouldCloseDedicatedClients() {
+        BMPCHttpClient dedicated = new BMPCHttpClient(stub.getAPIHost(), stub.getAPIPort());
+        BMPCDefaultManager manager = new BMPCDefaultManager(dedicated);
+        assertFalse(dedicated.isShared());
+
+        dedicated.close();
+        try {
+            manager.checkHealth();
+            fail("HTTP Client is closed");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void shouldAllowToDisableIdleEviction() {
+        BMPCHttpClient client = new BMPCHttpClient(stub.getAPIHost(), stub.getAPIPort(),
+                new BMPCHttpClientConfig().setIdleEvictionIntervalMillis(0));
+        new BMPCDefaultManager(client).checkHealth();
+        client.close();
+    }
+
+    @Test
+    public void shouldNotHoldUpRequestsWhileACallbackRuns() throws Exception {
+        BMPCHttpClient client = new BMPCHttpClient(stub.getAPIHost(), stub.getAPIPort());
+        try {
+            BMPCAsyncProxy slowProxy = BMPCAsyncProxy.create(client).get(5, TimeUnit.SECONDS);
+            BMPCAsyncProxy fastProxy = BMPCAsyncProxy.create(client).get(5, TimeUnit.SECONDS);
+            slowProxy.newHar().get(5, TimeUnit.SECONDS);
+            fastProxy.newHar().get(5, TimeUnit.SECONDS);
+
+            final CountDownLatch slowCallbackRunning = new CountDownLatch(1);
+            final CountDownLatch releaseSlowCallback = new CountDownLatch(1);
+            Future<JsonObject> slowHar = slowProxy.har(new FutureCallback<JsonObject>() {
+                @Override
+                public void completed(JsonObject result) {
+                    slowCallbackRunning.countDown();
+                    try {
+                        releaseSlowCallback.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    slowCallbackRunning.countDown();
+                }
+
+                @Override
+                public void cancelled() {
+                    slowCallbackRunning.countDown();
+                }
+            });
+            assertTrue(slowCallbackRunning.await(5, TimeUnit.SECONDS));
+
+            // While the slow callback is still running, other requests complete
+            try {
+                assertNotNull(fastProxy.har().get(2, TimeUnit.SECONDS));
+            } finally {
+                releaseSlowCallback.countDown();
+            }
+            assertNotNull(slowHar.get(5, TimeUnit.SECONDS));
+
+            slowProxy.close().get(5, TimeUnit.SECONDS);
+            fastProxy.close().get(5, TimeUnit.SECONDS);
+        } finally {
+            client.close();
+        }
+    }
+}
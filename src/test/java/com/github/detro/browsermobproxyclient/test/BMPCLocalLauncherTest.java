@@ -29,12 +29,17 @@ package com.github.detro.browsermobproxyclient.test;
 
 import com.github.detro.browsermobproxyclient.BMPCLocalLauncher;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalStartStopException;
+import com.github.detro.browsermobproxyclient.manager.BMPCClusterManager;
 import com.github.detro.browsermobproxyclient.manager.BMPCLocalManager;
 import com.github.detro.browsermobproxyclient.manager.BMPCManager;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCLocalNotInstalledException;
 import org.openqa.selenium.net.PortProber;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
 import static org.testng.Assert.*;
 
 public class BMPCLocalLauncherTest {
@@ -80,6 +85,8 @@ public class BMPCLocalLauncherTest {
     @Test
     public void shouldCreateABMPCManager() {
         BMPCManager man = BMPCLocalLauncher.launchOnRandomPort();
+        assertTrue(((BMPCLocalManager) man).getStartupTimeMillis() > 0);
+        assertTrue(((BMPCLocalManager) man).getStartupTimeMillis() < BMPCLocalManager.STARTUP_TIMEOUT_MILLIS);
         int alreadyRunningProxies = man.getOpenProxies().size();
 
         // Create 5 proxies
@@ -99,4 +106,65 @@ public class BMPCLocalLauncherTest {
         // Uninstall
         BMPCLocalLauncher.uninstall();
     }
+
+    @Test
+    public void shouldLaunchAFleetOfBMPCManagers() {
+        BMPCClusterManager fleet = BMPCLocalLauncher.launchFleet(3);
+        assertEquals(fleet.getNodes().size(), 3);
+        assertEquals(fleet.getHealthyNodes().size(), 3);
+
+        // Create 6 proxies: they are spread across the fleet
+        for (int i = 0; i < 6; ++i) {
+            fleet.createProxy();
+        }
+        for (BMPCManager node : fleet.getNodes()) {
+            assertEquals(node.getOpenProxies().size(), 2);
+        }
+
+        // Stop all Local proxies
+        fleet.stop();
+        for (BMPCManager node : fleet.getNodes()) {
+            assertFalse(((BMPCLocalManager) node).isRunning());
+        }
+    }
+
+    @Test
+    public void shouldAttachToRunningLocalBMPAndStopItWithLastClient() throws InterruptedException {
+        BMPCLocalManager first = BMPCLocalLauncher.attachOrLaunch();
+        BMPCLocalManager second = BMPCLocalLauncher.attachOrLaunch();
+
+        assertFalse(first.isAttached());
+        assertTrue(second.isAttached());
+        assertEquals(second.getAPIPort(), first.getAPIPort());
+
+        // Proxies are visible to both clients
+        second.createProxy();
+        assertEquals(first.getOpenProxies().size(), second.getOpenProxies().size());
+        second.closeAll();
+
+        // Still in use by the second client
+        first.stop();
+        assertTrue(second.isRunning());
+
+        // Last client: BrowserMob Proxy is gone
+        int port = second.getAPIPort();
+        second.stop();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (isAcceptingConnections(port) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertFalse(isAcceptingConnections(port));
+    }
+
+    private static boolean isAcceptingConnections(int port) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(BMPCLocalManager.DEFAULT_HOST, port), 1000);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try { socket.close(); } catch (IOException ioe) { /* ignore */ }
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.metrics.BMPCEndpoint;
+import com.github.detro.browsermobproxyclient.metrics.BMPCHistogramMetrics;
+import com.github.detro.browsermobproxyclient.metrics.BMPCMetricsRegistry;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.testng.Assert.*;
+
+public class BMPCProxyCompressionTest {
+
+    private static final long HAR_SIZE = 256 * 1024;
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager compressingManager;
+    private BMPCDefaultManager plainManager;
+    private File dir;
+
+    @BeforeClass
+    public void startStub() throws IOException {
+        stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(HAR_SIZE)).start();
+        compressingManager = stub.createManager(new BMPCHttpClientConfig().setHarCompression(true));
+        plainManager = stub.createManager(new BMPCHttpClientConfig().setHarCompression(false));
+
+        dir = File.createTempFile("bmpc-compression-test", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        BMPCMetricsRegistry.set(null);
+        compressingManager.getHttpClient().close();
+        plainManager.getHttpClient().close();
+        stub.stop();
+
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void shouldDecompressHarWhileParsing() {
+        BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+        BMPCMetricsRegistry.set(metrics);
+
+        BMPCProxy compressed = compressingManager.createProxy();
+        compressed.newHar();
+        BMPCProxy plain = new BMPCProxy(plainManager.getHttpClient(), compressed.getProxyPort());
+
+        assertEquals(compressed.har(), plain.har());
+        assertEquals(compressed.typedHar().getLog().getEntries().size(),
+                plain.typedHar().getLog().getEntries().size());
+
+        // Two requests were compressed, two were not
+        assertEquals(metrics.getDecodeTime(BMPCEndpoint.GET_HAR).getCount(), 2);
+        long compressedBytes = metrics.getBytesReceived(BMPCEndpoint.GET_HAR) - 2 * HAR_SIZE;
+        assertTrue(compressedBytes < HAR_SIZE / 5, "compressed bytes: " + compressedBytes);
+        assertTrue(metrics.getDecodedBytes(BMPCEndpoint.GET_HAR) >= 2 * HAR_SIZE);
+
+        compressed.close();
+    }
+
+    @Test
+    public void shouldStoreCompressedHarUntouched() throws IOException {
+        BMPCProxy compressed = compressingManager.createProxy();
+        compressed.newHar();
+        BMPCProxy plain = new BMPCProxy(plainManager.getHttpClient(), compressed.getProxyPort());
+
+        plain.harToFile(dir.getPath(), "plain.har");
+        compressed.harToFile(dir.getPath(), "decompressed.har");
+        compressed.harToFile(dir.getPath(), "compressed.har.gz", true);
+
+        byte[] expected = readFully(new FileInputStream(new File(dir, "plain.har")));
+        assertTrue(expected.length >= HAR_SIZE);
+        assertEquals(readFully(new FileInputStream(new File(dir, "decompressed.har"))), expected);
+        assertEquals(readFully(new GZIPInputStream(new FileInputStream(new File(dir, "compressed.har.gz")))), expected);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        compressed.harToStream(streamed);
+        assertEquals(streamed.toByteArray(), expected);
+
+        compressed.close();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test;
+
+import com.github.detro.browsermobproxyclient.BMPCAsyncProxy;
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.BMPCProxyReaper;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class BMPCProxyReaperTest {
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer(new BMPCStubServerConfig()).start();
+        manager = stub.createManager();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        manager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Test
+    public void shouldNotTrackClosedProxies() {
+        BMPCProxy proxy = manager.createProxy();
+        int tracked = BMPCProxyReaper.getTrackedCount();
+        proxy.close();
+
+        // Other Proxies might be reaped meanwhile, but none is tracked
+        assertTrue(BMPCProxyReaper.getTrackedCount() <= tracked - 1);
+    }
+
+    @Test
+    public void shouldCloseLeakedProxies() throws InterruptedException {
+        long leaksBefore = BMPCProxyReaper.getLeakCount();
+        Set<Integer> leakedPorts = leakProxies(10);
+        assertTrue(stub.getOpenProxies().containsAll(leakedPorts));
+
+        // Wait for the leaked Proxies to be collected and closed
+        long deadline = System.currentTimeMillis() + 30000;
+        while (containsAny(stub.getOpenProxies(), leakedPorts) && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertFalse(containsAny(stub.getOpenProxies(), leakedPorts));
+        assertTrue(BMPCProxyReaper.getLeakCount() - leaksBefore >= leakedPorts.size());
+    }
+
+    @Test
+    public void shouldStopTrackingAllClientsOfAProxyClosedThroughAnyOfThem() {
+        BMPCProxy proxy = manager.createProxy();
+        BMPCProxy wrapper = new BMPCProxy(manager.getHttpClient(), proxy.getProxyPort());
+        int tracked = BMPCProxyReaper.getTrackedCount();
+
+        wrapper.close();
+        assertTrue(BMPCProxyReaper.getTrackedCount() <= tracked - 2);
+
+        proxy = manager.createProxy();
+        tracked = BMPCProxyReaper.getTrackedCount();
+        BMPCProxy.closeProxy(manager.getHttpClient(), proxy.getProxyPort());
+        assertTrue(BMPCProxyReaper.getTrackedCount() <= tracked - 1);
+    }
+
+    @Test
+    public void shouldNotCloseProxiesStillReferencedByAnotherClient() throws InterruptedException {
+        BMPCProxy proxy = manager.createProxy();
+
+        // Drop a second client of the same Proxy
+        new BMPCProxy(manager.getHttpClient(), proxy.getProxyPort()).asHostAndPort();
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        assertTrue(stub.getOpenProxies().contains(proxy.getProxyPort()));
+        proxy.close();
+    }
+
+    @Test
+    public void shouldNotTrackBlockingViewsOfAsyncProxies() throws Exception {
+        BMPCAsyncProxy asyncProxy = BMPCAsyncProxy.create(manager.getHttpClient()).get();
+        int tracked = BMPCProxyReaper.getTrackedCount();
+
+        // Drop the blocking view: the Proxy is still owned by the asynchronous client
+        asyncProxy.asBlocking().newHar();
+        assertTrue(BMPCProxyReaper.getTrackedCount() <= tracked);
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertTrue(stub.getOpenProxies().contains(asyncProxy.getProxyPort()));
+
+        asyncProxy.close().get();
+    }
+
+    private Set<Integer> leakProxies(int count) {
+        Set<Integer> ports = new HashSet<Integer>();
+        List<BMPCProxy> proxies = manager.createProxies(count, null);
+        for (BMPCProxy proxy : proxies) {
+            ports.add(proxy.getProxyPort());
+        }
+        return ports;
+    }
+
+    private static boolean containsAny(Set<Integer> set, Set<Integer> values) {
+        for (Integer value : values) {
+            if (set.contains(value)) return true;
+        }
+        return false;
+    }
+}
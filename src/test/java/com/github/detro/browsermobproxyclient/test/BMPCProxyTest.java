@@ -27,13 +27,18 @@ SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.github.detro.browsermobproxyclient.test;
 
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
 import com.github.detro.browsermobproxyclient.BMPCLocalLauncher;
 import com.github.detro.browsermobproxyclient.BMPCProxy;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToCloseProxyException;
 import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToConnectException;
+import com.github.detro.browsermobproxyclient.har.BMPCHar;
+import com.github.detro.browsermobproxyclient.har.BMPCHarEntryVisitor;
+import com.github.detro.browsermobproxyclient.har.BMPCHarProjection;
 import com.github.detro.browsermobproxyclient.manager.BMPCManager;
 import com.google.common.io.Files;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.openqa.selenium.Proxy;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.phantomjs.PhantomJSDriver;
@@ -44,10 +49,16 @@ import org.openqa.selenium.support.events.EventFiringWebDriver;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.zip.GZIPInputStream;
 
 import static org.testng.Assert.*;
 
@@ -80,6 +91,20 @@ public class BMPCProxyTest {
         proxy.close();
     }
 
+    @Test
+    public void shouldShareHttpClientAcrossProxies() {
+        BMPCProxy proxy1 = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
+        BMPCProxy proxy2 = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
+
+        assertSame(proxy1.getHttpClient(), proxy2.getHttpClient());
+        assertSame(proxy1.getHttpClient(), BMPCHttpClient.shared(BMOB_API_HOST, BMOB_API_PORT));
+
+        // Closing a Proxy doesn't close the shared HTTP Client
+        proxy1.close();
+        proxy2.newHar();
+        proxy2.close();
+    }
+
     @Test
     public void shouldBeginNewHar() {
         BMPCProxy proxy = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
@@ -161,6 +186,58 @@ public class BMPCProxyTest {
         proxy.close();
     }
 
+    @Test
+    public void shouldStreamHarPagesAndEntries() {
+        BMPCProxy proxy = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
+
+        String myPage1ref = "my page 1";
+        String myPage2ref = "my page 2";
+        proxy.newHar(myPage1ref);
+        proxy.newPage(myPage2ref);
+
+        final List<String> pageRefs = new ArrayList<String>();
+        proxy.streamHarEntries(new BMPCHarEntryVisitor() {
+            @Override
+            public void visitPage(JsonObject page) {
+                pageRefs.add(page.get("id").getAsString());
+            }
+
+            @Override
+            public void visitEntry(JsonObject entry) {
+                fail("No traffic was generated");
+            }
+        });
+        assertEquals(pageRefs.size(), 2);
+        assertEquals(pageRefs.get(0), myPage1ref);
+        assertEquals(pageRefs.get(1), myPage2ref);
+
+        proxy.close();
+    }
+
+    @Test
+    public void shouldQueryHar() {
+        BMPCProxy proxy = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
+
+        // No HAR yet
+        assertNull(proxy.harQuery("$.log.pages[*].id"));
+
+        String myPage1ref = "my page 1";
+        String myPage2ref = "my page 2";
+        proxy.newHar(myPage1ref);
+        proxy.newPage(myPage2ref);
+
+        List<Object> results = proxy.harQuery("$.log.pages[*].id", "$.log.pages[1].id");
+        assertEquals(results.size(), 2);
+        assertEquals(results.get(0), Arrays.asList(myPage1ref, myPage2ref));
+        assertEquals(results.get(1), myPage2ref);
+
+        JsonObject projectedHar = proxy.har(new BMPCHarProjection("$.log.pages[*].id"));
+        assertEquals(projectedHar.getAsJsonObject("log").entrySet().size(), 1);
+        assertEquals(projectedHar.getAsJsonObject("log").getAsJsonArray("pages").get(0).getAsJsonObject().entrySet().size(), 1);
+
+        proxy.close();
+    }
+
     @Test
     public void shouldReturnAsSeleniumProxy() {
         BMPCProxy proxy = new BMPCProxy(BMOB_API_HOST, BMOB_API_PORT);
@@ -218,6 +295,14 @@ public class BMPCProxyTest {
         assertEquals(har.getAsJsonObject("log").getAsJsonObject("creator").get("name").getAsString(), "BrowserMob Proxy");
         assertEquals(har.getAsJsonObject("log").getAsJsonObject("browser").get("name").getAsString(), "PhantomJS");
 
+        // Same checks on the typed HAR
+        BMPCHar typedHar = proxy.typedHar(false);
+        assertTrue(typedHar.getLog().getEntries().size() > 0);
+        assertEquals(typedHar.getLog().getPages().size(), 1);
+        assertEquals(typedHar.getLog().getCreator().getName(), "BrowserMob Proxy");
+        assertEquals(typedHar.getLog().getBrowser().getName(), "PhantomJS");
+        assertTrue(typedHar.getLog().getEntries().get(0).getResponse().getStatus() > 0);
+
         // Close proxy and driver
         driver.quit();
         proxy.close();
@@ -243,13 +328,27 @@ public class BMPCProxyTest {
         proxy.harToFile(tempDir.getAbsolutePath(), EXAMPLE_TARGET_HAR_FILE);
 
         // Check the HAR saved on file matches the one in memory
-        String harInMemory = proxy.har().toString();
+        JsonObject harInMemory = proxy.har();
         File harFile = new File(tempDir.getAbsolutePath() + File.separator + EXAMPLE_TARGET_HAR_FILE);
-        String harInFile = new Scanner(harFile).useDelimiter("\\A").next();
-        assertEquals(harInFile, harInMemory);
+        String harInFile = new Scanner(harFile, "UTF-8").useDelimiter("\\A").next();
+        assertEquals(new JsonParser().parse(harInFile), harInMemory);
         harFile.delete();
+
+        // Store HAR content to GZip compressed file
+        proxy.harToFile(tempDir.getAbsolutePath(), EXAMPLE_TARGET_HAR_FILE + ".gz", true);
+
+        // Check the compressed HAR saved on file matches the one in memory
+        File harGzipFile = new File(tempDir.getAbsolutePath() + File.separator + EXAMPLE_TARGET_HAR_FILE + ".gz");
+        String harInGzipFile = new Scanner(new GZIPInputStream(new FileInputStream(harGzipFile)), "UTF-8").useDelimiter("\\A").next();
+        assertEquals(new JsonParser().parse(harInGzipFile), harInMemory);
+        harGzipFile.delete();
         tempDir.delete();
 
+        // Stream HAR content and check it matches the one in memory
+        ByteArrayOutputStream harStream = new ByteArrayOutputStream();
+        proxy.harToStream(harStream);
+        assertEquals(new JsonParser().parse(harStream.toString("UTF-8")), harInMemory);
+
         // Close proxy
         proxy.close();
     }
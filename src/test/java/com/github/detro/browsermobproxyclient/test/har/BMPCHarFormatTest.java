@@ -0,0 +1,136 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.har;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.har.BMPCHarFormat;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubHar;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class BMPCHarFormatTest {
+
+    private static final String EDGE_CASES_JSON = "{\"log\":{\"ints\":[0,23,24,255,256,65535,65536,4294967296,-1,-24,-25,"
+            + "-9223372036854775808,9223372036854775807,18446744073709551615],"
+            + "\"decimals\":[0.5,-12.25,0.1,1.0E300,3.141592653589793],"
+            + "\"strings\":[\"\",\"caf\\u00e9 \\u2603 \\ud83d\\ude00\",\"<html>&amp;</html>\"],"
+            + "\"literals\":[true,false,null],\"nested\":[[],{},[{\"a\":[1]}]]}}";
+
+    private static String syntheticHar(long size) throws IOException {
+        ByteArrayOutputStream har = new ByteArrayOutputStream();
+        BMPCStubHar.write(har, size, Arrays.asList("Page 1", "Page 2"));
+        return har.toString("UTF-8");
+    }
+
+    @Test
+    public void shouldRoundTripEveryFormat() throws IOException {
+        for (String json : new String[]{ EDGE_CASES_JSON, syntheticHar(64 * 1024) }) {
+            JsonObject har = new JsonParser().parse(json).getAsJsonObject();
+
+            for (BMPCHarFormat format : BMPCHarFormat.values()) {
+                ByteArrayOutputStream written = new ByteArrayOutputStream();
+                format.write(har, written);
+                assertEquals(format.read(new ByteArrayInputStream(written.toByteArray())), har, format.name());
+
+                ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+                format.transcode(new StringReader(json), transcoded);
+                assertEquals(format.read(new ByteArrayInputStream(transcoded.toByteArray())), har, format.name());
+            }
+        }
+    }
+
+    @Test
+    public void shouldBeSmallerThanJson() throws IOException {
+        JsonObject har = new JsonParser().parse(syntheticHar(256 * 1024)).getAsJsonObject();
+
+        long[] sizes = new long[BMPCHarFormat.values().length];
+        for (BMPCHarFormat format : BMPCHarFormat.values()) {
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            format.write(har, written);
+            sizes[format.ordinal()] = written.size();
+        }
+
+        assertTrue(sizes[BMPCHarFormat.CBOR.ordinal()] < sizes[BMPCHarFormat.JSON.ordinal()]);
+        assertTrue(sizes[BMPCHarFormat.JSON_GZIP.ordinal()] < sizes[BMPCHarFormat.CBOR.ordinal()]);
+        assertTrue(sizes[BMPCHarFormat.CBOR_GZIP.ordinal()] < sizes[BMPCHarFormat.CBOR.ordinal()]);
+    }
+
+    @Test
+    public void shouldWorkoutFormatFromFileName() {
+        assertEquals(BMPCHarFormat.forFileName("a.har"), BMPCHarFormat.JSON);
+        assertEquals(BMPCHarFormat.forFileName("a.json"), BMPCHarFormat.JSON);
+        assertEquals(BMPCHarFormat.forFileName("a.har.gz"), BMPCHarFormat.JSON_GZIP);
+        assertEquals(BMPCHarFormat.forFileName("a.har.cbor"), BMPCHarFormat.CBOR);
+        assertEquals(BMPCHarFormat.forFileName("a" + BMPCHarFormat.CBOR_GZIP.getFileExtension()), BMPCHarFormat.CBOR_GZIP);
+    }
+
+    @Test
+    public void shouldStoreAndLoadHarInEveryFormat() throws IOException {
+        File dir = File.createTempFile("bmpc-har-format-test", "");
+        dir.delete();
+        dir.mkdirs();
+
+        BMPCStubServer stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(64 * 1024)).start();
+        BMPCDefaultManager manager = stub.createManager();
+        try {
+            BMPCProxy proxy = manager.createProxy();
+
+            // No HAR yet: empty files
+            proxy.harToFile(dir.getPath(), "empty" + BMPCHarFormat.CBOR.getFileExtension(), BMPCHarFormat.CBOR);
+            assertNull(BMPCProxy.harFromFile(dir.getPath(), "empty.har.cbor", BMPCHarFormat.CBOR));
+
+            proxy.newHar();
+            JsonObject har = proxy.har();
+            for (BMPCHarFormat format : BMPCHarFormat.values()) {
+                String streamed = "streamed" + format.getFileExtension();
+                proxy.harToFile(dir.getPath(), streamed, format);
+                assertEquals(BMPCProxy.harFromFile(dir.getPath(), streamed, BMPCHarFormat.forFileName(streamed)), har);
+
+                String written = "written" + format.getFileExtension();
+                BMPCProxy.harToFile(har, dir.getPath(), written, format);
+                assertEquals(BMPCProxy.harFromFile(dir.getPath(), written, format), har);
+            }
+        } finally {
+            manager.getHttpClient().close();
+            stub.stop();
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
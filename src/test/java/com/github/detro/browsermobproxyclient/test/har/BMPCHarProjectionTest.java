@@ -0,0 +1,126 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.har;
+
+import com.github.detro.browsermobproxyclient.har.BMPCHarProjection;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.jayway.jsonpath.JsonPath;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class BMPCHarProjectionTest {
+
+    private static JsonObject project(BMPCHarProjection projection) throws IOException {
+        return projection.read(new JsonReader(new StringReader(BMPCHarStreamReaderTest.EXAMPLE_HAR)));
+    }
+
+    @Test
+    public void shouldDecodeOnlyProjectedFields() throws IOException {
+        JsonObject har = project(new BMPCHarProjection(
+                "$.log.entries[*].request.url",
+                "log.entries[*].response.status"));
+
+        assertEquals(har.entrySet().size(), 1);
+        JsonObject log = har.getAsJsonObject("log");
+        assertEquals(log.entrySet().size(), 1);
+
+        JsonArray entries = log.getAsJsonArray("entries");
+        assertEquals(entries.size(), 2);
+        for (int i = 0; i < entries.size(); ++i) {
+            JsonObject entry = entries.get(i).getAsJsonObject();
+            assertEquals(entry.entrySet().size(), 2);
+            assertEquals(entry.getAsJsonObject("request").entrySet().size(), 1);
+            assertEquals(entry.getAsJsonObject("response").entrySet().size(), 1);
+        }
+        assertEquals(entries.get(0).getAsJsonObject().getAsJsonObject("request").get("url").getAsString(), "http://example.com/");
+        assertEquals(entries.get(1).getAsJsonObject().getAsJsonObject("response").get("status").getAsInt(), 404);
+    }
+
+    @Test
+    public void shouldMergeAllAndIndexedElementsSelectors() throws IOException {
+        JsonObject har = project(new BMPCHarProjection(
+                "$.log.entries[1].response.status",
+                "$.log.entries[*].request.url"));
+
+        JsonArray entries = har.getAsJsonObject("log").getAsJsonArray("entries");
+        assertEquals(entries.size(), 2);
+
+        // Element 1 matches both paths, element 0 only the "[*]" one
+        JsonObject first = entries.get(0).getAsJsonObject();
+        assertEquals(first.entrySet().size(), 1);
+        assertEquals(first.getAsJsonObject("request").get("url").getAsString(), "http://example.com/");
+
+        JsonObject second = entries.get(1).getAsJsonObject();
+        assertEquals(second.entrySet().size(), 2);
+        assertTrue(second.getAsJsonObject("request").has("url"));
+        assertEquals(second.getAsJsonObject("response").get("status").getAsInt(), 404);
+    }
+
+    @Test
+    public void shouldDecodeWholeSubtreeAtTheEndOfThePath() throws IOException {
+        JsonObject har = project(new BMPCHarProjection("$.log.entries[1].timings"));
+
+        JsonArray entries = har.getAsJsonObject("log").getAsJsonArray("entries");
+        assertEquals(entries.size(), 2);
+        assertTrue(entries.get(0).isJsonNull());
+        assertEquals(entries.get(1).getAsJsonObject().getAsJsonObject("timings").get("wait").getAsInt(), 25);
+        assertEquals(entries.get(1).getAsJsonObject().getAsJsonObject("timings").entrySet().size(), 8);
+    }
+
+    @Test
+    public void shouldProjectOntoWhatJsonPathExpressionsNeed() throws IOException {
+        String statusFilter = "$.log.entries[?(@.response.status == 404)].request.url";
+        JsonObject har = project(BMPCHarProjection.forJsonPaths(
+                "$.log.pages[0].id",
+                statusFilter));
+
+        // Pages are projected onto the ID of the first one only
+        assertEquals(har.getAsJsonObject("log").getAsJsonArray("pages").size(), 1);
+
+        // Entries are decoded entirely, as the filter needs them
+        assertTrue(har.getAsJsonObject("log").getAsJsonArray("entries").get(0).getAsJsonObject().has("timings"));
+
+        String pageId = JsonPath.read(har.toString(), "$.log.pages[0].id");
+        assertEquals(pageId, "Page 1");
+        List<String> notFoundUrls = JsonPath.read(har.toString(), statusFilter);
+        assertEquals(notFoundUrls.size(), 1);
+        assertEquals(notFoundUrls.get(0), "http://example.com/missing");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectUnsupportedPaths() {
+        new BMPCHarProjection("$..url");
+    }
+}
@@ -0,0 +1,183 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.har;
+
+import com.github.detro.browsermobproxyclient.har.BMPCHarCursor;
+import com.github.detro.browsermobproxyclient.har.BMPCHarEntryVisitor;
+import com.github.detro.browsermobproxyclient.har.BMPCHarIncrement;
+import com.github.detro.browsermobproxyclient.har.BMPCHarStreamReader;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubHar;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class BMPCHarStreamReaderTest {
+
+    public static final String EXAMPLE_HAR = "{\"log\":{" +
+            "\"version\":\"1.2\"," +
+            "\"creator\":{\"name\":\"BrowserMob Proxy\",\"version\":\"2.0\",\"comment\":\"\"}," +
+            "\"pages\":[" +
+                "{\"id\":\"Page 1\",\"startedDateTime\":\"2014-05-01T10:00:00.000+01:00\",\"title\":\"\",\"pageTimings\":{\"comment\":\"\"},\"comment\":\"\"}," +
+                "{\"id\":\"Page 2\",\"startedDateTime\":\"2014-05-01T10:00:01.000+01:00\",\"title\":\"\",\"pageTimings\":{\"comment\":\"\"},\"comment\":\"\"}" +
+            "]," +
+            "\"entries\":[" +
+                "{\"pageref\":\"Page 1\",\"startedDateTime\":\"2014-05-01T10:00:00.100+01:00\",\"time\":120," +
+                "\"request\":{\"method\":\"GET\",\"url\":\"http://example.com/\",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[{\"name\":\"Host\",\"value\":\"example.com\"}],\"queryString\":[],\"headersSize\":50,\"bodySize\":0,\"comment\":\"\"}," +
+                "\"response\":{\"status\":200,\"statusText\":\"OK\",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[{\"name\":\"Content-Type\",\"value\":\"text/html\"}],\"content\":{\"size\":13,\"mimeType\":\"text/html\",\"text\":\"<html></html>\",\"comment\":\"\"},\"redirectURL\":\"\",\"headersSize\":60,\"bodySize\":13,\"comment\":\"\"}," +
+                "\"cache\":{},\"timings\":{\"blocked\":0,\"dns\":10,\"connect\":20,\"send\":1,\"wait\":80,\"receive\":9,\"ssl\":-1,\"comment\":\"\"},\"serverIPAddress\":\"93.184.216.119\",\"comment\":\"\"}," +
+                "{\"pageref\":\"Page 2\",\"startedDateTime\":\"2014-05-01T10:00:01.100+01:00\",\"time\":30," +
+                "\"request\":{\"method\":\"GET\",\"url\":\"http://example.com/missing\",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[],\"queryString\":[],\"headersSize\":50,\"bodySize\":0,\"comment\":\"\"}," +
+                "\"response\":{\"status\":404,\"statusText\":\"Not Found\",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],\"headers\":[],\"content\":{\"size\":0,\"mimeType\":\"text/html\",\"comment\":\"\"},\"redirectURL\":\"\",\"headersSize\":60,\"bodySize\":0,\"comment\":\"\"}," +
+                "\"cache\":{},\"timings\":{\"blocked\":0,\"dns\":0,\"connect\":0,\"send\":1,\"wait\":25,\"receive\":4,\"ssl\":-1,\"comment\":\"\"},\"comment\":\"\"}" +
+            "]," +
+            "\"comment\":\"\"}}";
+
+    private static class CollectingVisitor implements BMPCHarEntryVisitor {
+        final List<JsonObject> pages = new ArrayList<JsonObject>();
+        final List<JsonObject> entries = new ArrayList<JsonObject>();
+
+        @Override
+        public void visitPage(JsonObject page) {
+            pages.add(page);
+        }
+
+        @Override
+        public void visitEntry(JsonObject entry) {
+            entries.add(entry);
+        }
+    }
+
+    @Test
+    public void shouldVisitAllPagesAndEntriesInOrder() throws IOException {
+        CollectingVisitor visitor = new CollectingVisitor();
+        new BMPCHarStreamReader().read(new JsonReader(new StringReader(EXAMPLE_HAR)), visitor);
+
+        assertEquals(visitor.pages.size(), 2);
+        assertEquals(visitor.pages.get(0).get("id").getAsString(), "Page 1");
+        assertEquals(visitor.pages.get(1).get("id").getAsString(), "Page 2");
+
+        assertEquals(visitor.entries.size(), 2);
+        assertEquals(visitor.entries.get(0).getAsJsonObject("request").get("url").getAsString(), "http://example.com/");
+        assertEquals(visitor.entries.get(0).getAsJsonObject("response").get("status").getAsInt(), 200);
+        assertEquals(visitor.entries.get(0).getAsJsonObject("response").getAsJsonObject("content").get("text").getAsString(), "<html></html>");
+        assertEquals(visitor.entries.get(1).getAsJsonObject("response").get("status").getAsInt(), 404);
+        assertEquals(visitor.entries.get(1).getAsJsonObject("timings").get("wait").getAsInt(), 25);
+    }
+
+    @Test
+    public void shouldSkipResponseContentIfNotRequired() throws IOException {
+        CollectingVisitor visitor = new CollectingVisitor();
+        new BMPCHarStreamReader(false).read(new JsonReader(new StringReader(EXAMPLE_HAR)), visitor);
+
+        assertEquals(visitor.entries.size(), 2);
+        JsonObject content = visitor.entries.get(0).getAsJsonObject("response").getAsJsonObject("content");
+        assertFalse(content.has("text"));
+        assertEquals(content.get("size").getAsInt(), 13);
+        assertEquals(content.get("mimeType").getAsString(), "text/html");
+        assertEquals(visitor.entries.get(0).getAsJsonObject("request").get("url").getAsString(), "http://example.com/");
+    }
+
+    @Test
+    public void shouldVisitNothingIfHarHasNoPagesNorEntries() throws IOException {
+        CollectingVisitor visitor = new CollectingVisitor();
+        new BMPCHarStreamReader().read(new JsonReader(new StringReader("{\"log\":{\"version\":\"1.2\"}}")), visitor);
+
+        assertTrue(visitor.pages.isEmpty());
+        assertTrue(visitor.entries.isEmpty());
+    }
+
+    @Test
+    public void shouldVisitOnlyWhatWasAddedSinceCursor() throws IOException {
+        BMPCHarStreamReader reader = new BMPCHarStreamReader();
+
+        BMPCHarIncrement first = new BMPCHarIncrement(BMPCHarCursor.START);
+        BMPCHarCursor cursor = reader.readSince(stubHarReader(8 * 1024, "Page 1"), BMPCHarCursor.START, first);
+        assertEquals(first.getPages().size(), 1);
+        assertEquals(cursor.getPageCount(), 1);
+        assertEquals(cursor.getEntryCount(), first.getEntries().size());
+        assertFalse(cursor.isReset());
+
+        // The HAR grew: only the new Pages and Entries are visited
+        BMPCHarIncrement second = new BMPCHarIncrement(cursor);
+        BMPCHarCursor next = reader.readSince(stubHarReader(32 * 1024, "Page 1", "Page 2"), cursor, second);
+        assertEquals(second.getPages().size(), 1);
+        assertEquals(second.getPages().get(0).get("id").getAsString(), "Page 2");
+        assertEquals(second.getEntries().size(), next.getEntryCount() - cursor.getEntryCount());
+        assertEquals(second.getEntries().get(0).getAsJsonObject("request").get("url").getAsString(),
+                "http://example.com/resource/" + cursor.getEntryCount());
+        assertFalse(next.isReset());
+
+        // Nothing new
+        BMPCHarIncrement third = new BMPCHarIncrement(next);
+        assertEquals(reader.readSince(stubHarReader(32 * 1024, "Page 1", "Page 2"), next, third), next);
+        assertTrue(third.getPages().isEmpty());
+        assertTrue(third.getEntries().isEmpty());
+    }
+
+    @Test
+    public void shouldVisitEverythingIfHarWasReset() throws IOException {
+        BMPCHarStreamReader reader = new BMPCHarStreamReader();
+        BMPCHarCursor cursor = reader.readSince(stubHarReader(16 * 1024, "Page 1", "Page 2"),
+                BMPCHarCursor.START, new BMPCHarIncrement(BMPCHarCursor.START));
+
+        // A different first Page means a different HAR
+        BMPCHarIncrement increment = new BMPCHarIncrement(cursor);
+        BMPCHarCursor next = reader.readSince(stubHarReader(16 * 1024, "New HAR"), cursor, increment);
+        assertTrue(next.isReset());
+        assertEquals(increment.getPages().size(), 1);
+        assertEquals(increment.getEntries().size(), next.getEntryCount());
+        assertEquals(increment.getEntries().get(0).getAsJsonObject("request").get("url").getAsString(),
+                "http://example.com/resource/0");
+    }
+
+    @Test
+    public void shouldCountEntriesUpToMax() throws IOException {
+        assertEquals(BMPCHarStreamReader.countEntries(new JsonReader(new StringReader(EXAMPLE_HAR)), Integer.MAX_VALUE), 2);
+        assertEquals(BMPCHarStreamReader.countEntries(new JsonReader(new StringReader(EXAMPLE_HAR)), 1), 1);
+        assertEquals(BMPCHarStreamReader.countEntries(new JsonReader(new StringReader("{\"log\":{\"version\":\"1.2\"}}")), 1), 0);
+
+        // Reading stops right after the counted Entries: the rest of the HAR may be missing
+        String truncated = EXAMPLE_HAR.substring(0, EXAMPLE_HAR.indexOf("{\"pageref\":\"Page 2\""));
+        assertEquals(BMPCHarStreamReader.countEntries(new JsonReader(new StringReader(truncated)), 1), 1);
+    }
+
+    private static JsonReader stubHarReader(long size, String... pageRefs) throws IOException {
+        ByteArrayOutputStream har = new ByteArrayOutputStream();
+        BMPCStubHar.write(har, size, Arrays.asList(pageRefs));
+        return new JsonReader(new StringReader(har.toString("UTF-8")));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.har;
+
+import com.github.detro.browsermobproxyclient.har.BMPCHar;
+import com.github.detro.browsermobproxyclient.har.BMPCHarEntry;
+import com.github.detro.browsermobproxyclient.har.BMPCHarTypeAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.testng.Assert.*;
+
+public class BMPCHarTypeAdapterTest {
+
+    @Test
+    public void shouldReadTypedHar() throws IOException {
+        BMPCHar har = new BMPCHarTypeAdapter().read(new JsonReader(new StringReader(BMPCHarStreamReaderTest.EXAMPLE_HAR)));
+
+        assertEquals(har.getLog().getVersion(), "1.2");
+        assertEquals(har.getLog().getCreator().getName(), "BrowserMob Proxy");
+        assertNull(har.getLog().getBrowser());
+        assertEquals(har.getLog().getPages().size(), 2);
+        assertEquals(har.getLog().getPages().get(1).getId(), "Page 2");
+        assertEquals(har.getLog().getEntries().size(), 2);
+
+        BMPCHarEntry entry = har.getLog().getEntries().get(0);
+        assertEquals(entry.getPageref(), "Page 1");
+        assertEquals(entry.getTime(), 120);
+        assertEquals(entry.getRequest().getMethod(), "GET");
+        assertEquals(entry.getRequest().getUrl(), "http://example.com/");
+        assertEquals(entry.getRequest().getHeaders().size(), 1);
+        assertEquals(entry.getRequest().getHeaders().get("host"), "example.com");
+        assertEquals(entry.getResponse().getStatus(), 200);
+        assertEquals(entry.getResponse().getHeaders().getName(0), "Content-Type");
+        assertEquals(entry.getResponse().getHeaders().getValue(0), "text/html");
+        assertEquals(entry.getResponse().getContentSize(), 13);
+        assertEquals(entry.getResponse().getContentText(), "<html></html>");
+        assertEquals(entry.getTimings().getDns(), 10);
+        assertEquals(entry.getTimings().getWait(), 80);
+        assertEquals(entry.getTimings().getSsl(), -1);
+        assertEquals(entry.getServerIPAddress(), "93.184.216.119");
+
+        entry = har.getLog().getEntries().get(1);
+        assertEquals(entry.getResponse().getStatus(), 404);
+        assertEquals(entry.getResponse().getHeaders().size(), 0);
+        assertNull(entry.getResponse().getContentText());
+    }
+
+    @Test
+    public void shouldSkipResponseContentIfNotRequired() throws IOException {
+        BMPCHar har = new BMPCHarTypeAdapter(false).read(new JsonReader(new StringReader(BMPCHarStreamReaderTest.EXAMPLE_HAR)));
+
+        assertNull(har.getLog().getEntries().get(0).getResponse().getContentText());
+        assertEquals(har.getLog().getEntries().get(0).getResponse().getContentSize(), 13);
+    }
+
+    @Test
+    public void shouldWriteBackWhatItReads() throws IOException {
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(BMPCHar.class, new BMPCHarTypeAdapter())
+                .create();
+
+        BMPCHar har = gson.fromJson(BMPCHarStreamReaderTest.EXAMPLE_HAR, BMPCHar.class);
+        BMPCHar reReadHar = gson.fromJson(gson.toJson(har), BMPCHar.class);
+
+        assertEquals(reReadHar.getLog().getEntries().size(), 2);
+        assertEquals(reReadHar.getLog().getEntries().get(0).getRequest().getUrl(), "http://example.com/");
+        assertEquals(reReadHar.getLog().getEntries().get(0).getTimings().getReceive(), 9);
+        assertEquals(reReadHar.getLog().getPages().get(0).getId(), "Page 1");
+
+        JsonObject harJson = new JsonParser().parse(gson.toJson(har)).getAsJsonObject();
+        assertEquals(harJson.getAsJsonObject("log").getAsJsonArray("entries").get(1)
+                .getAsJsonObject().getAsJsonObject("response").get("status").getAsInt(), 404);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCAsyncProxy;
+import com.github.detro.browsermobproxyclient.BMPCLocalLauncher;
+import com.github.detro.browsermobproxyclient.manager.BMPCAsyncManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCManager;
+import com.google.gson.JsonObject;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+public class BMPCAsyncManagerTest {
+
+    public static String BMOB_API_HOST;
+    public static int BMOB_API_PORT;
+
+    @BeforeClass
+    public void startLocalBMP() {
+        BMPCLocalLauncher.install();
+        BMPCManager manager = BMPCLocalLauncher.launchOnRandomPort();
+        BMOB_API_HOST = manager.getAPIHost();
+        BMOB_API_PORT = manager.getAPIPort();
+    }
+
+    @Test
+    public void shouldCreateProxyWithoutBlocking() throws Exception {
+        BMPCAsyncManager manager = new BMPCAsyncManager(BMOB_API_HOST, BMOB_API_PORT);
+
+        BMPCAsyncProxy proxy = manager.createProxy().get();
+
+        assertNotNull(proxy);
+        assertTrue(proxy.getProxyPort() > 9090);
+        assertNull(proxy.har().get());
+
+        proxy.newHar("firstPage").get();
+        proxy.newPage().get();
+        JsonObject har = proxy.har().get();
+        assertNotNull(har);
+        assertEquals(har.getAsJsonObject("log").getAsJsonArray("pages").size(), 2);
+
+        proxy.close().get();
+    }
+
+    @Test
+    public void shouldCreateAndCloseManyProxiesConcurrently() throws Exception {
+        BMPCAsyncManager manager = new BMPCAsyncManager(BMOB_API_HOST, BMOB_API_PORT);
+
+        int initialProxiesCount = manager.getOpenProxies().get().size();
+
+        List<Future<BMPCAsyncProxy>> futures = new ArrayList<Future<BMPCAsyncProxy>>();
+        for (int i = 0; i < 5; ++i) {
+            futures.add(manager.createProxy());
+        }
+        for (Future<BMPCAsyncProxy> future : futures) {
+            assertNotNull(future.get());
+        }
+
+        assertEquals(manager.getOpenProxies().get().size(), initialProxiesCount + 5);
+
+        manager.closeAll().get();
+        assertEquals(manager.getOpenProxies().get().size(), 0);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToConnectException;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnexpectedStatusCodeException;
+import com.github.detro.browsermobproxyclient.manager.BMPCClusterManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCLeasingManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import org.testng.annotations.Test;
+
+import java.net.ConnectException;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class BMPCClusterManagerTest {
+
+    /**
+     * Fake node: keeps track of its Proxies without talking to any BrowserMob Proxy.
+     */
+    public static class FakeManager implements BMPCManager {
+        public static final String INVALID_UPSTREAM = "invalid:0";
+
+        private final int apiPort;
+        private final Set<Integer> openProxies = new HashSet<Integer>();
+        private int nextPort = 9091;
+        public volatile boolean down = false;
+        public volatile boolean stopped = false;
+
+        public FakeManager(int apiPort) {
+            this.apiPort = apiPort;
+        }
+
+        @Override
+        public synchronized BMPCProxy createProxy() {
+            return createProxy(null);
+        }
+
+        @Override
+        public synchronized BMPCProxy createProxy(String upstreamProxyHostAndPort) {
+            checkUp();
+            if (INVALID_UPSTREAM.equals(upstreamProxyHostAndPort)) {
+                throw new BMPCUnableToConnectException("Proxy not created",
+                        new BMPCUnexpectedStatusCodeException("Invalid upstream", 400));
+            }
+            openProxies.add(nextPort);
+            return new BMPCProxy(BMPCHttpClient.shared(getAPIHost(), apiPort), nextPort++);
+        }
+
+        @Override
+        public synchronized List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort) {
+            List<BMPCProxy> proxies = new ArrayList<BMPCProxy>();
+            for (int i = 0; i < count; ++i) {
+                proxies.add(createProxy(upstreamProxyHostAndPort));
+            }
+            return proxies;
+        }
+
+        @Override
+        public synchronized Set<Integer> getOpenProxies() {
+            checkUp();
+            return new HashSet<Integer>(openProxies);
+        }
+
+        @Override
+        public synchronized void closeAll() {
+            checkUp();
+            openProxies.clear();
+        }
+
+        @Override
+        public String getAPIHost() {
+            return "localhost";
+        }
+
+        @Override
+        public int getAPIPort() {
+            return apiPort;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        private void checkUp() {
+            if (down) {
+                throw new BMPCUnableToConnectException("Node down: " + apiPort,
+                        new ConnectException("Connection refused"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldPlaceProxiesOnLeastLoadedNode() {
+        FakeManager node1 = new FakeManager(8081);
+        FakeManager node2 = new FakeManager(8082);
+        FakeManager node3 = new FakeManager(8083);
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(node1, node2, node3));
+
+        for (int i = 0; i < 9; ++i) {
+            cluster.createProxy();
+        }
+
+        assertEquals(node1.getOpenProxies().size(), 3);
+        assertEquals(node2.getOpenProxies().size(), 3);
+        assertEquals(node3.getOpenProxies().size(), 3);
+        assertEquals(cluster.getOpenProxiesByNode().size(), 3);
+        assertEquals(cluster.getOpenProxies(), new HashSet<Integer>(Arrays.asList(9091, 9092, 9093))); // Same ports on each node
+        assertEquals(cluster.getOpenProxyCount(), 9);
+
+        cluster.closeAll();
+        assertEquals(node1.getOpenProxies().size() + node2.getOpenProxies().size() + node3.getOpenProxies().size(), 0);
+
+        cluster.stop();
+        assertTrue(node1.stopped && node2.stopped && node3.stopped);
+    }
+
+    @Test
+    public void shouldSpreadBatchOfProxiesAcrossNodes() {
+        FakeManager node1 = new FakeManager(8081);
+        FakeManager node2 = new FakeManager(8082);
+        node1.createProxies(2, null);
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(node1, node2));
+
+        assertEquals(cluster.createProxies(6, null).size(), 6);
+
+        // Placed as if one by one: node2 catches up first
+        assertEquals(node1.getOpenProxies().size(), 4);
+        assertEquals(node2.getOpenProxies().size(), 4);
+
+        cluster.stop();
+    }
+
+    @Test
+    public void shouldPlaceSameKeyOnSameNode() {
+        FakeManager node1 = new FakeManager(8081);
+        FakeManager node2 = new FakeManager(8082);
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(node1, node2),
+                BMPCClusterManager.Placement.CONSISTENT_HASH);
+
+        int port = cluster.createProxy(null, "test-key").getAPIPort();
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(cluster.createProxy(null, "test-key").getAPIPort(), port);
+        }
+
+        // Different keys are spread across nodes
+        Set<Integer> usedNodes = new HashSet<Integer>();
+        for (int i = 0; i < 50; ++i) {
+            usedNodes.add(cluster.createProxy(null, "key-" + i).getAPIPort());
+        }
+        assertEquals(usedNodes.size(), 2);
+
+        cluster.stop();
+    }
+
+    @Test
+    public void shouldTakeUnhealthyNodesOutOfRotation() {
+        FakeManager node1 = new FakeManager(8081);
+        FakeManager node2 = new FakeManager(8082);
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(node1, node2),
+                BMPCClusterManager.Placement.CONSISTENT_HASH);
+
+        int port = cluster.createProxy(null, "test-key").getAPIPort();
+        FakeManager chosen = port == node1.getAPIPort() ? node1 : node2;
+        FakeManager other = chosen == node1 ? node2 : node1;
+
+        chosen.down = true;
+        assertEquals(cluster.createProxy(null, "test-key").getAPIPort(), other.getAPIPort());
+        assertEquals(cluster.getHealthyNodes(), Collections.<BMPCManager>singletonList(other));
+
+        other.down = true;
+        try {
+            cluster.createProxy();
+            fail("All nodes are down");
+        } catch (BMPCUnableToConnectException e) {
+            // Expected
+        }
+
+        cluster.stop();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldNotBeLeased() {
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(new FakeManager(8081), new FakeManager(8082)));
+        try {
+            new BMPCLeasingManager(cluster);
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    @Test
+    public void shouldKeepNodesInRotationOnCallerErrors() {
+        FakeManager node1 = new FakeManager(8081);
+        FakeManager node2 = new FakeManager(8082);
+        BMPCClusterManager cluster = new BMPCClusterManager(Arrays.asList(node1, node2));
+
+        try {
+            cluster.createProxy(FakeManager.INVALID_UPSTREAM);
+            fail("Upstream Proxy is invalid");
+        } catch (BMPCUnableToConnectException e) {
+            assertTrue(e.getCause() instanceof BMPCUnexpectedStatusCodeException);
+        }
+        try {
+            cluster.createProxies(2, FakeManager.INVALID_UPSTREAM);
+            fail("Upstream Proxy is invalid");
+        } catch (BMPCUnableToConnectException e) {
+            // Expected
+        }
+        assertEquals(cluster.getHealthyNodes().size(), 2);
+
+        cluster.stop();
+    }
+
+    @Test
+    public void shouldUnloadNodesWhenTheirProxiesAreClosed() {
+        BMPCStubServer stub1 = new BMPCStubServer().start();
+        BMPCStubServer stub2 = new BMPCStubServer().start();
+        BMPCClusterManager cluster = new BMPCClusterManager(
+                Arrays.asList(stub1.createManager(), stub2.createManager()),
+                BMPCClusterManager.Placement.LEAST_LOADED,
+                60000);
+        try {
+            BMPCProxy first = cluster.createProxy();
+            BMPCProxy second = cluster.createProxy();
+            assertNotEquals(first.getAPIPort(), second.getAPIPort());
+
+            // The node of the closed Proxy is now the least loaded
+            second.close();
+            assertEquals(cluster.createProxy().getAPIPort(), second.getAPIPort());
+        } finally {
+            cluster.closeAll();
+            cluster.stop();
+            stub1.stop();
+            stub2.stop();
+        }
+    }
+}
@@ -34,6 +34,8 @@ import com.github.detro.browsermobproxyclient.BMPCProxy;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
 import static org.testng.Assert.*;
 
 public class BMPCDefaultManagerTest {
@@ -86,6 +88,33 @@ public class BMPCDefaultManagerTest {
         assertEquals(manager.getOpenProxies().size(), 0);
     }
 
+    @Test
+    public void shouldCreateManyProxiesAtOnce() {
+        BMPCManager manager = new BMPCDefaultManager(BMOB_API_HOST, BMOB_API_PORT);
+
+        int initialProxiesCount = manager.getOpenProxies().size();
+        List<BMPCProxy> proxies = manager.createProxies(10, null);
+
+        assertEquals(proxies.size(), 10);
+        assertEquals(manager.getOpenProxies().size(), initialProxiesCount + 10);
+        for (BMPCProxy proxy : proxies) {
+            proxy.close();
+        }
+    }
+
+    @Test
+    public void shouldCloseAllConcurrently() {
+        BMPCDefaultManager manager = new BMPCDefaultManager(BMOB_API_HOST, BMOB_API_PORT);
+
+        for (int i = 0; i < 20; ++i) {
+            manager.createProxy();
+        }
+        assertTrue(manager.getOpenProxies().size() >= 20);
+
+        manager.closeAll(4);
+        assertEquals(manager.getOpenProxies().size(), 0);
+    }
+
     @Test
     public void shouldCreateProxyThatGoesThroughUpstreamProxy() {
         BMPCManager manager = new BMPCDefaultManager(BMOB_API_HOST, BMOB_API_PORT);
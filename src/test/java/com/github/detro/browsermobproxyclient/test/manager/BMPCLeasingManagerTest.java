@@ -0,0 +1,313 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCLeasingManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCLeasingManagerConfig;
+import com.github.detro.browsermobproxyclient.manager.BMPCManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+public class BMPCLeasingManagerTest {
+
+    private static final long TTL_MILLIS = 300;
+    // Reaping is triggered by the tests
+    private static final long REAP_INTERVAL_MILLIS = 3600000;
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer(new BMPCStubServerConfig()).start();
+        manager = stub.createManager();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        // Leave no tracked Proxy behind, for the reaper to close on another stub bound to the same port
+        manager.closeAll();
+        manager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Test
+    public void shouldCloseProxiesOnceTheirLeaseExpires() throws InterruptedException {
+        BMPCLeasingManager leasing = new BMPCLeasingManager(manager, new BMPCLeasingManagerConfig()
+                .setLeaseTtlMillis(TTL_MILLIS)
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS));
+
+        BMPCProxy unused = leasing.createProxy();
+        BMPCProxy used = leasing.createProxy();
+        assertEquals(leasing.getLeaseCount(), 2);
+        assertEquals(leasing.reap(), 0);
+
+        // Using a Proxy renews its lease
+        Thread.sleep(TTL_MILLIS * 2);
+        used.newHar();
+        assertEquals(leasing.reap(), 1);
+        assertEquals(leasing.getExpiredCount(), 1);
+        assertFalse(stub.getOpenProxies().contains(unused.getProxyPort()));
+        assertTrue(stub.getOpenProxies().contains(used.getProxyPort()));
+
+        // Closing a Proxy drops its lease
+        used.close();
+        assertEquals(leasing.getLeaseCount(), 0);
+
+        leasing.stop();
+    }
+
+    @Test
+    public void shouldRenewProxiesOnRequest() throws InterruptedException {
+        BMPCLeasingManager leasing = new BMPCLeasingManager(manager, new BMPCLeasingManagerConfig()
+                .setLeaseTtlMillis(TTL_MILLIS)
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS));
+
+        // Proxies only carrying browser traffic
+        BMPCProxy renewed = leasing.createProxy();
+        BMPCProxy forgotten = leasing.createProxy();
+        assertFalse(leasing.renew(manager.createProxy()));
+
+        Thread.sleep(TTL_MILLIS * 2);
+        assertTrue(leasing.renew(renewed));
+        assertEquals(leasing.reap(), 1);
+        assertTrue(stub.getOpenProxies().contains(renewed.getProxyPort()));
+        assertFalse(stub.getOpenProxies().contains(forgotten.getProxyPort()));
+
+        BMPCProxy another = leasing.createProxy();
+        Thread.sleep(TTL_MILLIS * 2);
+        leasing.renewAll();
+        assertEquals(leasing.reap(), 0);
+        assertEquals(leasing.getLeaseCount(), 2);
+        assertTrue(stub.getOpenProxies().contains(another.getProxyPort()));
+
+        leasing.closeAll();
+        leasing.stop();
+    }
+
+    @Test
+    public void shouldDropLeasesOfProxiesClosedElsewhere() {
+        BMPCLeasingManager leasing = new BMPCLeasingManager(manager, new BMPCLeasingManagerConfig()
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS));
+
+        BMPCProxy proxy = leasing.createProxies(3, null).get(0);
+        new BMPCProxy(manager.getHttpClient(), proxy.getProxyPort()).close();
+
+        assertEquals(leasing.reap(), 0);
+        assertEquals(leasing.getLeaseCount(), 2);
+
+        leasing.closeAll();
+        assertEquals(leasing.getLeaseCount(), 0);
+        leasing.stop();
+    }
+
+    /**
+     * Runs a hook right after listing the open Proxies, as if it happened concurrently.
+     */
+    private class ListingHookManager implements BMPCManager {
+        volatile Runnable afterListing = null;
+
+        @Override
+        public BMPCProxy createProxy() {
+            return manager.createProxy();
+        }
+
+        @Override
+        public BMPCProxy createProxy(String upstreamProxyHostAndPort) {
+            return manager.createProxy(upstreamProxyHostAndPort);
+        }
+
+        @Override
+        public List<BMPCProxy> createProxies(int count, String upstreamProxyHostAndPort) {
+            return manager.createProxies(count, upstreamProxyHostAndPort);
+        }
+
+        @Override
+        public Set<Integer> getOpenProxies() {
+            Set<Integer> openProxies = manager.getOpenProxies();
+            Runnable hook = afterListing;
+            if (null != hook) {
+                hook.run();
+            }
+            return openProxies;
+        }
+
+        @Override
+        public void closeAll() {
+            manager.closeAll();
+        }
+
+        @Override
+        public String getAPIHost() {
+            return manager.getAPIHost();
+        }
+
+        @Override
+        public int getAPIPort() {
+            return manager.getAPIPort();
+        }
+
+        @Override
+        public void stop() {
+            manager.stop();
+        }
+    }
+
+    @Test
+    public void shouldKeepLeasesTakenWhileReaping() {
+        ListingHookManager hookManager = new ListingHookManager();
+        final BMPCLeasingManager leasing = new BMPCLeasingManager(hookManager, new BMPCLeasingManagerConfig()
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS));
+
+        // Created after the open Proxies were listed
+        final List<BMPCProxy> created = new ArrayList<BMPCProxy>();
+        hookManager.afterListing = new Runnable() {
+            @Override
+            public void run() {
+                created.add(leasing.createProxy());
+            }
+        };
+        assertEquals(leasing.reap(), 0);
+        hookManager.afterListing = null;
+
+        assertEquals(leasing.getLeaseCount(), 1);
+        assertEquals(leasing.reap(), 0);
+        assertEquals(leasing.getLeaseCount(), 1);
+
+        leasing.closeAll();
+        leasing.stop();
+    }
+
+    @Test
+    public void shouldNotWaitForTheReaperToLease() throws Exception {
+        File leaseFile = File.createTempFile("bmpc-leases", ".txt");
+        leaseFile.deleteOnExit();
+
+        ListingHookManager hookManager = new ListingHookManager();
+        final BMPCLeasingManager leasing = new BMPCLeasingManager(hookManager, new BMPCLeasingManagerConfig()
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS)
+                .setLeaseFile(leaseFile));
+
+        // The reaper is stuck talking to BrowserMob Proxy
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        hookManager.afterListing = new Runnable() {
+            @Override
+            public void run() {
+                listing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> reaping = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return leasing.reap();
+            }
+        });
+        assertTrue(listing.await(10, TimeUnit.SECONDS));
+
+        // Leasing and closing go on meanwhile
+        Future<?> leasingAndClosing = Executors.newSingleThreadExecutor().submit(new Runnable() {
+            @Override
+            public void run() {
+                leasing.createProxy().close();
+            }
+        });
+        try {
+            leasingAndClosing.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+        assertEquals((int) reaping.get(10, TimeUnit.SECONDS), 0);
+        executor.shutdown();
+
+        hookManager.afterListing = null;
+        leasing.stop();
+    }
+
+    @Test
+    public void shouldTakeOverLeasesFromLeaseFile() throws IOException, InterruptedException {
+        File leaseFile = File.createTempFile("bmpc-leases", ".txt");
+        leaseFile.delete();
+        leaseFile.deleteOnExit();
+
+        BMPCLeasingManagerConfig config = new BMPCLeasingManagerConfig()
+                .setLeaseTtlMillis(TTL_MILLIS)
+                .setReapIntervalMillis(REAP_INTERVAL_MILLIS)
+                .setLeaseFile(leaseFile);
+
+        // A Manager leaks a Proxy and goes away
+        BMPCLeasingManager crashed = new BMPCLeasingManager(manager, config);
+        int leakedPort = crashed.createProxy().getProxyPort();
+        crashed.stop();
+        assertTrue(leaseFile.exists());
+        Scanner leases = new Scanner(leaseFile, "UTF-8");
+        try {
+            // Leases are keyed by REST API and Proxy Port
+            assertNotNull(leases.findWithinHorizon(Pattern.quote(
+                    manager.getAPIHost() + ":" + manager.getAPIPort() + "/" + leakedPort + " "), 0));
+        } finally {
+            leases.close();
+        }
+
+        // The next one takes over its lease
+        BMPCLeasingManager restarted = new BMPCLeasingManager(manager, config);
+        assertEquals(restarted.getLeaseCount(), 1);
+        assertTrue(stub.getOpenProxies().contains(leakedPort));
+
+        Thread.sleep(TTL_MILLIS * 2);
+        assertEquals(restarted.reap(), 1);
+        assertFalse(stub.getOpenProxies().contains(leakedPort));
+        restarted.stop();
+
+        BMPCLeasingManager next = new BMPCLeasingManager(manager, config);
+        assertEquals(next.getLeaseCount(), 0);
+        next.stop();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.manager.BMPCLocalLogPump;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class BMPCLocalLogPumpTest {
+
+    @Test
+    public void shouldKeepRecentLinesAndSignalWatchedLine() throws Exception {
+        File log = File.createTempFile("bmpc-log-pump", ".log");
+        log.deleteOnExit();
+
+        PipedOutputStream processOutput = new PipedOutputStream();
+        BMPCLocalLogPump pump = new BMPCLocalLogPump(new PipedInputStream(processOutput), log.getPath(),
+                3, BMPCLocalLogPump.DEFAULT_MAX_FILE_SIZE, 0);
+        CountDownLatch started = pump.watchFor("Started", ":8080");
+        pump.start("HEADER");
+
+        Writer writer = new OutputStreamWriter(processOutput);
+        writer.write("line 1\nline 2\nStarted Connector@0.0.0.0:8080\nline 4\n");
+        writer.flush();
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        writer.close();
+
+        // Wait for the pump to reach the end of the output
+        while (pump.getRecentLines().size() < 3 || !pump.getRecentLines().get(2).equals("line 4")) {
+            Thread.sleep(10);
+        }
+        List<String> recentLines = pump.getRecentLines();
+        assertEquals(recentLines.get(0), "line 2");
+        assertEquals(recentLines.get(1), "Started Connector@0.0.0.0:8080");
+        assertEquals(recentLines.get(2), "line 4");
+    }
+
+    @Test
+    public void shouldRotateLogFile() throws Exception {
+        File log = File.createTempFile("bmpc-log-pump", ".log");
+        File rotated = new File(log.getPath() + ".1");
+        log.deleteOnExit();
+        rotated.deleteOnExit();
+
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            output.append("0123456789\n");
+        }
+        BMPCLocalLogPump pump = new BMPCLocalLogPump(new ByteArrayInputStream(output.toString().getBytes("UTF-8")),
+                log.getPath(), 10, 500, 1);
+        CountDownLatch neverPrinted = pump.watchFor("never printed");
+        pump.start("HEADER");
+
+        // Wait for the pump to reach the end of the output
+        neverPrinted.await(1, TimeUnit.SECONDS);
+
+        assertTrue(rotated.exists());
+        assertTrue(log.length() <= 500 + 12);
+        assertTrue(rotated.length() <= 500 + 12);
+    }
+}
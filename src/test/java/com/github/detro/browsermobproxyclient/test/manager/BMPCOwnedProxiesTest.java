@@ -0,0 +1,186 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCLocalManager;
+import com.github.detro.browsermobproxyclient.metrics.BMPCEndpoint;
+import com.github.detro.browsermobproxyclient.metrics.BMPCHistogramMetrics;
+import com.github.detro.browsermobproxyclient.metrics.BMPCMetricsRegistry;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+public class BMPCOwnedProxiesTest {
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+    private BMPCDefaultManager otherManager;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer(new BMPCStubServerConfig()).start();
+        manager = stub.createManager();
+        otherManager = stub.createManager();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        manager.getHttpClient().close();
+        otherManager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Test
+    public void shouldTrackOwnedProxies() {
+        BMPCProxy proxy = manager.createProxy();
+        List<BMPCProxy> proxies = manager.createProxies(5, null);
+        BMPCProxy otherProxy = otherManager.createProxy();
+
+        Set<Integer> owned = manager.getOwnedProxies();
+        assertEquals(owned.size(), 6);
+        assertTrue(owned.contains(proxy.getProxyPort()));
+        for (BMPCProxy p : proxies) {
+            assertTrue(owned.contains(p.getProxyPort()));
+        }
+        assertFalse(owned.contains(otherProxy.getProxyPort()));
+
+        // Closing a Proxy disowns it
+        proxy.close();
+        assertEquals(manager.getOwnedProxies().size(), 5);
+        assertFalse(manager.getOwnedProxies().contains(proxy.getProxyPort()));
+
+        manager.closeAllOwned();
+        otherProxy.close();
+    }
+
+    @Test
+    public void shouldCloseOnlyOwnedProxies() {
+        manager.createProxies(10, null);
+        List<BMPCProxy> otherProxies = otherManager.createProxies(3, null);
+
+        manager.closeAllOwned(4);
+        assertTrue(manager.getOwnedProxies().isEmpty());
+
+        Set<Integer> open = stub.getOpenProxies();
+        assertEquals(open.size(), 3);
+        for (BMPCProxy otherProxy : otherProxies) {
+            assertTrue(open.contains(otherProxy.getProxyPort()));
+        }
+
+        otherManager.closeAll();
+        assertTrue(otherManager.getOwnedProxies().isEmpty());
+        assertTrue(stub.getOpenProxies().isEmpty());
+    }
+
+    @Test
+    public void shouldCheckHealthWithoutListingProxies() {
+        manager.createProxies(20, null);
+
+        BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+        BMPCMetricsRegistry.set(metrics);
+        try {
+            manager.checkHealth();
+            assertEquals(metrics.getRequestCount(BMPCEndpoint.LIST_PROXIES), 1);
+            assertEquals(metrics.getBytesReceived(BMPCEndpoint.LIST_PROXIES), 0);
+
+            assertEquals(manager.getOpenProxies().size(), 20);
+            assertTrue(metrics.getBytesReceived(BMPCEndpoint.LIST_PROXIES) > 0);
+        } finally {
+            BMPCMetricsRegistry.set(null);
+        }
+
+        manager.closeAllOwned();
+    }
+
+    @Test
+    public void shouldTrackOwnedProxiesOfLocalManager() throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            throw new SkipException("Stub executable is a shell script");
+        }
+
+        // Stand-in for the BrowserMob Proxy executable: a stub server in its own JVM
+        File executable = File.createTempFile("bmpc-stub", ".sh");
+        executable.deleteOnExit();
+        Writer script = new FileWriter(executable);
+        try {
+            script.write("#!/bin/sh\n");
+            script.write(String.format("exec '%s' -cp '%s' %s \"$@\"\n",
+                    System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                    System.getProperty("java.class.path"),
+                    BMPCStubServer.class.getName()));
+        } finally {
+            script.close();
+        }
+        assertTrue(executable.setExecutable(true));
+
+        File log = File.createTempFile("bmpc-stub", ".log");
+        log.deleteOnExit();
+        BMPCLocalManager local = new BMPCLocalManager(executable.getAbsolutePath(), log.getAbsolutePath());
+        BMPCHttpClient otherHttpClient = new BMPCHttpClient(local.getAPIHost(), local.getAPIPort());
+        try {
+            BMPCDefaultManager other = new BMPCDefaultManager(otherHttpClient);
+            BMPCProxy otherProxy = other.createProxy();
+
+            BMPCProxy proxy = local.createProxy();
+            local.createProxies(3, null);
+            assertEquals(local.getOwnedProxies().size(), 4);
+            assertTrue(local.getOwnedProxies().contains(proxy.getProxyPort()));
+            assertFalse(local.getOwnedProxies().contains(otherProxy.getProxyPort()));
+
+            proxy.close();
+            local.closeAllOwned(2);
+            assertTrue(local.getOwnedProxies().isEmpty());
+            assertEquals(local.getOpenProxies().size(), 1);
+
+            local.createProxy();
+            local.closeAllOwned();
+            assertTrue(local.getOwnedProxies().isEmpty());
+            assertTrue(local.getOpenProxies().contains(otherProxy.getProxyPort()));
+            otherProxy.close();
+        } finally {
+            otherHttpClient.close();
+            local.stop();
+            new File(local.getLogPath()).delete();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.manager;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCProxyPoolExhaustedException;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.manager.BMPCProxyPool;
+import com.github.detro.browsermobproxyclient.manager.BMPCProxyPoolConfig;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.google.gson.JsonObject;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class BMPCProxyPoolTest {
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer().start();
+        manager = stub.createManager();
+    }
+
+    @AfterMethod
+    public void closeAllProxies() {
+        manager.closeAll();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        manager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Test
+    public void shouldReuseReleasedProxies() throws InterruptedException {
+        BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(1)
+                .setMaxSize(2));
+
+        BMPCProxy proxy = pool.acquire();
+        assertNotNull(proxy);
+        proxy.newHar();
+        proxy.newPage();
+        pool.release(proxy);
+
+        // Wait for the Proxy to be reset in background
+        while (pool.getIdleCount() < 2) {
+            Thread.sleep(50);
+        }
+
+        BMPCProxy reused = pool.acquire();
+        assertTrue(pool.getHits() >= 1);
+        assertEquals(reused.har().getAsJsonObject("log").getAsJsonArray("pages").size(), 1);
+        assertTrue(pool.getSize() <= 2);
+
+        pool.release(reused);
+        pool.close();
+        assertEquals(pool.getSize(), 0);
+        assertEquals(manager.getOpenProxies().size(), 0);
+    }
+
+    @Test(expectedExceptions = BMPCProxyPoolExhaustedException.class)
+    public void shouldFailWhenExhausted() {
+        BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(0)
+                .setMaxSize(1));
+
+        try {
+            pool.acquire();
+            pool.acquire(100);
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void shouldRefillToMinIdle() throws InterruptedException {
+        BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(2)
+                .setMaxSize(4));
+
+        // Pre-warmed
+        waitForIdleCount(pool, 2);
+        assertEquals(stub.getOpenProxies().size(), 2);
+
+        // Topped up as soon as idle Proxies are handed out
+        pool.acquire();
+        pool.acquire();
+        waitForIdleCount(pool, 2);
+        assertEquals(pool.getSize(), 4);
+        assertEquals(pool.getHits(), 2);
+
+        // Never beyond the maximum size
+        pool.acquire();
+        pool.acquire();
+        Thread.sleep(200);
+        assertEquals(pool.getIdleCount(), 0);
+        assertEquals(stub.getOpenProxies().size(), 4);
+
+        pool.close();
+    }
+
+    @Test
+    public void shouldEvictProxiesIdleForTooLong() throws InterruptedException {
+        BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(1)
+                .setMaxSize(3)
+                .setIdleTimeoutMillis(100));
+
+        BMPCProxy[] proxies = { pool.acquire(), pool.acquire(), pool.acquire() };
+        for (BMPCProxy proxy : proxies) {
+            pool.release(proxy);
+        }
+        waitForIdleCount(pool, 3);
+
+        // Evicted down to the minimum idle (eviction runs at most once a second)
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getIdleCount() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(pool.getIdleCount(), 1);
+        assertEquals(pool.getSize(), 1);
+        assertEquals(stub.getOpenProxies().size(), 1);
+
+        pool.close();
+    }
+
+    @Test
+    public void shouldMeasureWaits() throws Exception {
+        final BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(0)
+                .setMaxSize(1));
+
+        final BMPCProxy proxy = pool.acquire();
+        assertEquals(pool.getMisses(), 1);
+
+        // Released by another user, a while later
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                pool.release(proxy);
+            }
+        }, 300, TimeUnit.MILLISECONDS);
+
+        assertSame(pool.acquire(5000), proxy);
+        assertEquals(pool.getMisses(), 2);
+        assertEquals(pool.getHits(), 0);
+        assertEquals(pool.getHitRate(), 0.0);
+        assertTrue(pool.getMaxWaitMillis() >= 300, "Max wait: " + pool.getMaxWaitMillis());
+        assertTrue(pool.getTotalWaitMillis() >= pool.getMaxWaitMillis());
+        assertTrue(pool.getAverageWaitMillis() >= 150, "Average wait: " + pool.getAverageWaitMillis());
+
+        executor.shutdown();
+        pool.close();
+    }
+
+    @Test
+    public void shouldCreateProxyForWaitersWhenAReleasedOneIsDiscarded() throws Exception {
+        final BMPCProxyPool pool = new BMPCProxyPool(manager, new BMPCProxyPoolConfig()
+                .setMinIdle(0)
+                .setMaxSize(1));
+
+        BMPCProxy broken = pool.acquire();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<BMPCProxy> waiter = executor.submit(new Callable<BMPCProxy>() {
+            @Override
+            public BMPCProxy call() {
+                return pool.acquire(5000);
+            }
+        });
+        Thread.sleep(100);
+
+        // Closed behind the pool's back: can't be reset, hence it's discarded
+        BMPCProxy.closeProxy(manager.getHttpClient(), broken.getProxyPort());
+        pool.release(broken);
+
+        BMPCProxy replacement = waiter.get(2000, TimeUnit.MILLISECONDS);
+        assertNotEquals(replacement.getProxyPort(), broken.getProxyPort());
+        assertEquals(pool.getSize(), 1);
+
+        executor.shutdown();
+        pool.release(replacement);
+        pool.close();
+    }
+
+    /**
+     * Creates Proxies whose reset (i.e. {@link BMPCProxy#newHar()}) can be held up.
+     */
+    private class SlowResetManager extends BMPCDefaultManager {
+        final CountDownLatch resetsReleased = new CountDownLatch(1);
+        volatile boolean holdResets = false;
+
+        SlowResetManager() {
+            super(manager.getHttpClient());
+        }
+
+        @Override
+        public BMPCProxy createProxy(String upstreamProxyHostAndPort) {
+            return new BMPCProxy(getHttpClient(), upstreamProxyHostAndPort) {
+                @Override
+                public JsonObject newHar() {
+                    if (holdResets) {
+                        try {
+                            resetsReleased.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.newHar();
+                }
+            };
+        }
+    }
+
+    @Test
+    public void shouldRefillWhileAProxyIsBeingReset() throws InterruptedException {
+        SlowResetManager slowManager = new SlowResetManager();
+        BMPCProxyPool pool = new BMPCProxyPool(slowManager, new BMPCProxyPoolConfig()
+                .setMinIdle(1)
+                .setMaxSize(3));
+        try {
+            waitForIdleCount(pool, 1);
+            BMPCProxy first = pool.acquire();
+            waitForIdleCount(pool, 1);
+
+            // Reset stuck talking to BrowserMob Proxy
+            slowManager.holdResets = true;
+            pool.release(first);
+
+            // Handing out the idle Proxy still tops the pool up
+            BMPCProxy second = pool.acquire();
+            waitForIdleCount(pool, 1);
+            assertEquals(pool.getSize(), 3);
+
+            slowManager.holdResets = false;
+            pool.release(second);
+        } finally {
+            slowManager.resetsReleased.countDown();
+            pool.close();
+        }
+        assertEquals(pool.getSize(), 0);
+    }
+
+    private static void waitForIdleCount(BMPCProxyPool pool, int idleCount) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getIdleCount() < idleCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(pool.getIdleCount(), idleCount);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.metrics;
+
+import com.github.detro.browsermobproxyclient.metrics.*;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class BMPCHistogramMetricsTest {
+
+    @AfterMethod
+    public void resetRegistry() {
+        BMPCMetricsRegistry.set(null);
+    }
+
+    @Test
+    public void shouldComputePercentilesWithinBucketError() {
+        BMPCHistogram histogram = new BMPCHistogram();
+        for (long v = 1; v <= 100000; ++v) {
+            histogram.record(v * 1000);
+        }
+
+        assertEquals(histogram.getCount(), 100000);
+        assertEquals(histogram.getMin(), 1000);
+        assertEquals(histogram.getMax(), 100000000);
+        assertEquals(histogram.getMean(), 50000500.0, 0.001);
+        for (double p : new double[]{ 50, 90, 99, 99.9 }) {
+            long expected = (long) (p * 1000000);
+            long actual = histogram.getValueAtPercentile(p);
+            assertTrue(actual >= expected, p + ": " + actual);
+            // At most 1/16 above: the width of a bucket
+            assertTrue(actual <= expected * (1 + 1.0 / 16), p + ": " + actual);
+        }
+        assertEquals(histogram.getValueAtPercentile(100), 100000000);
+    }
+
+    @Test
+    public void shouldRecordSmallAndHugeValues() {
+        BMPCHistogram histogram = new BMPCHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(histogram.getMin(), 0);
+        assertEquals(histogram.getValueAtPercentile(50), 3);
+        assertEquals(histogram.getValueAtPercentile(100), Long.MAX_VALUE);
+
+        histogram.reset();
+        assertEquals(histogram.getCount(), 0);
+        assertEquals(histogram.getValueAtPercentile(99), 0);
+    }
+
+    @Test
+    public void shouldReportRequestsToRegisteredMetrics() throws Exception {
+        assertSame(BMPCMetricsRegistry.get(), BMPCNoOpMetrics.INSTANCE);
+
+        BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+        BMPCMetricsRegistry.set(metrics);
+
+        // Successful request, with a body
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream("{\"log\":{}}".getBytes("UTF-8")));
+        response.setEntity(entity);
+        timer.responseReceived(response);
+        assertEquals(EntityUtils.toString(response.getEntity()), "{\"log\":{}}");
+        timer.stop();
+        timer.stop();
+
+        // Failed request
+        timer = BMPCRequestTimer.start(BMPCEndpoint.CLOSE_PROXY);
+        timer.failed(new RuntimeException("boom"));
+        timer.stop();
+
+        assertEquals(metrics.getRequestCount(BMPCEndpoint.GET_HAR), 1);
+        assertEquals(metrics.getBytesReceived(BMPCEndpoint.GET_HAR), 10);
+        assertEquals(metrics.getWireTime(BMPCEndpoint.GET_HAR).getCount(), 1);
+        assertEquals(metrics.getParseTime(BMPCEndpoint.GET_HAR).getCount(), 1);
+        assertEquals(metrics.getErrorCount(BMPCEndpoint.GET_HAR), 0);
+        assertEquals(metrics.getRequestCount(BMPCEndpoint.CLOSE_PROXY), 0);
+        assertEquals(metrics.getErrorCount(BMPCEndpoint.CLOSE_PROXY), 1);
+    }
+
+    @Test
+    public void shouldRecordLocalStartupTime() {
+        BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+        metrics.localStarted(8080, 1500000000L);
+        metrics.localStarted(8081, 500000000L);
+
+        assertEquals(metrics.getLocalStartupTime().getCount(), 2);
+        assertEquals(metrics.getLocalStartupTime().getMax(), 1500000000L);
+
+        metrics.reset();
+        assertEquals(metrics.getLocalStartupTime().getCount(), 0);
+    }
+
+    @Test
+    public void shouldNotCountWireTimeAsParseTime() throws Exception {
+        BMPCHistogramMetrics metrics = new BMPCHistogramMetrics();
+        BMPCMetricsRegistry.set(metrics);
+
+        // Body trickling from a slow server
+        BMPCRequestTimer timer = BMPCRequestTimer.start(BMPCEndpoint.GET_HAR);
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream("{\"log\":{}}".getBytes("UTF-8")) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.read(b, off, len);
+            }
+        });
+        response.setEntity(entity);
+        timer.responseReceived(response);
+        InputStream content = response.getEntity().getContent();
+        byte[] buffer = new byte[64];
+        while (content.read(buffer, 0, buffer.length) != -1) {
+            /* read it all */
+        }
+        timer.stop();
+
+        assertTrue(metrics.getWireTime(BMPCEndpoint.GET_HAR).getMax() >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(metrics.getParseTime(BMPCEndpoint.GET_HAR).getMax() < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+}
@@ -0,0 +1,154 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.test.stub;
+
+import com.github.detro.browsermobproxyclient.BMPCProxy;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToCloseProxyException;
+import com.github.detro.browsermobproxyclient.har.BMPCHar;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServer;
+import com.github.detro.browsermobproxyclient.stub.BMPCStubServerConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.testng.Assert.*;
+
+public class BMPCStubServerTest {
+
+    private BMPCStubServer stub;
+    private BMPCDefaultManager manager;
+
+    @BeforeClass
+    public void startStub() {
+        stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(64 * 1024)).start();
+        manager = stub.createManager();
+    }
+
+    @AfterClass
+    public void stopStub() {
+        manager.getHttpClient().close();
+        stub.stop();
+    }
+
+    @Test
+    public void shouldCreateAndCloseProxies() {
+        BMPCProxy proxy = manager.createProxy();
+        assertTrue(stub.getOpenProxies().contains(proxy.getProxyPort()));
+        assertTrue(manager.getOpenProxies().contains(proxy.getProxyPort()));
+
+        proxy.close();
+        assertFalse(manager.getOpenProxies().contains(proxy.getProxyPort()));
+
+        // Already closed
+        try {
+            proxy.close();
+            fail();
+        } catch (BMPCUnableToCloseProxyException e) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void shouldServeSyntheticHar() {
+        BMPCProxy proxy = manager.createProxy();
+        assertTrue(proxy.notUsedYet());
+
+        assertNull(proxy.newHar("first"));
+        proxy.newPage("second");
+
+        BMPCHar har = proxy.typedHar();
+        assertEquals(har.getLog().getPages().size(), 2);
+        assertEquals(har.getLog().getPages().get(1).getId(), "second");
+        assertTrue(har.getLog().getEntries().size() > 10);
+
+        // A new HAR returns the previous one
+        assertNotNull(proxy.newHar());
+        assertEquals(proxy.typedHar().getLog().getPages().size(), 1);
+
+        File harFile = new File(System.getProperty("java.io.tmpdir"), "bmpc-stub-server-test.har");
+        harFile.deleteOnExit();
+        proxy.harToFile(harFile.getParent(), harFile.getName());
+        assertTrue(harFile.length() >= 64 * 1024);
+
+        proxy.close();
+    }
+
+    @Test
+    public void shouldCheckTrafficWithoutDownloadingHar() {
+        BMPCProxy proxy = manager.createProxy();
+        assertTrue(proxy.notUsedYet());
+        assertFalse(proxy.hasTraffic());
+        assertEquals(proxy.harEntryCount(), 0);
+
+        proxy.newHar();
+        assertFalse(proxy.notUsedYet());
+        assertTrue(proxy.hasTraffic());
+        assertEquals(proxy.harEntryCount(), proxy.typedHar().getLog().getEntries().size());
+
+        // Aborted connections don't break the following requests
+        for (int i = 0; i < 20; ++i) {
+            assertTrue(proxy.hasTraffic());
+            proxy.newPage();
+        }
+        assertEquals(proxy.typedHar().getLog().getPages().size(), 21);
+
+        proxy.close();
+    }
+
+    @Test
+    public void shouldServeManyConcurrentRequests() throws Exception {
+        final List<BMPCProxy> proxies = manager.createProxies(20, null);
+        long requestsBefore = stub.getRequestCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for (int i = 0; i < 1000; ++i) {
+            final BMPCProxy proxy = proxies.get(i % proxies.size());
+            results.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    proxy.newPage();
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertTrue(stub.getRequestCount() - requestsBefore >= 1000);
+        manager.closeAll();
+        assertTrue(stub.getOpenProxies().isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.stub;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Generator of synthetic, valid, HARs of arbitrary size.
+ * <p/>
+ *
+ * Every entry is a ~1KB GET of a distinct URL, with headers and a small HTML content.
+ * Entries are spread across the given pages, in order.
+ */
+public final class BMPCStubHar {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String STARTED_DATE_TIME = "2014-01-01T00:00:00.000+0000";
+    private static final String CONTENT_TEXT;
+
+    static {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 16; ++i) {
+            text.append("<p>BrowserMob Proxy</p>");
+        }
+        CONTENT_TEXT = text.toString();
+    }
+
+    private BMPCStubHar() {
+    }
+
+    /**
+     * Write a HAR of (at least) the given size.
+     *
+     * At least one entry is always written.
+     * The OutputStream is not closed.
+     *
+     * @param out Destination of the HAR
+     * @param minSize Minimum size of the HAR, in bytes
+     * @param pageRefs Pages of the HAR (at least one)
+     * @return Number of entries written
+     * @throws IOException if writing fails
+     */
+    public static long write(OutputStream out, long minSize, List<String> pageRefs) throws IOException {
+        byte[] head = head(pageRefs).getBytes(UTF_8);
+        byte[] tail = "],\"comment\":\"\"}}".getBytes(UTF_8);
+
+        out.write(head);
+        long written = head.length + tail.length;
+        long entries = 0;
+        do {
+            if (entries > 0) {
+                out.write(',');
+                ++written;
+            }
+            byte[] entry = entry(entries, pageRefs.get((int) (entries % pageRefs.size()))).getBytes(UTF_8);
+            out.write(entry);
+            written += entry.length;
+            ++entries;
+        } while (written < minSize);
+        out.write(tail);
+
+        return entries;
+    }
+
+    private static String head(List<String> pageRefs) {
+        StringBuilder sb = new StringBuilder("{\"log\":{\"version\":\"1.2\",")
+                .append("\"creator\":{\"name\":\"BrowserMob Proxy\",\"version\":\"2.0\",\"comment\":\"\"},")
+                .append("\"pages\":[");
+        for (int i = 0; i < pageRefs.size(); ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":\"").append(pageRefs.get(i))
+                    .append("\",\"startedDateTime\":\"").append(STARTED_DATE_TIME)
+                    .append("\",\"title\":\"").append(pageRefs.get(i))
+                    .append("\",\"pageTimings\":{\"comment\":\"\"},\"comment\":\"\"}");
+        }
+        return sb.append("],\"entries\":[").toString();
+    }
+
+    private static String entry(long index, String pageRef) {
+        return "{\"pageref\":\"" + pageRef + "\",\"startedDateTime\":\"" + STARTED_DATE_TIME + "\",\"time\":42,"
+                + "\"request\":{\"method\":\"GET\",\"url\":\"http://example.com/resource/" + index + "\","
+                + "\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],"
+                + "\"headers\":[{\"name\":\"Accept\",\"value\":\"*/*\"},{\"name\":\"Host\",\"value\":\"example.com\"}],"
+                + "\"queryString\":[],\"headersSize\":-1,\"bodySize\":0,\"comment\":\"\"},"
+                + "\"response\":{\"status\":200,\"statusText\":\"OK\",\"httpVersion\":\"HTTP/1.1\",\"cookies\":[],"
+                + "\"headers\":[{\"name\":\"Content-Type\",\"value\":\"text/html\"}],"
+                + "\"content\":{\"size\":" + CONTENT_TEXT.length() + ",\"mimeType\":\"text/html\","
+                + "\"text\":\"" + CONTENT_TEXT + "\",\"comment\":\"\"},"
+                + "\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":" + CONTENT_TEXT.length() + ",\"comment\":\"\"},"
+                + "\"cache\":{},\"timings\":{\"blocked\":0,\"dns\":1,\"connect\":2,\"send\":0,\"wait\":30,"
+                + "\"receive\":9,\"ssl\":-1,\"comment\":\"\"},\"comment\":\"\"}";
+    }
+}
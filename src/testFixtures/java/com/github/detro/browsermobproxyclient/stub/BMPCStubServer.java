@@ -0,0 +1,428 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.stub;
+
+import com.github.detro.browsermobproxyclient.BMPCHttpClient;
+import com.github.detro.browsermobproxyclient.BMPCHttpClientConfig;
+import com.github.detro.browsermobproxyclient.exceptions.BMPCUnableToBindAddressOrPortException;
+import com.github.detro.browsermobproxyclient.manager.BMPCDefaultManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-JVM fake of the BrowserMob Proxy REST API, for offline tests, load tests and benchmarks.
+ * <p/>
+ *
+ * Implements the part of the REST API used by this client:
+ * <ul>
+ *     <li><code>GET /proxy</code></li>
+ *     <li><code>POST /proxy</code></li>
+ *     <li><code>DELETE /proxy/[PORT]</code></li>
+ *     <li><code>PUT /proxy/[PORT]/har</code></li>
+ *     <li><code>GET /proxy/[PORT]/har</code></li>
+ *     <li><code>PUT /proxy/[PORT]/har/pageRef</code></li>
+ * </ul>
+ * Proxies are only book-kept: nothing listens on their ports, hence no traffic is recorded.
+ * Instead, every HAR is a synthetic one of the configured size (see {@link BMPCStubHar}),
+ * GZip compressed if the client accepts it.
+ * <p/>
+ *
+ * Usage:
+ * <pre>
+ *     BMPCStubServer stub = new BMPCStubServer(new BMPCStubServerConfig().setHarSize(1024 * 1024)).start();
+ *     BMPCDefaultManager manager = stub.createManager();
+ *     ...
+ *     stub.stop();
+ * </pre>
+ */
+public class BMPCStubServer {
+
+    static {
+        // Headers and body are written separately: without this, Nagle + delayed ACKs add ~40ms per response
+        if (null == System.getProperty("sun.net.httpserver.nodelay")) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static class StubProxy {
+        final List<String> pageRefs = new ArrayList<String>();
+        boolean harStarted = false;
+    }
+
+    private final BMPCStubServerConfig config;
+    private final ConcurrentMap<Integer, StubProxy> proxies = new ConcurrentHashMap<Integer, StubProxy>();
+    private final AtomicInteger nextProxyPort;
+    private final AtomicLong requestCount = new AtomicLong(0);
+
+    private HttpServer server = null;
+    private ExecutorService executor = null;
+
+    public BMPCStubServer() {
+        this(new BMPCStubServerConfig());
+    }
+
+    public BMPCStubServer(BMPCStubServerConfig config) {
+        this.config = config;
+        this.nextProxyPort = new AtomicInteger(config.getFirstProxyPort());
+    }
+
+    /**
+     * Start serving the REST API.
+     *
+     * @return This stub server
+     * @throws BMPCUnableToBindAddressOrPortException if the configured address can't be bound
+     */
+    public synchronized BMPCStubServer start() {
+        if (null != server) {
+            return this;
+        }
+
+        try {
+            executor = Executors.newFixedThreadPool(config.getThreads(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "bmpc-stub-server-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), 1024);
+            server.setExecutor(executor);
+            server.createContext("/proxy", new HttpHandler() {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                    try {
+                        requestCount.incrementAndGet();
+                        respond(exchange);
+                    } finally {
+                        exchange.close();
+                    }
+                }
+            });
+            server.start();
+        } catch (Exception e) {
+            if (null != executor) {
+                executor.shutdownNow();
+            }
+            server = null;
+            executor = null;
+            throw new BMPCUnableToBindAddressOrPortException(String.format(
+                    "Unable to start Stub Server on '%s:%d'", config.getHost(), config.getPort()), e);
+        }
+
+        return this;
+    }
+
+    /**
+     * Run a stub server in its own process, as a stand-in for the BrowserMob Proxy executable
+     * (ex. to test {@link com.github.detro.browsermobproxyclient.manager.BMPCLocalManager}).
+     *
+     * Accepts the same <code>-port [PORT]</code> argument, and prints a Jetty-like
+     * "Started" line once the REST API is listening. Runs until killed.
+     *
+     * @param args Command line arguments
+     * @throws InterruptedException if interrupted while running
+     */
+    public static void main(String[] args) throws InterruptedException {
+        BMPCStubServerConfig config = new BMPCStubServerConfig();
+        for (int i = 0; i < args.length - 1; ++i) {
+            if ("-port".equals(args[i])) {
+                config.setPort(Integer.parseInt(args[i + 1]));
+            }
+        }
+
+        BMPCStubServer stub = new BMPCStubServer(config).start();
+        System.out.println("Started BMPCStubServer@" + stub.getAPIHost() + ":" + stub.getAPIPort());
+        System.out.flush();
+
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    /**
+     * Stop serving the REST API and forget all Proxies.
+     */
+    public synchronized void stop() {
+        if (null != server) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+        proxies.clear();
+    }
+
+    public synchronized boolean isRunning() {
+        return null != server;
+    }
+
+    public String getAPIHost() {
+        return config.getHost();
+    }
+
+    /**
+     * Port the REST API is listening on (useful when it was picked automatically).
+     *
+     * @return Port of the REST API
+     */
+    public synchronized int getAPIPort() {
+        return null != server ? server.getAddress().getPort() : config.getPort();
+    }
+
+    /**
+     * Create a Manager talking to this stub server, with its own pooled HTTP Client.
+     *
+     * @return Manager of this stub server
+     */
+    public BMPCDefaultManager createManager() {
+        return createManager(new BMPCHttpClientConfig());
+    }
+
+    /**
+     * Create a Manager talking to this stub server, with its own pooled HTTP Client.
+     *
+     * @param httpClientConfig Configuration of the pooled HTTP Client
+     * @return Manager of this stub server
+     */
+    public BMPCDefaultManager createManager(BMPCHttpClientConfig httpClientConfig) {
+        return new BMPCDefaultManager(new BMPCHttpClient(getAPIHost(), getAPIPort(), httpClientConfig));
+    }
+
+    /**
+     * @return Ports of the Proxies currently open
+     */
+    public Set<Integer> getOpenProxies() {
+        return new TreeSet<Integer>(proxies.keySet());
+    }
+
+    /**
+     * @return Number of requests served so far
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        Map<String, String> params = params(exchange);
+
+        if (config.getLatencyMillis() > 0) {
+            try {
+                Thread.sleep(config.getLatencyMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().split("/");
+
+        // "/proxy"
+        if (path.length == 2) {
+            if (method.equals("GET")) {
+                listProxies(exchange);
+            } else if (method.equals("POST")) {
+                createProxy(exchange, params);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+            return;
+        }
+
+        // "/proxy/[PORT]/..."
+        StubProxy proxy;
+        int port;
+        try {
+            port = Integer.parseInt(path[2]);
+            proxy = proxies.get(port);
+        } catch (NumberFormatException e) {
+            proxy = null;
+            port = -1;
+        }
+        if (null == proxy) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        String resource = path.length == 3 ? "" : path.length == 4 ? path[3] : path[3] + "/" + path[4];
+        if (resource.equals("") && method.equals("DELETE")) {
+            proxies.remove(port);
+            exchange.sendResponseHeaders(200, -1);
+        } else if (resource.equals("har") && method.equals("PUT")) {
+            newHar(exchange, proxy, params.get("initialPageRef"));
+        } else if (resource.equals("har") && method.equals("GET")) {
+            sendHar(exchange, proxy);
+        } else if (resource.equals("har/pageRef") && method.equals("PUT")) {
+            newPage(exchange, proxy, params.get("pageRef"));
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    private void listProxies(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{\"proxyList\":[");
+        boolean first = true;
+        for (Integer port : proxies.keySet()) {
+            json.append(first ? "" : ",").append("{\"port\":").append(port).append('}');
+            first = false;
+        }
+        sendJson(exchange, json.append("]}").toString());
+    }
+
+    private void createProxy(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int port;
+        if (params.containsKey("port")) {
+            port = Integer.parseInt(params.get("port"));
+            if (null != proxies.putIfAbsent(port, new StubProxy())) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+        } else {
+            do {
+                port = nextProxyPort.getAndIncrement();
+            } while (null != proxies.putIfAbsent(port, new StubProxy()));
+        }
+        sendJson(exchange, "{\"port\":" + port + "}");
+    }
+
+    private void newHar(HttpExchange exchange, StubProxy proxy, String initialPageRef) throws IOException {
+        List<String> previousPageRefs;
+        synchronized (proxy) {
+            previousPageRefs = proxy.harStarted ? new ArrayList<String>(proxy.pageRefs) : null;
+            proxy.harStarted = true;
+            proxy.pageRefs.clear();
+            proxy.pageRefs.add(null != initialPageRef ? initialPageRef : "Page 1");
+        }
+
+        // Like BrowserMob Proxy, return the previous HAR, if any
+        if (null != previousPageRefs) {
+            sendHar(exchange, previousPageRefs);
+        } else {
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    private void newPage(HttpExchange exchange, StubProxy proxy, String pageRef) throws IOException {
+        synchronized (proxy) {
+            if (!proxy.harStarted) {
+                proxy.harStarted = true;
+                proxy.pageRefs.add("Page 1");
+            }
+            proxy.pageRefs.add(null != pageRef ? pageRef : "Page " + (proxy.pageRefs.size() + 1));
+        }
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void sendHar(HttpExchange exchange, StubProxy proxy) throws IOException {
+        List<String> pageRefs;
+        synchronized (proxy) {
+            pageRefs = proxy.harStarted ? new ArrayList<String>(proxy.pageRefs) : null;
+        }
+
+        if (null != pageRefs) {
+            sendHar(exchange, pageRefs);
+        } else {
+            // No HAR yet
+            exchange.sendResponseHeaders(204, -1);
+        }
+    }
+
+    private void sendHar(HttpExchange exchange, List<String> pageRefs) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = config.isHarCompression()
+                && null != acceptEncoding
+                && acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip");
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream body = gzip
+                ? new GZIPOutputStream(exchange.getResponseBody(), 64 * 1024)
+                : new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024);
+        BMPCStubHar.write(body, config.getHarSize(), pageRefs);
+        if (gzip) {
+            ((GZIPOutputStream) body).finish();
+        }
+        body.flush();
+    }
+
+    private static void sendJson(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        parseParams(exchange.getRequestURI().getRawQuery(), params);
+
+        // Form parameters
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            body.write(buffer, 0, len);
+        }
+        parseParams(body.toString("UTF-8"), params);
+
+        return params;
+    }
+
+    private static void parseParams(String encoded, Map<String, String> params) throws UnsupportedEncodingException {
+        if (null == encoded || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+    }
+}
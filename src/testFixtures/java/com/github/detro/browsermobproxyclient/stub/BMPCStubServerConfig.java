@@ -0,0 +1,162 @@
+/*
+This file is part of the BrowserMob Proxy Client project by Ivan De Marino (http://ivandemarino.me).
+
+Copyright (c) 2014, Ivan De Marino (http://ivandemarino.me)
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification,
+are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice,
+      this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice,
+      this list of conditions and the following disclaimer in the documentation
+      and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+(INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.github.detro.browsermobproxyclient.stub;
+
+/**
+ * Configuration of a {@link BMPCStubServer}.
+ * <p/>
+ *
+ * All the times are expressed in milliseconds.
+ * Setters return the configuration itself, so calls can be chained.
+ */
+public class BMPCStubServerConfig {
+
+    public static final String DEFAULT_HOST = "127.0.0.1";
+    public static final int DEFAULT_PORT = 0;
+    public static final int DEFAULT_FIRST_PROXY_PORT = 9091;
+    public static final int DEFAULT_THREADS = 32;
+    public static final long DEFAULT_HAR_SIZE = 16 * 1024;
+    public static final long DEFAULT_LATENCY_MILLIS = 0;
+    public static final boolean DEFAULT_HAR_COMPRESSION = true;
+
+    private String host = DEFAULT_HOST;
+    private int port = DEFAULT_PORT;
+    private int firstProxyPort = DEFAULT_FIRST_PROXY_PORT;
+    private int threads = DEFAULT_THREADS;
+    private long harSize = DEFAULT_HAR_SIZE;
+    private long latencyMillis = DEFAULT_LATENCY_MILLIS;
+    private boolean harCompression = DEFAULT_HAR_COMPRESSION;
+
+    /**
+     * Address the REST API binds to.
+     *
+     * @param host Host or IP address
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Port the REST API listens on. If 0, a free port is picked.
+     *
+     * @param port Port of the REST API
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Port assigned to the first Proxy created, unless one is requested.
+     * Following Proxies get the next ports. Nothing actually listens on them.
+     *
+     * @param firstProxyPort Port of the first Proxy
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setFirstProxyPort(int firstProxyPort) {
+        this.firstProxyPort = firstProxyPort;
+        return this;
+    }
+
+    public int getFirstProxyPort() {
+        return firstProxyPort;
+    }
+
+    /**
+     * Number of threads serving requests, i.e. requests served concurrently.
+     *
+     * @param threads Number of threads
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Size of the HAR returned for every Proxy.
+     * The HAR is generated while it's sent, so it can be (much) larger than the heap.
+     *
+     * @param harSize Minimum size of the HAR, in bytes
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setHarSize(long harSize) {
+        this.harSize = harSize;
+        return this;
+    }
+
+    public long getHarSize() {
+        return harSize;
+    }
+
+    /**
+     * Delay added before every response, to simulate a remote or busy BrowserMob Proxy.
+     * It occupies a serving thread (see {@link BMPCStubServerConfig#setThreads(int)}).
+     *
+     * @param latencyMillis Delay of every response
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Send HARs GZip compressed, to the clients that accept it (i.e. <code>Accept-Encoding: gzip</code>).
+     *
+     * @param harCompression Compress HARs
+     * @return This configuration
+     */
+    public BMPCStubServerConfig setHarCompression(boolean harCompression) {
+        this.harCompression = harCompression;
+        return this;
+    }
+
+    public boolean isHarCompression() {
+        return harCompression;
+    }
+}